@@ -0,0 +1,176 @@
+package velox.api.layer1.simpledemo.datarecording;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import velox.api.layer1.data.ExecutionInfo;
+import velox.api.layer1.data.InstrumentInfo;
+import velox.api.layer1.data.OrderInfoUpdate;
+import velox.api.layer1.layers.utils.OrderBook;
+
+/**
+ * Compares reading the same synthetic depth recording as text, as binary
+ * through {@link BinaryFormatReader} and through {@link MappedBinaryReader}.
+ * Each benchmark reads the whole file and sums prices and sizes, so the
+ * result is the time to read {@link #records} records.
+ * <p>
+ * Run with {@code gradle jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RecordingReadBenchmark {
+
+    private static final int INSTRUMENT_ID = 1;
+
+    @Param("1000000")
+    public int records;
+
+    private File directory;
+    private File textFile;
+    private File binaryFile;
+
+    /**
+     * Sums what's passed to it, so reading can't be optimized away.
+     */
+    private static class SumTarget implements DataRecorder {
+        long sum;
+
+        @Override
+        public void onInstrumentAdded(long time, int id, InstrumentInfo instrumentInfo) {
+        }
+
+        @Override
+        public void onTrade(long time, int id, double price, int size, int aggressor, int otcCode) {
+            sum += (long) price + size;
+        }
+
+        @Override
+        public void onDepth(long time, int id, boolean isBid, int price, int size) {
+            sum += price + size;
+        }
+
+        @Override
+        public void onBookSnapshot(long time, int id, OrderBook orderBook) {
+        }
+
+        @Override
+        public void onMboSend(long time, int id, String orderId, boolean isBid, int price, int size) {
+        }
+
+        @Override
+        public void onMboReplace(long time, int id, String orderId, int price, int size) {
+        }
+
+        @Override
+        public void onMboCancel(long time, int id, String orderId) {
+        }
+
+        @Override
+        public void onOrderUpdated(long time, OrderInfoUpdate orderInfoUpdate) {
+        }
+
+        @Override
+        public void onOrderExecuted(long time, ExecutionInfo executionInfo) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("recording-benchmark").toFile();
+        textFile = new File(directory, "depth.txt");
+        binaryFile = new File(directory, "depth.bin");
+        InstrumentInfo instrumentInfo = new InstrumentInfo("ES", "CME", "FUT", 0.25, 50, "ES", true);
+
+        try (DataRecorder text = new SpecificFormatRecorder(0, textFile, new File(directory, "orders.txt"), "benchmark");
+                DataRecorder binary = new BinaryFormatRecorder(0, binaryFile, new File(directory, "orders.bin"), "benchmark")) {
+            text.onInstrumentAdded(0, INSTRUMENT_ID, instrumentInfo);
+            binary.onInstrumentAdded(0, INSTRUMENT_ID, instrumentInfo);
+
+            Random random = new Random(0);
+            long time = TimeUnit.HOURS.toNanos(400_000);
+            for (int i = 0; i < records; ++i) {
+                time += random.nextInt(1_000_000);
+                boolean isBid = random.nextBoolean();
+                int price = 16_000 + random.nextInt(40);
+                int size = random.nextInt(200);
+                text.onDepth(time, INSTRUMENT_ID, isBid, price, size);
+                binary.onDepth(time, INSTRUMENT_ID, isBid, price, size);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public long textReader() throws IOException {
+        SumTarget target = new SumTarget();
+        try (RecordingReader reader = new SpecificFormatReader(textFile)) {
+            reader.readAll(target);
+        }
+        return target.sum;
+    }
+
+    @Benchmark
+    public long binaryReader() throws IOException {
+        SumTarget target = new SumTarget();
+        try (RecordingReader reader = new BinaryFormatReader(binaryFile)) {
+            reader.readAll(target);
+        }
+        return target.sum;
+    }
+
+    @Benchmark
+    public long mappedCursor() throws IOException {
+        long sum = 0;
+        try (MappedBinaryReader reader = new MappedBinaryReader(binaryFile)) {
+            BinaryRecordView record = reader.getRecord();
+            while (reader.next()) {
+                if (record.getTag() == SpecificFormatTags.ON_BOOK_UPDATE) {
+                    sum += record.getPrice() + record.getSize();
+                }
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long mappedForEach() throws IOException {
+        SumTarget target = new SumTarget();
+        try (MappedBinaryReader reader = new MappedBinaryReader(binaryFile)) {
+            reader.forEach(record -> {
+                if (record.getTag() == SpecificFormatTags.ON_BOOK_UPDATE) {
+                    target.sum += record.getPrice() + record.getSize();
+                }
+            });
+        }
+        return target.sum;
+    }
+}
@@ -0,0 +1,94 @@
+package velox.api.layer1.simplified.demo.mbo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import velox.api.layer1.layers.utils.OrderBook;
+
+/**
+ * Per-update cost of maintaining the aggregated book of MBO modules with
+ * {@link OrderBook} (read the level, write it back, as the modules did) and
+ * with {@link PriceLadder}.
+ * <p>
+ * Updates are synthetic MBO sends and cancels around a slowly drifting mid
+ * price, every order sent is cancelled before the end, so each invocation
+ * starts and ends with an empty book.
+ * <p>
+ * Run with {@code gradle jmh}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PriceLadderBenchmark {
+
+    private static final int UPDATES = 1 << 20;
+
+    private final boolean[] sides = new boolean[UPDATES];
+    private final int[] prices = new int[UPDATES];
+    private final long[] deltas = new long[UPDATES];
+
+    private final OrderBook orderBook = new OrderBook();
+    private final PriceLadder priceLadder = new PriceLadder();
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        List<long[]> liveOrders = new ArrayList<>();
+        int mid = 100_000;
+        int i = 0;
+        while (i < UPDATES) {
+            boolean isCancel = !liveOrders.isEmpty()
+                    && (random.nextInt(2) == 0 || UPDATES - i <= liveOrders.size());
+            if (isCancel) {
+                long[] order = liveOrders.remove(random.nextInt(liveOrders.size()));
+                sides[i] = order[0] != 0;
+                prices[i] = (int) order[1];
+                deltas[i] = -order[2];
+            } else {
+                if (random.nextInt(100) == 0) {
+                    mid += random.nextInt(5) - 2;
+                }
+                boolean isBid = random.nextBoolean();
+                int distance = random.nextInt(50) == 0 ? random.nextInt(1000) : random.nextInt(20);
+                sides[i] = isBid;
+                prices[i] = isBid ? mid - distance : mid + 1 + distance;
+                deltas[i] = 1 + random.nextInt(10);
+                liveOrders.add(new long[] {isBid ? 1 : 0, prices[i], deltas[i]});
+            }
+            ++i;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(UPDATES)
+    public long orderBook() {
+        long sum = 0;
+        for (int i = 0; i < UPDATES; ++i) {
+            long levelSize = orderBook.getSizeFor(sides[i], prices[i], 0) + deltas[i];
+            orderBook.onUpdate(sides[i], prices[i], levelSize);
+            sum += levelSize;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(UPDATES)
+    public long priceLadder() {
+        long sum = 0;
+        for (int i = 0; i < UPDATES; ++i) {
+            sum += priceLadder.add(sides[i], prices[i], deltas[i]);
+        }
+        return sum;
+    }
+}
@@ -27,11 +27,17 @@ public class HelperChaseStrategySettings extends HelperStrategySettings {
         this.mode = settings.mode;
     }
     
+    @Override
+    protected HelperChaseStrategySettings copy() {
+        return new HelperChaseStrategySettings(this);
+    }
+    
     public int getDistance() {
         return distance;
     }
 
     public void setDistance(int distance) {
+        checkWritable();
         this.distance = distance;
     }
 
@@ -40,6 +46,7 @@ public class HelperChaseStrategySettings extends HelperStrategySettings {
     }
 
     public void setMode(ChaseMode mode) {
+        checkWritable();
         this.mode = mode;
     }
 }
@@ -34,34 +34,44 @@ public class HelperEscapeStrategySettings extends HelperStrategySettings {
         this.percent = settings.percent;
     }
     
+    @Override
+    protected HelperEscapeStrategySettings copy() {
+        return new HelperEscapeStrategySettings(this);
+    }
+    
     public Mode getMode() {
         return mode;
     }
     public void setMode(Mode mode) {
+        checkWritable();
         this.mode = mode;
     }
     public int getAffectedLevelsNumber() {
         return affectedLevelsNumber;
     }
     public void setAffectedLevelsNumber(int affectedLevelsNumber) {
+        checkWritable();
         this.affectedLevelsNumber = affectedLevelsNumber;
     }
     public int getConsideredLevelsNumber() {
         return consideredLevelsNumber;
     }
     public void setConsideredLevelsNumber(int consideredLevelsNumber) {
+        checkWritable();
         this.consideredLevelsNumber = consideredLevelsNumber;
     }
     public int getMoveDistance() {
         return moveDistance;
     }
     public void setMoveDistance(int moveDistance) {
+        checkWritable();
         this.moveDistance = moveDistance;
     }
     public int getPercent() {
         return percent;
     }
     public void setPercent(int percent) {
+        checkWritable();
         this.percent = percent;
     }
     
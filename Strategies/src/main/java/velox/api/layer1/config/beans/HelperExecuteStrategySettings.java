@@ -22,12 +22,18 @@ public class HelperExecuteStrategySettings extends HelperStrategySettings {
         this.tickNumber = settings.tickNumber;
         this.percent = settings.percent;
     }
+    
+    @Override
+    protected HelperExecuteStrategySettings copy() {
+        return new HelperExecuteStrategySettings(this);
+    }
 
     public int getLevelsNumber() {
         return levelsNumber;
     }
 
     public void setLevelsNumber(int levelsNumber) {
+        checkWritable();
         this.levelsNumber = levelsNumber;
     }
 
@@ -36,6 +42,7 @@ public class HelperExecuteStrategySettings extends HelperStrategySettings {
     }
 
     public void setTickNumber(int tickNumber) {
+        checkWritable();
         this.tickNumber = tickNumber;
     }
 
@@ -44,6 +51,7 @@ public class HelperExecuteStrategySettings extends HelperStrategySettings {
     }
 
     public void setPercent(int percent) {
+        checkWritable();
         this.percent = percent;
     }
 }
@@ -0,0 +1,32 @@
+package velox.api.layer1.config.beans;
+
+import velox.api.layer1.settings.StrategySettingsVersion;
+
+/**
+ * Limits on order moves sent by a helper strategy, common for all its
+ * instruments. 0 means no limit, which is the default.
+ */
+@StrategySettingsVersion(currentVersion = 1, compatibleVersions = {})
+public class HelperRateLimitSettings {
+    private int instrumentRequestsPerSecond = 0;
+    private int totalRequestsPerSecond = 0;
+
+    public HelperRateLimitSettings() {
+    }
+
+    public int getInstrumentRequestsPerSecond() {
+        return instrumentRequestsPerSecond;
+    }
+
+    public void setInstrumentRequestsPerSecond(int instrumentRequestsPerSecond) {
+        this.instrumentRequestsPerSecond = instrumentRequestsPerSecond;
+    }
+
+    public int getTotalRequestsPerSecond() {
+        return totalRequestsPerSecond;
+    }
+
+    public void setTotalRequestsPerSecond(int totalRequestsPerSecond) {
+        this.totalRequestsPerSecond = totalRequestsPerSecond;
+    }
+}
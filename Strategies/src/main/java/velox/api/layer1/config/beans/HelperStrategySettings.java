@@ -2,12 +2,40 @@ package velox.api.layer1.config.beans;
 
 public class HelperStrategySettings {
     private boolean isEnabled = false;
+    /** Depth updates within this interval are evaluated once, 0 evaluates each update */
+    private int conflationIntervalMs = 0;
+    /** Set on snapshots read by rule evaluation, not saved */
+    private transient boolean isReadOnly = false;
     
     public HelperStrategySettings() {
     }
     
     public HelperStrategySettings(HelperStrategySettings settings) {
         this.isEnabled = settings.isEnabled;
+        this.conflationIntervalMs = settings.conflationIntervalMs;
+    }
+    
+    /**
+     * @return copy of the same class
+     */
+    protected HelperStrategySettings copy() {
+        return new HelperStrategySettings(this);
+    }
+    
+    /**
+     * @return copy of the same class that can't be modified, so it can be
+     *         read by other threads without locking
+     */
+    public HelperStrategySettings readOnlyCopy() {
+        HelperStrategySettings copy = copy();
+        copy.isReadOnly = true;
+        return copy;
+    }
+    
+    protected void checkWritable() {
+        if (isReadOnly) {
+            throw new UnsupportedOperationException("Settings snapshot can't be modified");
+        }
     }
 
     public boolean isEnabled() {
@@ -15,7 +43,17 @@ public class HelperStrategySettings {
     }
 
     public void setEnabled(boolean isEnabled) {
+        checkWritable();
         this.isEnabled = isEnabled;
     }
+
+    public int getConflationIntervalMs() {
+        return conflationIntervalMs;
+    }
+
+    public void setConflationIntervalMs(int conflationIntervalMs) {
+        checkWritable();
+        this.conflationIntervalMs = conflationIntervalMs;
+    }
     
 }
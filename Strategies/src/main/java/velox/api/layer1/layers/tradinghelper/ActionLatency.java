@@ -0,0 +1,51 @@
+package velox.api.layer1.layers.tradinghelper;
+
+/**
+ * Latencies of a helper strategy for one instrument: from the market or
+ * order event that triggered rule evaluation to the decision to send
+ * requests, and from that decision to each request being submitted to the
+ * {@link OrderRateGovernor}. Time a request waits in the governor for the
+ * rate limit is not included. Has to be used with the instrument lock held.
+ */
+public class ActionLatency {
+    /** No event, e.g. evaluation caused by a settings change */
+    public static final long NO_EVENT = Long.MIN_VALUE;
+
+    public final LatencyHistogram eventToDecision = new LatencyHistogram();
+    public final LatencyHistogram decisionToSubmit = new LatencyHistogram();
+
+    private long eventNs = NO_EVENT;
+    private boolean isDecided;
+    private long decisionNs;
+
+    /**
+     * @param eventNs {@link System#nanoTime()} when the event was received,
+     *            or {@link #NO_EVENT}
+     */
+    public void onEvaluation(long eventNs) {
+        this.eventNs = eventNs;
+        isDecided = false;
+    }
+
+    /**
+     * Called when a request passes the throttle. Only the first decision of
+     * an evaluation is recorded.
+     */
+    public void onDecision() {
+        if (!isDecided) {
+            isDecided = true;
+            decisionNs = System.nanoTime();
+            if (eventNs != NO_EVENT) {
+                eventToDecision.record(decisionNs - eventNs);
+            }
+        }
+    }
+
+    /**
+     * Called right before a request is submitted to the governor.
+     */
+    public void onSubmit() {
+        onDecision();
+        decisionToSubmit.record(System.nanoTime() - decisionNs);
+    }
+}
@@ -0,0 +1,212 @@
+package velox.api.layer1.layers.tradinghelper;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import velox.api.layer1.layers.utils.OrderBook;
+
+/**
+ * Order book of a helper strategy that can sum sizes of a range of levels
+ * (e.g. top N levels, or levels within K ticks of an order) in O(log n).
+ * <p>
+ * Sizes of the levels within a window of prices around the BBO are kept in a
+ * Fenwick tree per side, updated on every depth update. Parts of a range that
+ * are outside of the window are summed from the book itself. When best price
+ * comes close to an edge of the window, the window is moved to be centered on
+ * the BBO again, which is O(window size) and only happens on large moves.
+ * <p>
+ * The book itself is still available via {@link #getOrderBook()}, but it
+ * must only be updated through {@link #onUpdate(boolean, int, long)}.
+ * Not thread safe.
+ */
+public class CumulativeDepthIndex {
+
+    private static final int DEFAULT_CAPACITY = 1 << 12;
+
+    private final OrderBook orderBook;
+    private final int capacity;
+    /** Best prices closer than this to an edge of the window move the window */
+    private final int margin;
+
+    /** Fenwick trees, index 1 corresponds to {@link #basePrice} */
+    private final long[] bidTree;
+    private final long[] askTree;
+
+    private int basePrice;
+    private boolean hasWindow;
+
+    public CumulativeDepthIndex() {
+        this(new OrderBook());
+    }
+
+    /**
+     * @param orderBook initial state, will be updated by this index
+     */
+    public CumulativeDepthIndex(OrderBook orderBook) {
+        this(orderBook, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity number of levels in the window
+     */
+    public CumulativeDepthIndex(OrderBook orderBook, int capacity) {
+        if (capacity < 4) {
+            throw new IllegalArgumentException("Capacity is too small: " + capacity);
+        }
+        this.orderBook = orderBook;
+        this.capacity = capacity;
+        margin = capacity / 4;
+        bidTree = new long[capacity + 1];
+        askTree = new long[capacity + 1];
+        moveWindow();
+    }
+
+    public OrderBook getOrderBook() {
+        return orderBook;
+    }
+
+    public void onUpdate(boolean isBid, int price, long size) {
+        long previous = orderBook.onUpdate(isBid, price, size);
+        if (!hasWindow) {
+            moveWindow();
+            return;
+        }
+
+        if (previous != size && isInWindow(price)) {
+            add(isBid ? bidTree : askTree, price - basePrice + 1, size - previous);
+        }
+
+        TreeMap<Integer, Long> levels = isBid ? orderBook.getBidMap() : orderBook.getAskMap();
+        if (!levels.isEmpty()) {
+            int best = levels.firstKey();
+            if (best < basePrice + margin || best >= basePrice + capacity - margin) {
+                moveWindow();
+            }
+        }
+    }
+
+    /**
+     * @return sum of sizes of the levels with prices in [fromPrice, toPrice]
+     */
+    public long getSum(boolean isBid, int fromPrice, int toPrice) {
+        if (fromPrice > toPrice) {
+            return 0;
+        }
+        if (!hasWindow) {
+            return sumLevels(isBid, fromPrice, toPrice);
+        }
+
+        long result = 0;
+        int lastPrice = basePrice + capacity - 1;
+        int low = Math.max(fromPrice, basePrice);
+        int high = Math.min(toPrice, lastPrice);
+        if (low <= high) {
+            long[] tree = isBid ? bidTree : askTree;
+            result += prefixSum(tree, high - basePrice + 1) - prefixSum(tree, low - basePrice);
+        }
+        if (fromPrice < basePrice) {
+            result += sumLevels(isBid, fromPrice, Math.min(toPrice, basePrice - 1));
+        }
+        if (toPrice > lastPrice) {
+            result += sumLevels(isBid, Math.max(fromPrice, lastPrice + 1), toPrice);
+        }
+        return result;
+    }
+
+    /**
+     * @return sum of sizes of levelsNumber price levels starting from the best
+     *         price of the side, including empty ones
+     */
+    public long getTopLevelsSum(boolean isBid, int levelsNumber) {
+        TreeMap<Integer, Long> levels = isBid ? orderBook.getBidMap() : orderBook.getAskMap();
+        if (levels.isEmpty() || levelsNumber <= 0) {
+            return 0;
+        }
+
+        int best = levels.firstKey();
+        return isBid
+                ? getSum(true, best - levelsNumber + 1, best)
+                : getSum(false, best, best + levelsNumber - 1);
+    }
+
+    private boolean isInWindow(int price) {
+        return price >= basePrice && price < basePrice + capacity;
+    }
+
+    /**
+     * Centers the window on the BBO and rebuilds the trees
+     */
+    private void moveWindow() {
+        TreeMap<Integer, Long> bids = orderBook.getBidMap();
+        TreeMap<Integer, Long> asks = orderBook.getAskMap();
+        int center;
+        if (!bids.isEmpty() && !asks.isEmpty()) {
+            center = (int) (((long) bids.firstKey() + asks.firstKey()) / 2);
+        } else if (!bids.isEmpty()) {
+            center = bids.firstKey();
+        } else if (!asks.isEmpty()) {
+            center = asks.firstKey();
+        } else {
+            hasWindow = false;
+            return;
+        }
+
+        int newBasePrice = (int) Math.max(Integer.MIN_VALUE, Math.min((long) center - capacity / 2,
+                (long) Integer.MAX_VALUE - capacity + 1));
+        // Wide spread can keep a best price in the margin, no point rebuilding then
+        if (hasWindow && newBasePrice == basePrice) {
+            return;
+        }
+        basePrice = newBasePrice;
+        hasWindow = true;
+        buildTree(true, bidTree);
+        buildTree(false, askTree);
+    }
+
+    private void buildTree(boolean isBid, long[] tree) {
+        Arrays.fill(tree, 0);
+        for (Map.Entry<Integer, Long> level : getLevels(isBid, basePrice, basePrice + capacity - 1).entrySet()) {
+            tree[level.getKey() - basePrice + 1] = level.getValue();
+        }
+        for (int i = 1; i <= capacity; ++i) {
+            int parent = i + (i & -i);
+            if (parent <= capacity) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+
+    private NavigableMap<Integer, Long> getLevels(boolean isBid, int fromPrice, int toPrice) {
+        // Bids are ordered from the highest price
+        return isBid
+                ? orderBook.getBidMap().subMap(toPrice, true, fromPrice, true)
+                : orderBook.getAskMap().subMap(fromPrice, true, toPrice, true);
+    }
+
+    private long sumLevels(boolean isBid, int fromPrice, int toPrice) {
+        long result = 0;
+        for (long size : getLevels(isBid, fromPrice, toPrice).values()) {
+            result += size;
+        }
+        return result;
+    }
+
+    private void add(long[] tree, int index, long delta) {
+        for (; index <= capacity; index += index & -index) {
+            tree[index] += delta;
+        }
+    }
+
+    /**
+     * @return sum of the first count elements
+     */
+    private long prefixSum(long[] tree, int count) {
+        long result = 0;
+        for (; count > 0; count -= count & -count) {
+            result += tree[count];
+        }
+        return result;
+    }
+}
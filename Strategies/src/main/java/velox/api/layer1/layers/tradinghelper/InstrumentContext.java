@@ -0,0 +1,43 @@
+package velox.api.layer1.layers.tradinghelper;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import velox.api.layer1.config.beans.HelperStrategySettings;
+
+/**
+ * Everything a single helper strategy keeps for an instrument, unlike
+ * {@link InstrumentState} that is shared by all of them. Contexts are stored
+ * in an array indexed by {@link InstrumentState#id}, so a callback finds all
+ * of it with one lookup. Fields must only be accessed with the instrument
+ * lock held, unless stated otherwise.
+ */
+public class InstrumentContext {
+    public final String alias;
+
+    /**
+     * Read-only copy of the settings (see
+     * {@link HelperStrategySettings#readOnlyCopy()}), replaced as a whole when
+     * settings change, so rules read it without any lock
+     */
+    public volatile HelperStrategySettings settings;
+
+    /** Replaced, rather than cleared, when throttling starts over, so it can be done without the lock */
+    public volatile RequestThrottle requestThrottle;
+    /** Limit of moves per second for the instrument, null if not limited; accessed without the lock */
+    public volatile TokenBucket requestBucket;
+    public final ActionLatency latency = new ActionLatency();
+    /** Last trade price, NaN until there is a trade */
+    public double lastTradePrice = Double.NaN;
+
+    /** Set when depth evaluation is scheduled, accessed without the lock */
+    final AtomicBoolean isDepthDirty = new AtomicBoolean();
+    /** Time of the first depth update since the last evaluation */
+    volatile long dirtyEventNs;
+
+    public InstrumentContext(String alias, HelperStrategySettings settings, long requestDelayMs, TokenBucket requestBucket) {
+        this.alias = alias;
+        this.settings = settings;
+        this.requestBucket = requestBucket;
+        this.requestThrottle = new RequestThrottle(requestDelayMs);
+    }
+}
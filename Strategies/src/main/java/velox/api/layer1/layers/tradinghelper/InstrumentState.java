@@ -0,0 +1,72 @@
+package velox.api.layer1.layers.tradinghelper;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Book and working orders of a single instrument, shared by helper strategies
+ * (see {@link SharedInstrumentStates}). Each instrument has its
+ * own lock, so a burst of updates for one instrument does not delay handling
+ * of the others. Fields must only be accessed between {@link #lock()} and
+ * {@link #unlock()}.
+ * <p>
+ * The lock counts how often it had to be waited for and for how long, to see
+ * whether there is any contention left.
+ */
+public class InstrumentState {
+    /** Dense id of the alias, see {@link SharedInstrumentStates#getAliasId(String)} */
+    public final int id;
+    public final String alias;
+    public final double pips;
+
+    public CumulativeDepthIndex depthIndex = new CumulativeDepthIndex();
+    public final WorkingOrderIndex workingOrders = new WorkingOrderIndex();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Only written while holding the lock */
+    private volatile long acquisitionsCount;
+    private volatile long contendedCount;
+    private volatile long waitNs;
+    private volatile long maxWaitNs;
+
+    public InstrumentState(int id, String alias, double pips) {
+        this.id = id;
+        this.alias = alias;
+        this.pips = pips;
+    }
+
+    public void lock() {
+        if (!lock.tryLock()) {
+            long start = System.nanoTime();
+            lock.lock();
+            long wait = System.nanoTime() - start;
+            waitNs += wait;
+            maxWaitNs = Math.max(maxWaitNs, wait);
+            ++contendedCount;
+        }
+        ++acquisitionsCount;
+    }
+
+    public void unlock() {
+        lock.unlock();
+    }
+
+    public long getAcquisitionsCount() {
+        return acquisitionsCount;
+    }
+
+    /**
+     * @return how many times the lock was held by another thread when it was requested
+     */
+    public long getContendedCount() {
+        return contendedCount;
+    }
+
+    public long getWaitNs() {
+        return waitNs;
+    }
+
+    public long getMaxWaitNs() {
+        return maxWaitNs;
+    }
+}
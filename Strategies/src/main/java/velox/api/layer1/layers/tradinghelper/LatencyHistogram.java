@@ -0,0 +1,95 @@
+package velox.api.layer1.layers.tradinghelper;
+
+/**
+ * Histogram of latencies in nanoseconds with fixed log-linear buckets: each
+ * power of two range is split into {@value #SUB_BUCKETS} buckets, so any value
+ * is stored with at most 12.5% error. Recording is a few arithmetic
+ * operations and one array increment, without allocation.
+ * <p>
+ * Only one thread may record at a time. Reading while another thread records
+ * can return a slightly inconsistent result, which is fine for monitoring.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS_COUNT = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS_COUNT];
+    private volatile long count;
+    private volatile long max;
+
+    public void record(long valueNs) {
+        long value = Math.max(0, valueNs);
+        ++counts[getBucket(value)];
+        ++count;
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @param percentile in [0, 100]
+     * @return upper bound of the bucket where the percentile is, or 0 if
+     *         nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        long total = count;
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS_COUNT; ++bucket) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return Math.min(getBucketUpperBound(bucket), max);
+            }
+        }
+        return max;
+    }
+
+    public int getBucketsCount() {
+        return BUCKETS_COUNT;
+    }
+
+    public long getBucketCount(int bucket) {
+        return counts[bucket];
+    }
+
+    /**
+     * @return smallest value that goes to the bucket
+     */
+    public static long getBucketLowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * @return largest value that goes to the bucket
+     */
+    public static long getBucketUpperBound(int bucket) {
+        return bucket == BUCKETS_COUNT - 1 ? Long.MAX_VALUE : getBucketLowerBound(bucket + 1) - 1;
+    }
+
+    private static int getBucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+}
@@ -45,8 +45,6 @@ public class Layer1ApiHelperChaseStrategy extends Layer1ApiHelperStrategyAbstrac
     
     private Map<String, HelperChaseStrategySettings> settingsMap = new HashMap<>();
     
-    private Map<String, Double> lastPriceMap = new HashMap<>();
-    
     public Layer1ApiHelperChaseStrategy(Layer1ApiProvider provider) {
         super(provider, "Chase", "velox.strategy.Chase", HelperChaseStrategySettings.class);
     }
@@ -116,85 +114,83 @@ public class Layer1ApiHelperChaseStrategy extends Layer1ApiHelperStrategyAbstrac
     }
     
     @Override
-    protected void doActionForAlias(String alias) {
-        if (!getSettingsFor(alias).isEnabled() || !isWorking) {
+    protected void doActionForAlias(InstrumentState state, InstrumentContext context) {
+        String alias = state.alias;
+        HelperChaseStrategySettings settings = getSettings(context);
+        if (!settings.isEnabled() || !isWorking) {
             return;
         }
         
-        synchronized (locker) {
-            OrderBook orderBook = orderBookMap.get(alias);
-            Map<String, Combination<Integer, Boolean>> ordersMap = aliasToOrdersMap.get(alias);
-            Double pips = pipsMap.get(alias);
-            Map<OrderRequest, Long> requestTimesMap = lastRequestMap.get(alias);
-            
-            if (orderBook == null || ordersMap == null || pips == null || requestTimesMap == null) {
-                return;
-            }
-            
-            int distance = getSettingsFor(alias).getDistance();
-            
-            if (!orderBook.getBidMap().isEmpty() && !orderBook.getAskMap().isEmpty()) {
-                int chaseBidLevel = 0;
-                int chaseAskLevel = 0;
-                switch (getSettingsFor(alias).getMode()) {
-                case BEST_PRICE:
+        WorkingOrderIndex workingOrders = state.workingOrders;
+        double pips = state.pips;
+        RequestThrottle requestThrottle = context.requestThrottle;
+        OrderBook orderBook = state.depthIndex.getOrderBook();
+        
+        int distance = settings.getDistance();
+        
+        if (!orderBook.getBidMap().isEmpty() && !orderBook.getAskMap().isEmpty()) {
+            int chaseBidLevel = 0;
+            int chaseAskLevel = 0;
+            switch (settings.getMode()) {
+            case BEST_PRICE:
+                chaseBidLevel = orderBook.getBidMap().firstKey();
+                chaseAskLevel = orderBook.getAskMap().firstKey();
+                break;
+            case LAST_PRICE:
+                if (Double.isNaN(context.lastTradePrice)) {
                     chaseBidLevel = orderBook.getBidMap().firstKey();
                     chaseAskLevel = orderBook.getAskMap().firstKey();
-                    break;
-                case LAST_PRICE:
-                    if (!lastPriceMap.containsKey(alias)) {
-                        chaseBidLevel = orderBook.getBidMap().firstKey();
-                        chaseAskLevel = orderBook.getAskMap().firstKey();
-                    } else {
-                        chaseBidLevel = chaseAskLevel = (int) Math.round(lastPriceMap.get(alias));
-                    }
-                    break;
-                default:
-                    throw new IllegalArgumentException("Unknown chase mode: " + getSettingsFor(alias).getMode());
+                } else {
+                    chaseBidLevel = chaseAskLevel = (int) Math.round(context.lastTradePrice);
                 }
-                
-                ArrayList<Combination<String, Double>> pendingMoves = new ArrayList<>();
-                final int chaseBid = chaseBidLevel;
-                final int chaseAsk = chaseAskLevel;
-                ordersMap.forEach((orderId, info) -> {
-                    int level = info.first;
-                    Integer targetLevel = null;
-                    if (info.second) { //bid
-                        if (chaseBid - level > distance) {
-                            targetLevel = chaseBid - distance;
-                        }
-                    } else { //ask
-                        if (level - chaseAsk > distance) {
-                            targetLevel = chaseAsk + distance;
-                        }
-                    }
-                    
-                    if (targetLevel != null) {
-                        OrderRequest orderRequest = new OrderRequest(orderId, targetLevel);
-                        Long t = requestTimesMap.getOrDefault(orderRequest, 0L);
-                        
-                        if (System.currentTimeMillis() - t >= REQUEST_DELAY_MS) {
-                            pendingMoves.add(new Combination<String, Double>(orderId, targetLevel * pips));
-                            requestTimesMap.put(orderRequest, System.currentTimeMillis());
-                        }
-                    }
-                });
-                
-                for (Combination<String, Double> pendingMove : pendingMoves) {
-                    provider.updateOrder(new OrderMoveParameters(pendingMove.first, Double.NaN, pendingMove.second));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown chase mode: " + settings.getMode());
+            }
+            
+            ArrayList<Combination<String, Double>> pendingMoves = new ArrayList<>();
+            final int chaseBid = chaseBidLevel;
+            final int chaseAsk = chaseAskLevel;
+            // Only orders further than distance from the chased level
+            workingOrders.forEachOrder(true, Integer.MIN_VALUE, chaseBid - distance - 1, (orderId, level) -> {
+                int targetLevel = chaseBid - distance;
+                if (requestThrottle.tryRequest(orderId, targetLevel, System.currentTimeMillis())) {
+                    pendingMoves.add(new Combination<String, Double>(orderId, targetLevel * pips));
+                }
+            });
+            workingOrders.forEachOrder(false, chaseAsk + distance + 1, Integer.MAX_VALUE, (orderId, level) -> {
+                int targetLevel = chaseAsk + distance;
+                if (requestThrottle.tryRequest(orderId, targetLevel, System.currentTimeMillis())) {
+                    pendingMoves.add(new Combination<String, Double>(orderId, targetLevel * pips));
                 }
+            });
+            
+            ActionLatency latency = context.latency;
+            if (!pendingMoves.isEmpty()) {
+                latency.onDecision();
+            }
+            for (Combination<String, Double> pendingMove : pendingMoves) {
+                latency.onSubmit();
+                sendRequest(context, new OrderMoveParameters(pendingMove.first, Double.NaN, pendingMove.second));
             }
         }
     }
     
     @Override
     public void onTrade(String alias, double price, int size, TradeInfo tradeInfo) {
+        long eventNs = System.nanoTime();
         super.onTrade(alias, price, size, tradeInfo);
         
-        synchronized (locker) {
-            if (size > 0) {
-                lastPriceMap.put(alias, price);
-                doActionForAlias(alias);
+        if (size > 0) {
+            InstrumentState state = lockInstrument(alias);
+            if (state == null) {
+                return;
+            }
+            try {
+                getContext(state).lastTradePrice = price;
+                onStateChanged(state, eventNs);
+            } finally {
+                state.unlock();
             }
         }
     }
@@ -219,8 +215,13 @@ public class Layer1ApiHelperChaseStrategy extends Layer1ApiHelperStrategyAbstrac
     public void onUserMessage(Object data) {
         super.onUserMessage(data);
         if (data instanceof UserMessageRewindBase) {
-            synchronized (locker) {
-                lastPriceMap.clear();
+            for (InstrumentState state : instrumentStates.values()) {
+                state.lock();
+                try {
+                    getContext(state).lastTradePrice = Double.NaN;
+                } finally {
+                    state.unlock();
+                }
             }
         }
     }
@@ -7,7 +7,6 @@ import java.awt.GridBagLayout;
 import java.awt.Insets;
 import java.awt.event.ActionListener;
 import java.util.ArrayList;
-import java.util.Map;
 
 import javax.swing.ButtonGroup;
 import javax.swing.JLabel;
@@ -21,7 +20,6 @@ import velox.api.layer1.annotations.Layer1ApiVersionValue;
 import velox.api.layer1.annotations.Layer1Attachable;
 import velox.api.layer1.annotations.Layer1StrategyName;
 import velox.api.layer1.annotations.Layer1TradingStrategy;
-import velox.api.layer1.common.Log;
 import velox.api.layer1.config.beans.HelperEscapeStrategySettings;
 import velox.api.layer1.config.beans.HelperEscapeStrategySettings.Mode;
 import velox.api.layer1.data.OrderCancelParameters;
@@ -168,7 +166,7 @@ public class Layer1ApiHelperEscapeStrategy extends Layer1ApiHelperStrategyAbstra
             settings.setMode(Mode.MOVE);
             if (Mode.MOVE != currentMode) {
                 currentMode = settings.getMode();
-                lastRequestMap.forEach((currentAlias, map) -> map.clear());
+                clearRequestThrottles();
             }
             settingsChanged(alias, settings);
         };
@@ -181,7 +179,7 @@ public class Layer1ApiHelperEscapeStrategy extends Layer1ApiHelperStrategyAbstra
             settings.setMode(Mode.CANCEL);
             if (Mode.CANCEL != currentMode) {
                 currentMode = settings.getMode();
-                lastRequestMap.forEach((currentAlias, map) -> map.clear());
+                clearRequestThrottles();
             }
             settingsChanged(alias, settings);
         };
@@ -230,110 +228,93 @@ public class Layer1ApiHelperEscapeStrategy extends Layer1ApiHelperStrategyAbstra
     }
     
     @Override
-    protected void doActionForAlias(String alias) {
-        if (!getSettingsFor(alias).isEnabled() || !isWorking) {
+    protected void doActionForAlias(InstrumentState state, InstrumentContext context) {
+        HelperEscapeStrategySettings settings = getSettings(context);
+        if (!settings.isEnabled() || !isWorking) {
             return;
         }
         
-        synchronized (locker) {
-            OrderBook orderBook = orderBookMap.get(alias);
+        CumulativeDepthIndex depthIndex = state.depthIndex;
+        OrderBook orderBook = depthIndex.getOrderBook();
+        
+        int levelsNumber = settings.getConsideredLevelsNumber();
+        int affectedLevelsNumber = settings.getAffectedLevelsNumber();
+        int percent = settings.getPercent();
+        
+        int volumeBid = getTopLevelsSum(depthIndex, levelsNumber, true);
+        int volumeAsk = getTopLevelsSum(depthIndex, levelsNumber, false);
+        
+        if (!orderBook.getBidMap().isEmpty() && !orderBook.getAskMap().isEmpty()) {
+            int firstBidLevel = orderBook.getBidMap().firstKey();
+            int firstAskLevel = orderBook.getAskMap().firstKey();
             
-            if (orderBook == null) {
-                return;
+            if (isConditionSatisfiedLess(volumeBid, volumeAsk, percent)) {
+                executeAction(state, context, settings, true, firstBidLevel - affectedLevelsNumber + 1, firstAskLevel);
             }
             
-            int levelsNumber = getSettingsFor(alias).getConsideredLevelsNumber();
-            int affectedLevelsNumber = getSettingsFor(alias).getAffectedLevelsNumber();
-            int percent = getSettingsFor(alias).getPercent();
-            
-            int volumeBid = getTopLevelsSum(orderBook.getBidMap(), levelsNumber, true);
-            int volumeAsk = getTopLevelsSum(orderBook.getAskMap(), levelsNumber, false);
-            
-            if (!orderBook.getBidMap().isEmpty() && !orderBook.getAskMap().isEmpty()) {
-                int firstBidLevel = orderBook.getBidMap().firstKey();
-                int firstAskLevel = orderBook.getAskMap().firstKey();
-                
-                if (isConditionSatisfiedLess(volumeBid, volumeAsk, percent)) {
-                    executeAction(alias, true, firstBidLevel - affectedLevelsNumber + 1, firstAskLevel);
-                }
-                
-                if (isConditionSatisfiedLess(volumeAsk, volumeBid, percent)) {
-                    executeAction(alias, false, firstAskLevel + affectedLevelsNumber - 1, firstBidLevel);
-                }
+            if (isConditionSatisfiedLess(volumeAsk, volumeBid, percent)) {
+                executeAction(state, context, settings, false, firstAskLevel + affectedLevelsNumber - 1, firstBidLevel);
             }
         }
     }
     
     /**
      * Move orders with prices in range [-inf, borderLevel] or [borderLevel, +inf] (defined by isBid) by offset in moveDirection
-     * @param alias
+     * @param state locked state of the instrument
+     * @param context
+     * @param settings
      * @param isBid if true, execute condition for buy orders, otherwise for sell orders
      * @param borderLevel
      * @param oppositeStartLevel level where opposite trades start
      * @param offset
      * @param moveDirection
      */
-    private void executeAction(String alias, boolean isBid, final int borderLevel, final int oppositeStartLevel) {
-        synchronized (locker) {
-            ArrayList<Combination<String, Integer>> affectedOrders = new ArrayList<>();
-            
-            Map<String, Combination<Integer, Boolean>> ordersMap = aliasToOrdersMap.get(alias);
-            Double pips = pipsMap.get(alias);
-            Map<OrderRequest, Long> requestTimesMap = lastRequestMap.get(alias);
-            
-            if (ordersMap == null || pips == null || requestTimesMap == null) {
-                Log.warn("Helper strategy: unknown instrument: " + alias);
-                return;
-            }
-            
-            ordersMap.forEach((orderId, info) -> {
-                int level = info.first;
-                if (info.second == isBid && isPriceInRange(level, isBid, borderLevel)) {
-                    affectedOrders.add(new Combination<String, Integer>(orderId, level));
+    private void executeAction(InstrumentState state, InstrumentContext context, HelperEscapeStrategySettings settings, boolean isBid, final int borderLevel, final int oppositeStartLevel) {
+        ArrayList<Combination<String, Integer>> affectedOrders = new ArrayList<>();
+        
+        double pips = state.pips;
+        RequestThrottle requestThrottle = context.requestThrottle;
+        
+        // Orders are collected first, since updating an order can change the index
+        state.workingOrders.forEachOrder(isBid, isBid ? borderLevel : Integer.MIN_VALUE, isBid ? Integer.MAX_VALUE : borderLevel,
+                (orderId, level) -> affectedOrders.add(new Combination<String, Integer>(orderId, level)));
+        
+        int moveDelta = settings.getMoveDistance();
+        Mode mode = settings.getMode();
+        
+        if (isBid) {
+            moveDelta *= -1;
+        }
+        
+        // Only orders that pass the throttle count as a decision
+        ActionLatency latency = context.latency;
+        for (Combination<String, Integer> pair : affectedOrders) {
+            switch (mode) {
+            case CANCEL: {
+                if (requestThrottle.tryRequest(pair.first, pair.second, System.currentTimeMillis())) {
+                    latency.onSubmit();
+                    sendRequest(context, new OrderCancelParameters(pair.first));
                 }
-            });
-            
-            int moveDelta = getSettingsFor(alias).getMoveDistance();
-            Mode mode = getSettingsFor(alias).getMode();
-            
-            if (isBid) {
-                moveDelta *= -1;
-            }
-            
-            for (Combination<String, Integer> pair : affectedOrders) {
-                switch (mode) {
-                case CANCEL: {
-                    OrderRequest orderRequest = new OrderRequest(pair.first, pair.second);
-                    Long t = requestTimesMap.getOrDefault(orderRequest, 0L);
-                    
-                    if (System.currentTimeMillis() - t >= REQUEST_DELAY_MS) {
-                        provider.updateOrder(new OrderCancelParameters(pair.first));
-                        requestTimesMap.put(orderRequest, System.currentTimeMillis());
-                    }
-                    
-                    break;
-                } case MOVE: {
-                    //avoid multiple moves, move 1 time [minLevel, maxLevel]
-                    int k = 1;
-                    while (isPriceInRange(pair.second + moveDelta * k, isBid, borderLevel) &&
-                            !isPriceinOppositeRange(pair.second + moveDelta * k, !isBid, oppositeStartLevel)) {
-                        k++;
-                    }
-                    
-                    OrderRequest orderRequest = new OrderRequest(pair.first, pair.second + k * moveDelta);
-                    Long t = requestTimesMap.getOrDefault(orderRequest, 0L);
-                    
-                    if (System.currentTimeMillis() - t >= REQUEST_DELAY_MS) {
-                        provider.updateOrder(new OrderMoveParameters(pair.first, Double.NaN, (pair.second + k * moveDelta) * pips));
-                        requestTimesMap.put(orderRequest, System.currentTimeMillis());
-                    }
-                    
-                    break;
-                } default:
-                    throw new IllegalArgumentException("Helper strategy: unknown mode: " + mode);
+                
+                break;
+            } case MOVE: {
+                //avoid multiple moves, move 1 time [minLevel, maxLevel]
+                int k = 1;
+                while (isPriceInRange(pair.second + moveDelta * k, isBid, borderLevel) &&
+                        !isPriceinOppositeRange(pair.second + moveDelta * k, !isBid, oppositeStartLevel)) {
+                    k++;
                 }
                 
+                if (requestThrottle.tryRequest(pair.first, pair.second + k * moveDelta, System.currentTimeMillis())) {
+                    latency.onSubmit();
+                    sendRequest(context, new OrderMoveParameters(pair.first, Double.NaN, (pair.second + k * moveDelta) * pips));
+                }
+                
+                break;
+            } default:
+                throw new IllegalArgumentException("Helper strategy: unknown mode: " + mode);
             }
+            
         }
     }
 
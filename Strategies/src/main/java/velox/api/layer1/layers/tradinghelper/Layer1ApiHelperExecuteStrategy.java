@@ -3,7 +3,6 @@ package velox.api.layer1.layers.tradinghelper;
 import java.awt.Dimension;
 import java.awt.FlowLayout;
 import java.util.ArrayList;
-import java.util.Map;
 
 import javax.swing.JLabel;
 import javax.swing.JSpinner;
@@ -120,58 +119,51 @@ public class Layer1ApiHelperExecuteStrategy extends Layer1ApiHelperStrategyAbstr
     }
     
     @Override
-    protected void doActionForAlias(String alias) {
-        if (!getSettingsFor(alias).isEnabled() || !isWorking) {
+    protected void doActionForAlias(InstrumentState state, InstrumentContext context) {
+        HelperExecuteStrategySettings settings = getSettings(context);
+        if (!settings.isEnabled() || !isWorking) {
             return;
         }
         
-        synchronized (locker) {
-            OrderBook orderBook = orderBookMap.get(alias);
-            Map<String, Combination<Integer, Boolean>> ordersMap = aliasToOrdersMap.get(alias);
-            Double pips = pipsMap.get(alias);
-            Map<OrderRequest, Long> requestTimesMap = lastRequestMap.get(alias);
-            
-            if (orderBook == null || ordersMap == null || pips == null || requestTimesMap == null) {
-                return;
-            }
-            
-            ArrayList<Combination<String, Double>> pendingMoves = new ArrayList<>();
-            
-            int levelsNumber = getSettingsFor(alias).getLevelsNumber();
-            
-            int volumeBid = getTopLevelsSum(orderBook.getBidMap(), levelsNumber, true);
-            int volumeAsk = getTopLevelsSum(orderBook.getAskMap(), levelsNumber, false);
-            int percent = getSettingsFor(alias).getPercent();
-            int distance = getSettingsFor(alias).getTickNumber();
-            
-            if (!orderBook.getBidMap().isEmpty() && !orderBook.getAskMap().isEmpty()) {
-                if (isConditionSatisfiedMore(volumeAsk, volumeBid, percent)) {
-                    moveOrders(false, orderBook.getAskMap().firstKey() - distance,ordersMap, pips, requestTimesMap, levelsNumber, pendingMoves);
-                }
-                
-                if (isConditionSatisfiedMore(volumeBid, volumeAsk, percent)) {
-                    moveOrders(true, orderBook.getBidMap().firstKey() + distance, ordersMap, pips, requestTimesMap, levelsNumber, pendingMoves);
-                }
+        CumulativeDepthIndex depthIndex = state.depthIndex;
+        double pips = state.pips;
+        OrderBook orderBook = depthIndex.getOrderBook();
+        
+        ArrayList<Combination<String, Double>> pendingMoves = new ArrayList<>();
+        
+        int levelsNumber = settings.getLevelsNumber();
+        
+        int volumeBid = getTopLevelsSum(depthIndex, levelsNumber, true);
+        int volumeAsk = getTopLevelsSum(depthIndex, levelsNumber, false);
+        int percent = settings.getPercent();
+        int distance = settings.getTickNumber();
+        
+        if (!orderBook.getBidMap().isEmpty() && !orderBook.getAskMap().isEmpty()) {
+            if (isConditionSatisfiedMore(volumeAsk, volumeBid, percent)) {
+                moveOrders(false, orderBook.getAskMap().firstKey() - distance, state.workingOrders, pips, context.requestThrottle, levelsNumber, pendingMoves);
             }
             
-            for (Combination<String, Double> pendingMove : pendingMoves) {
-                provider.updateOrder(new OrderMoveParameters(pendingMove.first, Double.NaN, pendingMove.second));
+            if (isConditionSatisfiedMore(volumeBid, volumeAsk, percent)) {
+                moveOrders(true, orderBook.getBidMap().firstKey() + distance, state.workingOrders, pips, context.requestThrottle, levelsNumber, pendingMoves);
             }
         }
+        
+        ActionLatency latency = context.latency;
+        if (!pendingMoves.isEmpty()) {
+            latency.onDecision();
+        }
+        for (Combination<String, Double> pendingMove : pendingMoves) {
+            latency.onSubmit();
+            sendRequest(context, new OrderMoveParameters(pendingMove.first, Double.NaN, pendingMove.second));
+        }
     }
     
-    private void moveOrders(boolean isBid, int targetLevel, Map<String, Combination<Integer, Boolean>> ordersMap,
-            double pips, Map<OrderRequest, Long> requestTimesMap,
+    private void moveOrders(boolean isBid, int targetLevel, WorkingOrderIndex workingOrders,
+            double pips, RequestThrottle requestThrottle,
             int levelsNumber, ArrayList<Combination<String, Double>> pendingMoves) {
-        ordersMap.forEach((orderId, info) -> {
-            if (info.second == isBid) {
-                OrderRequest orderRequest = new OrderRequest(orderId, targetLevel);
-                Long t = requestTimesMap.getOrDefault(orderRequest, 0L);
-                
-                if (System.currentTimeMillis() - t >= REQUEST_DELAY_MS) {
-                    pendingMoves.add(new Combination<String, Double>(orderId, targetLevel * pips));
-                    requestTimesMap.put(orderRequest, System.currentTimeMillis());
-                }
+        workingOrders.forEachOrder(isBid, Integer.MIN_VALUE, Integer.MAX_VALUE, (orderId, level) -> {
+            if (requestThrottle.tryRequest(orderId, targetLevel, System.currentTimeMillis())) {
+                pendingMoves.add(new Combination<String, Double>(orderId, targetLevel * pips));
             }
         });
     }
@@ -3,17 +3,29 @@ package velox.api.layer1.layers.tradinghelper;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
-import java.util.HashMap;
+import java.awt.FlowLayout;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
+import javax.swing.JButton;
 import javax.swing.JCheckBox;
 import javax.swing.JFormattedTextField;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
 import javax.swing.JSpinner;
+import javax.swing.Timer;
 import javax.swing.text.NumberFormatter;
 
-import java.util.TreeMap;
-
 import velox.api.layer1.Layer1ApiProvider;
 import velox.api.layer1.Layer1ApiTradingAdapter;
 import velox.api.layer1.Layer1ApiAdminAdapter;
@@ -26,18 +38,19 @@ import velox.api.layer1.Layer1InternallyControllingEnable;
 import velox.api.layer1.annotations.Layer1TradingStrategy;
 import velox.api.layer1.common.ListenableHelper;
 import velox.api.layer1.common.Log;
+import velox.api.layer1.config.beans.HelperRateLimitSettings;
 import velox.api.layer1.config.beans.HelperStrategySettings;
 import velox.api.layer1.data.InstrumentInfo;
 import velox.api.layer1.data.OrderInfoUpdate;
 import velox.api.layer1.data.OrderStatus;
 import velox.api.layer1.data.OrderType;
+import velox.api.layer1.data.OrderUpdateParameters;
 import velox.api.layer1.layers.utils.OrderBook;
 import velox.api.layer1.messages.UserMessageLayersChainCreatedTargeted;
 import velox.api.layer1.messages.UserMessageRewindBase;
 import velox.api.layer1.messages.indicators.Layer1ApiUserMessageModifyIndicator;
 import velox.api.layer1.messages.indicators.SettingsAccess;
 import velox.api.layer1.messages.indicators.Layer1ApiUserMessageModifyIndicator.GraphType;
-import velox.api.layer1.providers.data.Combination;
 import velox.api.layer1.settings.Layer1ConfigSettingsInterface;
 import velox.gui.StrategyPanel;
 
@@ -57,16 +70,57 @@ public class Layer1ApiHelperStrategyAbstract<V extends HelperStrategySettings> i
     protected final String userReadableStrategyName;
     protected final String strategyName;
     
+    private static final int STATISTICS_UPDATE_INTERVAL_MS = 500;
+    private static final int CONFLATION_INTERVAL_MIN = 0;
+    private static final int CONFLATION_INTERVAL_MAX = 1000;
+    private static final int REQUESTS_PER_SECOND_MIN = 0;
+    private static final int REQUESTS_PER_SECOND_MAX = 1000;
+    /** Rate limits are common for all instruments, so they are stored separately from instrument settings */
+    private static final String RATE_LIMIT_SETTINGS_SUFFIX = ".rateLimit";
+    
+    /**
+     * Guards GUI and loading of settings. Instrument data is guarded by
+     * locks of {@link InstrumentState}, so data of different instruments can
+     * be processed in parallel.
+     */
     protected Object locker = new Object();
     
-    private Map<String, V> settingsMap = new HashMap<>();
+    private Map<String, V> settingsMap = new ConcurrentHashMap<>();
+    /** Settings for null alias, that can't be a key of settingsMap */
+    private volatile V defaultSettings;
     
     protected StrategyPanel[] lastPanels;
     
-    protected Map<String, OrderBook> orderBookMap = new HashMap<>(); //alias - order book
-    protected Map<String, Map<String, Combination<Integer, Boolean>>> aliasToOrdersMap = new HashMap<>(); //alias - (orderId - <price, isBid>)
-    protected Map<String, Double> pipsMap = new HashMap<>();
-    protected Map<String, Map<OrderRequest, Long>> lastRequestMap = new HashMap<>(); //alias - mapping <(order id, level number) - last time request on that level was made>
+    protected final SharedInstrumentStates sharedStates;
+    protected final Map<String, InstrumentState> instrumentStates; //alias - state, shared by helper strategies of the provider
+    private final OrderRateGovernor rateGovernor;
+    /**
+     * Data of this strategy per instrument, indexed by {@link InstrumentState#id}.
+     * Elements and resizing are guarded by contextsLock, reads are not.
+     */
+    private volatile InstrumentContext[] contexts = new InstrumentContext[16];
+    private final Object contextsLock = new Object();
+    
+    /** Modified from GUI only, applied under contextsLock */
+    private volatile HelperRateLimitSettings rateLimitSettings = new HelperRateLimitSettings();
+    private volatile int instrumentRequestsPerSecond;
+    /** Limit of moves per second for all instruments, null if not limited */
+    private volatile TokenBucket totalRequestBucket;
+    
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    
+    /** Guards the executor and isEvaluationStopped */
+    private final Object evaluationLock = new Object();
+    private ScheduledExecutorService evaluationExecutor;
+    private boolean isEvaluationStopped;
+    private final LongAdder evaluationsCount = new LongAdder();
+    private final LongAdder skippedEvaluationsCount = new LongAdder();
+    
+    private JLabel statisticsLabel = new JLabel();
+    private volatile String statisticsAlias;
+    private Timer statisticsTimer = new Timer(STATISTICS_UPDATE_INTERVAL_MS, e -> updateStatistics());
+    private long lastStatisticsEvaluationsCount;
+    private long lastStatisticsTimeNs;
     
     protected SettingsAccess settingsAccess;
     
@@ -82,25 +136,224 @@ public class Layer1ApiHelperStrategyAbstract<V extends HelperStrategySettings> i
         this.provider = provider;
         this.settingsClass = settingsClass;
         
-        ListenableHelper.addListeners(provider, this);
-        
         this.userReadableStrategyName = userReadableStrategyName;
         this.strategyName = strategyName;
+        
+        sharedStates = SharedInstrumentStates.attach(provider, this);
+        instrumentStates = sharedStates.getStates();
+        rateGovernor = sharedStates.getRateGovernor();
+        ListenableHelper.addListeners(provider, this);
     }
     
     protected void settingsChanged(String settingsAlias, HelperStrategySettings settingsObject) {
-        synchronized (locker) {
-            V instrumentSettings = getSettingsFor(settingsAlias);
-            
-            settingsAccess.setSettings(settingsAlias, strategyName, settingsObject, settingsObject.getClass());
-            
-            for (String alias : orderBookMap.keySet()) {
-                doActionForAlias(alias);
+        settingsAccess.setSettings(settingsAlias, strategyName, settingsObject, settingsObject.getClass());
+        publishSettings();
+        
+        // Each instrument is only locked while its own action is done
+        for (InstrumentState state : instrumentStates.values()) {
+            evaluate(state.alias, ActionLatency.NO_EVENT);
+        }
+    }
+    
+    /**
+     * Evaluates rules for the alias with its lock held.
+     *
+     * @param eventNs {@link System#nanoTime()} when the event that caused the
+     *            evaluation was received, or {@link ActionLatency#NO_EVENT}
+     */
+    protected void evaluate(String alias, long eventNs) {
+        InstrumentState state = lockInstrument(alias);
+        if (state != null) {
+            try {
+                onStateChanged(state, eventNs);
+            } finally {
+                state.unlock();
+            }
+        }
+    }
+    
+    /**
+     * Evaluates rules of the strategy for the instrument. Called with the lock
+     * of the instrument held.
+     */
+    protected void doActionForAlias(InstrumentState state, InstrumentContext context) {
+    }
+    
+    /**
+     * Called by {@link SharedInstrumentStates} with the lock of the instrument held.
+     */
+    void onStateChanged(InstrumentState state, long eventNs) {
+        // Settings can't be loaded before they are provided, and nothing is done after finish
+        if (!isWorking || settingsAccess == null) {
+            return;
+        }
+        evaluationsCount.increment();
+        InstrumentContext context = getContext(state);
+        context.latency.onEvaluation(eventNs);
+        doActionForAlias(state, context);
+    }
+    
+    /**
+     * Called by {@link SharedInstrumentStates} with the lock of the instrument
+     * held. Unless conflation is disabled for the instrument, rules are
+     * evaluated later, once for all depth updates received until then.
+     */
+    void onDepthChanged(InstrumentState state, long eventNs) {
+        if (!isWorking || settingsAccess == null) {
+            return;
+        }
+        InstrumentContext context = getContext(state);
+        int conflationIntervalMs = context.settings.getConflationIntervalMs();
+        if (conflationIntervalMs <= 0) {
+            onStateChanged(state, eventNs);
+            return;
+        }
+        
+        if (context.isDepthDirty.compareAndSet(false, true)) {
+            context.dirtyEventNs = eventNs;
+            String alias = state.alias;
+            synchronized (evaluationLock) {
+                if (isEvaluationStopped) {
+                    return;
+                }
+                if (evaluationExecutor == null) {
+                    evaluationExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                        Thread thread = new Thread(r, userReadableStrategyName + " depth evaluation");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+                evaluationExecutor.schedule(() -> evaluateConflated(alias, context), conflationIntervalMs, TimeUnit.MILLISECONDS);
+            }
+        } else {
+            skippedEvaluationsCount.increment();
+        }
+    }
+    
+    private void evaluateConflated(String alias, InstrumentContext context) {
+        // Updates that come during evaluation will schedule a new one
+        long eventNs = context.dirtyEventNs;
+        context.isDepthDirty.set(false);
+        evaluate(alias, eventNs);
+    }
+    
+    /**
+     * @return data of this strategy for the instrument, created on first use.
+     *         Has to be used with the lock of the instrument held.
+     */
+    protected InstrumentContext getContext(InstrumentState state) {
+        InstrumentContext[] contexts = this.contexts;
+        InstrumentContext context = state.id < contexts.length ? contexts[state.id] : null;
+        return context != null ? context : createContext(state);
+    }
+    
+    private InstrumentContext createContext(InstrumentState state) {
+        // Loaded before taking the lock, as loading synchronizes on locker
+        V settings = getSettingsFor(state.alias);
+        synchronized (contextsLock) {
+            InstrumentContext[] contexts = this.contexts;
+            if (state.id >= contexts.length) {
+                contexts = Arrays.copyOf(contexts, Math.max(contexts.length * 2, state.id + 1));
+            }
+            InstrumentContext context = contexts[state.id];
+            if (context == null) {
+                context = new InstrumentContext(state.alias, settings.readOnlyCopy(), REQUEST_DELAY_MS,
+                        createRequestBucket(instrumentRequestsPerSecond));
+                contexts[state.id] = context;
+            }
+            // Written even if not resized, so the new element is visible to readers
+            this.contexts = contexts;
+            return context;
+        }
+    }
+    
+    /**
+     * @return settings of the instrument as they were when the evaluation
+     *         started; read-only, setters throw
+     *         {@link UnsupportedOperationException}
+     */
+    @SuppressWarnings("unchecked")
+    protected V getSettings(InstrumentContext context) {
+        return (V) context.settings;
+    }
+    
+    /**
+     * Replaces settings snapshots of all instruments with read-only copies
+     * of the current settings. Has to be called after settings are modified.
+     */
+    protected void publishSettings() {
+        synchronized (contextsLock) {
+            for (InstrumentContext context : contexts) {
+                if (context != null) {
+                    // Already loaded when the context was created, so no locker is taken
+                    context.settings = getSettingsFor(context.alias).readOnlyCopy();
+                }
+            }
+        }
+    }
+    
+    /**
+     * @return context of the alias if this strategy has one, for monitoring only
+     */
+    private InstrumentContext findContext(String alias) {
+        int id = sharedStates.getAliasId(alias);
+        InstrumentContext[] contexts = this.contexts;
+        return id < contexts.length ? contexts[id] : null;
+    }
+    
+    /**
+     * Forgets requests made by this strategy for all instruments
+     */
+    protected void clearRequestThrottles() {
+        for (InstrumentContext context : contexts) {
+            if (context != null) {
+                context.requestThrottle = new RequestThrottle(REQUEST_DELAY_MS);
+            }
+        }
+    }
+    
+    /**
+     * Passes the order update to the provider as allowed by the rate limits
+     * of the strategy. If a limit is reached, a move is sent later, unless a
+     * newer move of the same order replaces it. Cancels are never limited.
+     */
+    protected void sendRequest(InstrumentContext context, OrderUpdateParameters parameters) {
+        rateGovernor.send(this, context.alias, provider, parameters, context.requestBucket, totalRequestBucket);
+    }
+    
+    /**
+     * @return bucket that allows a second of requests at once, or null if
+     *         requests are not limited
+     */
+    private static TokenBucket createRequestBucket(int requestsPerSecond) {
+        return requestsPerSecond > 0 ? new TokenBucket(requestsPerSecond, requestsPerSecond) : null;
+    }
+    
+    /**
+     * Replaces rate limits of the strategy with ones from rateLimitSettings
+     */
+    private void applyRateLimits() {
+        synchronized (contextsLock) {
+            instrumentRequestsPerSecond = rateLimitSettings.getInstrumentRequestsPerSecond();
+            totalRequestBucket = createRequestBucket(rateLimitSettings.getTotalRequestsPerSecond());
+            for (InstrumentContext context : contexts) {
+                if (context != null) {
+                    context.requestBucket = createRequestBucket(instrumentRequestsPerSecond);
+                }
             }
         }
     }
     
-    protected void doActionForAlias(String alias) {
+    /**
+     * @return locked state of the instrument, or null if it's not known.
+     *         Has to be unlocked by the caller.
+     */
+    protected InstrumentState lockInstrument(String alias) {
+        InstrumentState state = instrumentStates.get(alias);
+        if (state != null) {
+            state.lock();
+        }
+        return state;
     }
     
     @Override
@@ -112,41 +365,57 @@ public class Layer1ApiHelperStrategyAbstract<V extends HelperStrategySettings> i
     public void finish() {
         isWorking = false;
         onUserMessage(new Layer1ApiUserMessageModifyIndicator(Layer1ApiHelperStrategyAbstract.class, userReadableStrategyName, false));
-        synchronized (locker) {
-            orderBookMap.clear();
-            aliasToOrdersMap.clear();
-            lastRequestMap.clear();
+        statisticsTimer.stop();
+        rateGovernor.discardAll(this);
+        sharedStates.detach(this);
+        synchronized (evaluationLock) {
+            isEvaluationStopped = true;
+            if (evaluationExecutor != null) {
+                evaluationExecutor.shutdownNow();
+            }
+        }
+        synchronized (contextsLock) {
+            contexts = new InstrumentContext[contexts.length];
         }
     }
     
     @Override
     public void onInstrumentAdded(String alias, InstrumentInfo instrumentInfo) {
-        synchronized (locker) {
-            aliasToOrdersMap.put(alias, new HashMap<>());
-            orderBookMap.put(alias, new OrderBook());
-            pipsMap.put(alias, instrumentInfo.pips);
-            lastRequestMap.put(alias, new TreeMap<>());
+        if (sharedStates.isSource(this)) {
+            instrumentStates.put(alias, new InstrumentState(sharedStates.getAliasId(alias), alias, instrumentInfo.pips));
         }
     }
     
     @Override
     public void onInstrumentRemoved(String alias) {
-        synchronized (locker) {
-            orderBookMap.remove(alias);
-            lastRequestMap.remove(alias);
+        if (sharedStates.isSource(this)) {
+            instrumentStates.remove(alias);
+            rateGovernor.removeAlias(alias);
+        }
+        int id = sharedStates.getAliasId(alias);
+        synchronized (contextsLock) {
+            if (id < contexts.length) {
+                contexts[id] = null;
+            }
         }
     }
     
     @Override
     public void onDepth(String alias, boolean isBid, int price, int size) {
-        synchronized (locker) {
-            OrderBook orderBook = orderBookMap.get(alias);
-            if (orderBook != null) {
-                orderBook.onUpdate(isBid, price, size);
-                doActionForAlias(alias);
-            } else {
-                Log.warn("Helper strategy: unknown instrument " + alias);
-            }
+        if (!sharedStates.isSource(this)) {
+            return;
+        }
+        long eventNs = System.nanoTime();
+        InstrumentState state = lockInstrument(alias);
+        if (state == null) {
+            Log.warn("Helper strategy: unknown instrument " + alias);
+            return;
+        }
+        try {
+            state.depthIndex.onUpdate(isBid, price, size);
+            sharedStates.onDepthChanged(state, eventNs);
+        } finally {
+            state.unlock();
         }
     }
     
@@ -159,45 +428,58 @@ public class Layer1ApiHelperStrategyAbstract<V extends HelperStrategySettings> i
                 onUserMessage(new Layer1ApiUserMessageModifyIndicator(Layer1ApiHelperStrategyAbstract.class, userReadableStrategyName, true,
                         null, null, null, null, null, null, null, null, null, null, GraphType.NONE, false, null, null, null, null));
             }
-        } else if (data instanceof UserMessageRewindBase) {
+        } else if (data instanceof UserMessageRewindBase && sharedStates.isSource(this)) {
             UserMessageRewindBase message = (UserMessageRewindBase) data;
             
-            synchronized (locker) {
-                for (Entry<String, OrderBook> entry : message.aliasToOrderBooksMap.entrySet()) {
-                    OrderBook orderBook = orderBookMap.get(entry.getKey());
-                    
-                    if (orderBook != null) {
-                        orderBookMap.put(entry.getKey(), new OrderBook(entry.getValue()));
+            for (Entry<String, OrderBook> entry : message.aliasToOrderBooksMap.entrySet()) {
+                InstrumentState state = lockInstrument(entry.getKey());
+                
+                if (state != null) {
+                    try {
+                        state.depthIndex = new CumulativeDepthIndex(new OrderBook(entry.getValue()));
+                    } finally {
+                        state.unlock();
                     }
                 }
-                
-                aliasToOrdersMap.forEach((alias, orderMap) -> orderMap.clear());
+            }
+            
+            for (InstrumentState state : instrumentStates.values()) {
+                state.lock();
+                try {
+                    state.workingOrders.clear();
+                } finally {
+                    state.unlock();
+                }
             }
         }
     }
 
     @Override
     public void onOrderUpdated(OrderInfoUpdate orderInfoUpdate) {
-        synchronized (locker) {
-            Map<String, Combination<Integer, Boolean>> ordersMap = aliasToOrdersMap.get(orderInfoUpdate.instrumentAlias);
-            if (ordersMap == null) {
-                ordersMap = new HashMap<>();
-                aliasToOrdersMap.put(orderInfoUpdate.instrumentAlias, ordersMap);
+        if (!sharedStates.isSource(this)) {
+            return;
+        }
+        long eventNs = System.nanoTime();
+        InstrumentState state = lockInstrument(orderInfoUpdate.instrumentAlias);
+        if (state == null) {
+            if (orderInfoUpdate.type == OrderType.LMT && orderInfoUpdate.unfilled != 0 && orderInfoUpdate.status == OrderStatus.WORKING) {
+                Log.warn("Helper strategy: unknown instrument: " + orderInfoUpdate.instrumentAlias);
             }
+            return;
+        }
+        try {
             if (orderInfoUpdate.type == OrderType.LMT) {
                 if (orderInfoUpdate.unfilled == 0 || !(orderInfoUpdate.status == OrderStatus.WORKING)) {
-                    ordersMap.remove(orderInfoUpdate.orderId);
+                    state.workingOrders.remove(orderInfoUpdate.orderId);
+                    rateGovernor.discard(orderInfoUpdate.orderId);
                 } else {
-                    Double pips = pipsMap.get(orderInfoUpdate.instrumentAlias);
-                    if (pips == null) {
-                        Log.warn("Helper strategy: unknown instrument: " + orderInfoUpdate.instrumentAlias);
-                    } else {
-                        ordersMap.put(orderInfoUpdate.orderId, new Combination<Integer, Boolean>((int) Math.round(orderInfoUpdate.limitPrice / pips), orderInfoUpdate.isBuy));
-                    }
+                    state.workingOrders.put(orderInfoUpdate.orderId, orderInfoUpdate.isBuy, (int) Math.round(orderInfoUpdate.limitPrice / state.pips));
                 }
             }
             
-            doActionForAlias(orderInfoUpdate.instrumentAlias);
+            sharedStates.onStateChanged(state, eventNs);
+        } finally {
+            state.unlock();
         }
     }
     
@@ -206,20 +488,8 @@ public class Layer1ApiHelperStrategyAbstract<V extends HelperStrategySettings> i
         ((NumberFormatter) tfield.getFormatter()).setAllowsInvalid(false);
     }
     
-    protected int getTopLevelsSum(TreeMap<Integer, Long> map, int levelsNumber, boolean isBid) {
-        if (map.isEmpty()) {
-            return 0;
-        }
-        
-        int result = 0;
-        
-        int topPrice = map.firstKey();
-        for (int i = 0; i < levelsNumber; i++) {
-            int price = topPrice + i * (isBid ? -1 : 1);
-            result += map.getOrDefault(price, 0L);
-        }
-                
-        return result;
+    protected int getTopLevelsSum(CumulativeDepthIndex depthIndex, int levelsNumber, boolean isBid) {
+        return (int) depthIndex.getTopLevelsSum(isBid, levelsNumber);
     }
     
     protected boolean isConditionSatisfiedLess(int volumeOur, int volumeTheir, double percent) {
@@ -259,15 +529,158 @@ public class Layer1ApiHelperStrategyAbstract<V extends HelperStrategySettings> i
         gbConst.insets = new Insets(5, 5, 5, 5);
         panel.add(cbUseInstrumentSettings, gbConst);
         
+        JPanel conflationPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        JSpinner spinnerConflationInterval = Utils.createSpinner(getSettingsFor(alias).getConflationIntervalMs(),
+                CONFLATION_INTERVAL_MIN, CONFLATION_INTERVAL_MAX, 5);
+        setSpinnerOnlyNumbers(spinnerConflationInterval);
+        spinnerConflationInterval.addChangeListener(e -> {
+            V settings = getSettingsFor(alias);
+            settings.setConflationIntervalMs((Integer) spinnerConflationInterval.getValue());
+            settingsAccess.setSettings(alias, strategyName, settings, settingsClass);
+            publishSettings();
+        });
+        conflationPanel.add(new JLabel("Evaluate depth at most every "));
+        conflationPanel.add(spinnerConflationInterval);
+        conflationPanel.add(new JLabel(" ms (0 - on every update)"));
+        gbConst.gridy = 1;
+        panel.add(conflationPanel, gbConst);
+        
+        JPanel rateLimitPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        JSpinner spinnerInstrumentRate = Utils.createSpinner(rateLimitSettings.getInstrumentRequestsPerSecond(),
+                REQUESTS_PER_SECOND_MIN, REQUESTS_PER_SECOND_MAX, 1);
+        JSpinner spinnerTotalRate = Utils.createSpinner(rateLimitSettings.getTotalRequestsPerSecond(),
+                REQUESTS_PER_SECOND_MIN, REQUESTS_PER_SECOND_MAX, 1);
+        setSpinnerOnlyNumbers(spinnerInstrumentRate);
+        setSpinnerOnlyNumbers(spinnerTotalRate);
+        spinnerInstrumentRate.addChangeListener(e -> {
+            rateLimitSettings.setInstrumentRequestsPerSecond((Integer) spinnerInstrumentRate.getValue());
+            rateLimitSettingsChanged();
+        });
+        spinnerTotalRate.addChangeListener(e -> {
+            rateLimitSettings.setTotalRequestsPerSecond((Integer) spinnerTotalRate.getValue());
+            rateLimitSettingsChanged();
+        });
+        rateLimitPanel.add(new JLabel("Limit moves to "));
+        rateLimitPanel.add(spinnerInstrumentRate);
+        rateLimitPanel.add(new JLabel(" per instrument and "));
+        rateLimitPanel.add(spinnerTotalRate);
+        rateLimitPanel.add(new JLabel(" in total per second (0 - no limit)"));
+        gbConst.gridy = 2;
+        panel.add(rateLimitPanel, gbConst);
+        
+        gbConst.gridy = 3;
+        panel.add(statisticsLabel, gbConst);
+        
+        JButton exportLatenciesButton = new JButton("Export latencies");
+        exportLatenciesButton.addActionListener(e -> exportLatencies());
+        gbConst.gridy = 4;
+        gbConst.fill = GridBagConstraints.NONE;
+        panel.add(exportLatenciesButton, gbConst);
+        
+        statisticsAlias = alias;
+        updateStatistics();
+        statisticsTimer.start();
+        
         return panel;
     }
     
+    private void updateStatistics() {
+        long evaluations = evaluationsCount.sum();
+        long now = System.nanoTime();
+        long evaluationsPerSecond = lastStatisticsTimeNs == 0 || now == lastStatisticsTimeNs ? 0
+                : (evaluations - lastStatisticsEvaluationsCount) * TimeUnit.SECONDS.toNanos(1) / (now - lastStatisticsTimeNs);
+        lastStatisticsEvaluationsCount = evaluations;
+        lastStatisticsTimeNs = now;
+        
+        StringBuilder text = new StringBuilder("<html>Rule evaluations/s: ").append(evaluationsPerSecond)
+                .append(" (conflated updates: ").append(skippedEvaluationsCount.sum()).append(")")
+                .append("<br/>Order updates of helpers on this connection: ").append(rateGovernor.getSentCount()).append(" sent, ")
+                .append(rateGovernor.getDeferredCount()).append(" rate limited (")
+                .append(rateGovernor.getCoalescedCount()).append(" replaced by newer, ")
+                .append(rateGovernor.getPendingCount()).append(" pending)");
+        InstrumentContext context = statisticsAlias == null ? null : findContext(statisticsAlias);
+        if (context != null) {
+            appendPercentiles(text.append("<br/>Event to decision, us: "), context.latency.eventToDecision);
+            appendPercentiles(text.append("<br/>Decision to submit, us: "), context.latency.decisionToSubmit);
+        }
+        InstrumentState state = statisticsAlias == null ? null : instrumentStates.get(statisticsAlias);
+        if (state != null) {
+            text.append("<br/>Lock waits: ").append(state.getContendedCount()).append(" of ").append(state.getAcquisitionsCount())
+                    .append("<br/>Wait time, us: ").append(TimeUnit.NANOSECONDS.toMicros(state.getWaitNs()))
+                    .append(" (max ").append(TimeUnit.NANOSECONDS.toMicros(state.getMaxWaitNs())).append(")");
+        }
+        statisticsLabel.setText(text.append("</html>").toString());
+    }
+    
+    private static void appendPercentiles(StringBuilder text, LatencyHistogram histogram) {
+        for (double percentile : PERCENTILES) {
+            text.append("p").append(percentile).append(" ")
+                    .append(TimeUnit.NANOSECONDS.toMicros(histogram.getPercentile(percentile))).append(", ");
+        }
+        text.append("max ").append(TimeUnit.NANOSECONDS.toMicros(histogram.getMax()))
+                .append(" (").append(histogram.getCount()).append(")");
+    }
+    
+    /**
+     * Writes percentiles and non-empty buckets of the latency histograms of
+     * all instruments to a CSV file in working directory, so runs can be
+     * compared offline.
+     */
+    private void exportLatencies() {
+        File file = new File(System.getProperty("user.dir"),
+                "HelperLatency_" + userReadableStrategyName + "-" + System.currentTimeMillis() + ".csv");
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
+            writer.print("alias,histogram,count");
+            for (double percentile : PERCENTILES) {
+                writer.print(",p" + percentile + "_ns");
+            }
+            writer.println(",max_ns");
+            for (InstrumentContext context : contexts) {
+                if (context != null) {
+                    writePercentiles(writer, context.alias, "event_to_decision", context.latency.eventToDecision);
+                    writePercentiles(writer, context.alias, "decision_to_submit", context.latency.decisionToSubmit);
+                }
+            }
+            
+            writer.println();
+            writer.println("alias,histogram,bucket_from_ns,bucket_to_ns,count");
+            for (InstrumentContext context : contexts) {
+                if (context != null) {
+                    writeBuckets(writer, context.alias, "event_to_decision", context.latency.eventToDecision);
+                    writeBuckets(writer, context.alias, "decision_to_submit", context.latency.decisionToSubmit);
+                }
+            }
+            Log.info("Helper strategy: latencies exported to " + file);
+        } catch (IOException e) {
+            Log.warn("Helper strategy: failed to export latencies", e);
+        }
+    }
+    
+    private static void writePercentiles(PrintWriter writer, String alias, String name, LatencyHistogram histogram) {
+        writer.print(alias + "," + name + "," + histogram.getCount());
+        for (double percentile : PERCENTILES) {
+            writer.print("," + histogram.getPercentile(percentile));
+        }
+        writer.println("," + histogram.getMax());
+    }
+    
+    private static void writeBuckets(PrintWriter writer, String alias, String name, LatencyHistogram histogram) {
+        for (int bucket = 0; bucket < histogram.getBucketsCount(); ++bucket) {
+            long count = histogram.getBucketCount(bucket);
+            if (count != 0) {
+                writer.println(alias + "," + name + "," + LatencyHistogram.getBucketLowerBound(bucket)
+                        + "," + LatencyHistogram.getBucketUpperBound(bucket) + "," + count);
+            }
+        }
+    }
+    
     protected void onCbUseInstrumentSettingsClicked(String alias, boolean isSelected) {
         V settings = getSettingsFor(alias);
         settings.setEnabled(isSelected);
         settingsAccess.setSettings(alias, strategyName, settings, settingsClass);
+        publishSettings();
         
-        doActionForAlias(alias);
+        evaluate(alias, ActionLatency.NO_EVENT);
         
         if (invalidateIsEnabledCallback != null) {
             invalidateIsEnabledCallback.invalidate();
@@ -288,15 +701,34 @@ public class Layer1ApiHelperStrategyAbstract<V extends HelperStrategySettings> i
     @Override
     public void acceptSettingsInterface(SettingsAccess settingsAccess) {
         this.settingsAccess = settingsAccess;
+        HelperRateLimitSettings loadedRateLimitSettings = (HelperRateLimitSettings) settingsAccess.getSettings(null,
+                strategyName + RATE_LIMIT_SETTINGS_SUFFIX, HelperRateLimitSettings.class);
+        if (loadedRateLimitSettings != null) {
+            rateLimitSettings = loadedRateLimitSettings;
+        }
+        applyRateLimits();
+    }
+    
+    private void rateLimitSettingsChanged() {
+        settingsAccess.setSettings(null, strategyName + RATE_LIMIT_SETTINGS_SUFFIX, rateLimitSettings, HelperRateLimitSettings.class);
+        applyRateLimits();
     }
     
     @SuppressWarnings("unchecked")
     protected V getSettingsFor(String alias) {
+        V settings = alias == null ? defaultSettings : settingsMap.get(alias);
+        if (settings != null) {
+            return settings;
+        }
         synchronized (locker) {
-            V settings = settingsMap.get(alias);
+            settings = alias == null ? defaultSettings : settingsMap.get(alias);
             if (settings == null) {
                 settings = (V) settingsAccess.getSettings(alias, strategyName, settingsClass);
-                settingsMap.put(alias, settings);
+                if (alias == null) {
+                    defaultSettings = settings;
+                } else {
+                    settingsMap.put(alias, settings);
+                }
             }
             return settings;
         }
@@ -0,0 +1,233 @@
+package velox.api.layer1.layers.tradinghelper;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import velox.api.layer1.Layer1ApiProvider;
+import velox.api.layer1.common.Log;
+import velox.api.layer1.data.OrderCancelParameters;
+import velox.api.layer1.data.OrderMoveParameters;
+import velox.api.layer1.data.OrderUpdateParameters;
+
+/**
+ * Sends order updates of helper strategies of a provider within the rate
+ * limits of each strategy (see {@link TokenBucket}), both per instrument and
+ * in total. Limits are off unless configured.
+ * <p>
+ * Only moves are limited. When there are no tokens left, a move is kept per
+ * order and sent as soon as tokens are available again. A newer move of the
+ * same order replaces the pending one, so only the latest target of an order
+ * is sent. Cancels are protective, so they are never limited, delayed or
+ * replaced: a cancel is sent right away and drops the pending move of the
+ * order.
+ * <p>
+ * Sending without waiting takes no locks: tokens are taken with a single
+ * compare-and-set per bucket.
+ */
+public class OrderRateGovernor {
+
+    private static class PendingMove {
+        /** Strategy that sent the move */
+        final Object owner;
+        final String alias;
+        final Layer1ApiProvider provider;
+        final OrderMoveParameters parameters;
+        /** null if not limited */
+        final TokenBucket instrumentBucket;
+        final TokenBucket totalBucket;
+
+        PendingMove(Object owner, String alias, Layer1ApiProvider provider, OrderMoveParameters parameters,
+                TokenBucket instrumentBucket, TokenBucket totalBucket) {
+            this.owner = owner;
+            this.alias = alias;
+            this.provider = provider;
+            this.parameters = parameters;
+            this.instrumentBucket = instrumentBucket;
+            this.totalBucket = totalBucket;
+        }
+    }
+
+    /** Pending moves are retried at least this often, in case limits were changed meanwhile */
+    private static final long MAX_DRAIN_DELAY_NS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /** orderId - latest move that was not sent yet */
+    private final Map<String, PendingMove> pendingMoves = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService drainExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "Helper strategy request governor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean isDrainScheduled = new AtomicBoolean();
+
+    private final LongAdder sentCount = new LongAdder();
+    private final LongAdder deferredCount = new LongAdder();
+    private final LongAdder coalescedCount = new LongAdder();
+
+    /**
+     * Sends the update now if the limits allow, otherwise keeps it until they
+     * do, replacing a pending move of the same order.
+     *
+     * @param owner            strategy that sends the update
+     * @param instrumentBucket limit of the strategy for the instrument, or null
+     * @param totalBucket      limit of the strategy for all instruments, or null
+     * @return true if the update was sent right away
+     */
+    public boolean send(Object owner, String alias, Layer1ApiProvider provider, OrderUpdateParameters parameters,
+            TokenBucket instrumentBucket, TokenBucket totalBucket) {
+        if (!(parameters instanceof OrderMoveParameters)) {
+            if (parameters instanceof OrderCancelParameters) {
+                pendingMoves.remove(parameters.orderId);
+            }
+            sentCount.increment();
+            provider.updateOrder(parameters);
+            return true;
+        }
+
+        // Pending move would be sent after this one and override it
+        if (!pendingMoves.containsKey(parameters.orderId) && tryAcquire(instrumentBucket, totalBucket, System.nanoTime())) {
+            sentCount.increment();
+            provider.updateOrder(parameters);
+            return true;
+        }
+
+        deferredCount.increment();
+        PendingMove move = new PendingMove(owner, alias, provider, (OrderMoveParameters) parameters, instrumentBucket, totalBucket);
+        if (pendingMoves.put(parameters.orderId, move) != null) {
+            coalescedCount.increment();
+        }
+        scheduleDrain(0);
+        return false;
+    }
+
+    /**
+     * Drops the pending move of the order, e.g. when it's not working anymore.
+     */
+    public void discard(String orderId) {
+        pendingMoves.remove(orderId);
+    }
+
+    /**
+     * Drops pending moves sent by the strategy, leaving moves of other
+     * strategies of the provider.
+     */
+    public void discardAll(Object owner) {
+        pendingMoves.values().removeIf(move -> move.owner == owner);
+    }
+
+    public void removeAlias(String alias) {
+        pendingMoves.values().removeIf(move -> move.alias.equals(alias));
+    }
+
+    public void clear() {
+        pendingMoves.clear();
+    }
+
+    /**
+     * Drops pending moves and stops the thread that sends them. Moves that
+     * are deferred afterwards are dropped too.
+     */
+    public void shutdown() {
+        drainExecutor.shutdownNow();
+        pendingMoves.clear();
+    }
+
+    public long getSentCount() {
+        return sentCount.sum();
+    }
+
+    public long getDeferredCount() {
+        return deferredCount.sum();
+    }
+
+    public long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    public int getPendingCount() {
+        return pendingMoves.size();
+    }
+
+    private static boolean tryAcquire(TokenBucket instrumentBucket, TokenBucket totalBucket, long nowNs) {
+        if (instrumentBucket != null && !instrumentBucket.tryAcquire(nowNs)) {
+            return false;
+        }
+        if (totalBucket != null && !totalBucket.tryAcquire(nowNs)) {
+            if (instrumentBucket != null) {
+                instrumentBucket.release();
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private static void release(PendingMove move) {
+        if (move.instrumentBucket != null) {
+            move.instrumentBucket.release();
+        }
+        if (move.totalBucket != null) {
+            move.totalBucket.release();
+        }
+    }
+
+    private static long getWaitNs(TokenBucket bucket, long nowNs) {
+        return bucket == null ? 0 : bucket.getWaitNs(nowNs);
+    }
+
+    private void scheduleDrain(long delayNs) {
+        if (drainExecutor.isShutdown()) {
+            // Nothing would ever send them
+            pendingMoves.clear();
+            return;
+        }
+        if (isDrainScheduled.compareAndSet(false, true)) {
+            try {
+                drainExecutor.schedule(this::drain, Math.min(delayNs, MAX_DRAIN_DELAY_NS), TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                // Shut down meanwhile
+                pendingMoves.clear();
+                isDrainScheduled.set(false);
+            }
+        }
+    }
+
+    private void drain() {
+        long nextDrainNs = Long.MAX_VALUE;
+        try {
+            Iterator<Entry<String, PendingMove>> iterator = pendingMoves.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Entry<String, PendingMove> entry = iterator.next();
+                PendingMove move = entry.getValue();
+                long nowNs = System.nanoTime();
+                if (!tryAcquire(move.instrumentBucket, move.totalBucket, nowNs)) {
+                    long waitNs = Math.max(getWaitNs(move.instrumentBucket, nowNs), getWaitNs(move.totalBucket, nowNs));
+                    nextDrainNs = Math.min(nextDrainNs, waitNs);
+                    continue;
+                }
+                // Move could be replaced or dropped meanwhile, a newer one is sent next time
+                if (pendingMoves.remove(entry.getKey(), move)) {
+                    sentCount.increment();
+                    move.provider.updateOrder(move.parameters);
+                } else {
+                    release(move);
+                    nextDrainNs = 0;
+                }
+            }
+        } catch (RuntimeException e) {
+            Log.warn("Helper strategy: failed to send delayed request", e);
+        } finally {
+            isDrainScheduled.set(false);
+            if (!pendingMoves.isEmpty()) {
+                scheduleDrain(nextDrainNs == Long.MAX_VALUE ? 0 : nextDrainNs);
+            }
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package velox.api.layer1.layers.tradinghelper;
+
+import java.util.Arrays;
+
+/**
+ * Remembers which (order, level) requests were made recently, so the same
+ * request is not repeated more often than once per delay.
+ * <p>
+ * Order ids are interned to int slots, and requests are kept in an open
+ * addressing table keyed by (slot, level), so a check is O(1) and does not
+ * allocate once the table has grown. Each request is also linked into a
+ * hashed timer wheel bucket of the tick when it expires; buckets are swept as
+ * time passes, so requests are forgotten shortly after the delay and memory
+ * only depends on how many requests are made per delay, not on the length of
+ * the session. Slot of an order is released with its last request.
+ * <p>
+ * Not thread safe.
+ */
+public class RequestThrottle {
+
+    private static final int NONE = -1;
+    private static final int WHEEL_SIZE = 16;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final long delayMs;
+    /** Wheel covers twice the delay, so every entry expires within one turn */
+    private final long tickMs;
+
+    // Order slots
+    private String[] orderKeys;
+    private int[] orderKeySlots;
+    private int orderKeyMask;
+    private String[] slotOrderIds;
+    private int[] slotRequestsCount;
+    private int[] slotNextFree;
+    private int firstFreeSlot = NONE;
+    private int usedSlots;
+
+    // Requests
+    private int[] requestTable;
+    private int requestMask;
+    private long[] requestKeys;
+    private long[] requestTimes;
+    /** Next request in the same wheel bucket, or next free request */
+    private int[] requestNext;
+    private int firstFreeRequest = NONE;
+    private int usedRequests;
+    private int requestsCount;
+
+    private final int[] wheel = new int[WHEEL_SIZE];
+    private long lastTick = Long.MIN_VALUE;
+
+    public RequestThrottle(long delayMs) {
+        this.delayMs = delayMs;
+        tickMs = Math.max(1, (delayMs + WHEEL_SIZE / 2 - 1) / (WHEEL_SIZE / 2));
+
+        orderKeys = new String[INITIAL_CAPACITY * 2];
+        orderKeySlots = new int[INITIAL_CAPACITY * 2];
+        orderKeyMask = INITIAL_CAPACITY * 2 - 1;
+        slotOrderIds = new String[INITIAL_CAPACITY];
+        slotRequestsCount = new int[INITIAL_CAPACITY];
+        slotNextFree = new int[INITIAL_CAPACITY];
+
+        requestTable = new int[INITIAL_CAPACITY * 2];
+        Arrays.fill(requestTable, NONE);
+        requestMask = INITIAL_CAPACITY * 2 - 1;
+        requestKeys = new long[INITIAL_CAPACITY];
+        requestTimes = new long[INITIAL_CAPACITY];
+        requestNext = new int[INITIAL_CAPACITY];
+
+        Arrays.fill(wheel, NONE);
+    }
+
+    /**
+     * Checks if request for the order at the level can be made now, and if
+     * so, records it.
+     *
+     * @return true if no such request was made during the last delay
+     */
+    public boolean tryRequest(String orderId, int level, long timeMs) {
+        advance(timeMs);
+
+        int orderPosition = findOrderPosition(orderId);
+        int slot = orderKeys[orderPosition] == null ? NONE : orderKeySlots[orderPosition];
+        if (slot != NONE) {
+            int position = findRequestPosition(toKey(slot, level));
+            int request = requestTable[position];
+            if (request != NONE) {
+                if (timeMs - requestTimes[request] < delayMs) {
+                    return false;
+                }
+                // Expired but not swept yet, the sweep will see the new time and keep it
+                requestTimes[request] = timeMs;
+                return true;
+            }
+        } else {
+            slot = allocateSlot();
+            slotOrderIds[slot] = orderId;
+            slotRequestsCount[slot] = 0;
+            orderKeys[orderPosition] = orderId;
+            orderKeySlots[orderPosition] = slot;
+            if (usedSlots * 2 > orderKeys.length) {
+                rehashOrders(orderKeys.length * 2);
+            }
+        }
+
+        long key = toKey(slot, level);
+        int request = allocateRequest();
+        requestKeys[request] = key;
+        requestTimes[request] = timeMs;
+        ++slotRequestsCount[slot];
+        ++requestsCount;
+        requestTable[findRequestPosition(key)] = request;
+        if (usedRequests * 2 > requestTable.length) {
+            rehashRequests(requestTable.length * 2);
+        }
+        link(request);
+        return true;
+    }
+
+    /**
+     * @return number of requests that are remembered, including expired ones
+     *         that were not swept yet
+     */
+    public int size() {
+        return requestsCount;
+    }
+
+    public void clear() {
+        Arrays.fill(orderKeys, null);
+        Arrays.fill(slotOrderIds, null);
+        firstFreeSlot = NONE;
+        usedSlots = 0;
+        Arrays.fill(requestTable, NONE);
+        firstFreeRequest = NONE;
+        usedRequests = 0;
+        requestsCount = 0;
+        Arrays.fill(wheel, NONE);
+    }
+
+    /**
+     * Sweeps buckets of the ticks that passed since the last call.
+     */
+    private void advance(long timeMs) {
+        long tick = Math.floorDiv(timeMs, tickMs);
+        if (lastTick == Long.MIN_VALUE) {
+            lastTick = tick;
+            return;
+        }
+        long ticks = Math.min(tick - lastTick, WHEEL_SIZE);
+        for (long i = 1; i <= ticks; ++i) {
+            sweep((int) ((lastTick + i) & (WHEEL_SIZE - 1)), timeMs);
+        }
+        if (tick > lastTick) {
+            lastTick = tick;
+        }
+    }
+
+    private void sweep(int bucket, long timeMs) {
+        int request = wheel[bucket];
+        wheel[bucket] = NONE;
+        while (request != NONE) {
+            int next = requestNext[request];
+            if (timeMs - requestTimes[request] >= delayMs) {
+                remove(request);
+            } else {
+                link(request);
+            }
+            request = next;
+        }
+    }
+
+    /**
+     * Adds the request to the bucket of the first tick that starts after it
+     * expires, so it's expired when the bucket is swept.
+     */
+    private void link(int request) {
+        int bucket = (int) ((Math.floorDiv(requestTimes[request] + delayMs, tickMs) + 1) & (WHEEL_SIZE - 1));
+        requestNext[request] = wheel[bucket];
+        wheel[bucket] = request;
+    }
+
+    private void remove(int request) {
+        long key = requestKeys[request];
+        removeRequestPosition(findRequestPosition(key));
+        requestNext[request] = firstFreeRequest;
+        firstFreeRequest = request;
+        --requestsCount;
+
+        int slot = (int) (key >>> 32);
+        if (--slotRequestsCount[slot] == 0) {
+            removeOrderPosition(findOrderPosition(slotOrderIds[slot]));
+            slotOrderIds[slot] = null;
+            slotNextFree[slot] = firstFreeSlot;
+            firstFreeSlot = slot;
+        }
+    }
+
+    private static long toKey(int slot, int level) {
+        return ((long) slot << 32) | (level & 0xFFFFFFFFL);
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16) ^ (hash * 0x9E3779B9 >>> 16);
+    }
+
+    private static int mix(long key) {
+        return mix((int) (key ^ (key >>> 32) * 0x9E3779B9));
+    }
+
+    /**
+     * @return position of the order id or of the empty cell where it would be
+     */
+    private int findOrderPosition(String orderId) {
+        int position = mix(orderId.hashCode()) & orderKeyMask;
+        while (true) {
+            String key = orderKeys[position];
+            if (key == null || key.equals(orderId)) {
+                return position;
+            }
+            position = (position + 1) & orderKeyMask;
+        }
+    }
+
+    /**
+     * @return position of the request or of the empty cell where it would be
+     */
+    private int findRequestPosition(long key) {
+        int position = mix(key) & requestMask;
+        while (true) {
+            int request = requestTable[position];
+            if (request == NONE || requestKeys[request] == key) {
+                return position;
+            }
+            position = (position + 1) & requestMask;
+        }
+    }
+
+    /**
+     * Backward shift deletion, so lookups never have to skip tombstones.
+     */
+    private void removeOrderPosition(int position) {
+        int empty = position;
+        int current = position;
+        while (true) {
+            current = (current + 1) & orderKeyMask;
+            String key = orderKeys[current];
+            if (key == null) {
+                break;
+            }
+            int home = mix(key.hashCode()) & orderKeyMask;
+            if (isMovable(home, empty, current)) {
+                orderKeys[empty] = key;
+                orderKeySlots[empty] = orderKeySlots[current];
+                empty = current;
+            }
+        }
+        orderKeys[empty] = null;
+    }
+
+    private void removeRequestPosition(int position) {
+        int empty = position;
+        int current = position;
+        while (true) {
+            current = (current + 1) & requestMask;
+            int request = requestTable[current];
+            if (request == NONE) {
+                break;
+            }
+            int home = mix(requestKeys[request]) & requestMask;
+            if (isMovable(home, empty, current)) {
+                requestTable[empty] = request;
+                empty = current;
+            }
+        }
+        requestTable[empty] = NONE;
+    }
+
+    /**
+     * @return true if key at current position with the given home position
+     *         can be moved back to the empty position
+     */
+    private static boolean isMovable(int home, int empty, int current) {
+        return empty <= current ? (home <= empty || home > current) : (home <= empty && home > current);
+    }
+
+    private int allocateSlot() {
+        if (firstFreeSlot != NONE) {
+            int slot = firstFreeSlot;
+            firstFreeSlot = slotNextFree[slot];
+            return slot;
+        }
+        if (usedSlots == slotOrderIds.length) {
+            int length = slotOrderIds.length * 2;
+            slotOrderIds = Arrays.copyOf(slotOrderIds, length);
+            slotRequestsCount = Arrays.copyOf(slotRequestsCount, length);
+            slotNextFree = Arrays.copyOf(slotNextFree, length);
+        }
+        return usedSlots++;
+    }
+
+    private int allocateRequest() {
+        if (firstFreeRequest != NONE) {
+            int request = firstFreeRequest;
+            firstFreeRequest = requestNext[request];
+            return request;
+        }
+        if (usedRequests == requestKeys.length) {
+            int length = requestKeys.length * 2;
+            requestKeys = Arrays.copyOf(requestKeys, length);
+            requestTimes = Arrays.copyOf(requestTimes, length);
+            requestNext = Arrays.copyOf(requestNext, length);
+        }
+        return usedRequests++;
+    }
+
+    private void rehashOrders(int length) {
+        String[] oldKeys = orderKeys;
+        int[] oldKeySlots = orderKeySlots;
+        orderKeys = new String[length];
+        orderKeySlots = new int[length];
+        orderKeyMask = length - 1;
+        for (int i = 0; i < oldKeys.length; ++i) {
+            if (oldKeys[i] != null) {
+                int position = findOrderPosition(oldKeys[i]);
+                orderKeys[position] = oldKeys[i];
+                orderKeySlots[position] = oldKeySlots[i];
+            }
+        }
+    }
+
+    private void rehashRequests(int length) {
+        int[] oldTable = requestTable;
+        requestTable = new int[length];
+        Arrays.fill(requestTable, NONE);
+        requestMask = length - 1;
+        for (int request : oldTable) {
+            if (request != NONE) {
+                requestTable[findRequestPosition(requestKeys[request])] = request;
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package velox.api.layer1.layers.tradinghelper;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import velox.api.layer1.Layer1ApiProvider;
+import velox.api.layer1.common.Log;
+
+/**
+ * Book and working orders of instruments, shared by helper strategies
+ * attached to the same provider, so running several of them does not repeat
+ * depth processing and does not keep a copy of the book per strategy.
+ * Strategies of different providers (connections) never share state, so a
+ * strategy only acts on instruments and orders of its own provider.
+ * <p>
+ * All attached strategies receive the same data, so only one of them (the
+ * source, the first attached one) applies it to the state; after each update
+ * every attached strategy is asked to evaluate its rules for the instrument,
+ * with the instrument lock held. When the source is detached, the next
+ * strategy becomes the source and continues updating the same state.
+ */
+public class SharedInstrumentStates {
+
+    /** provider - states of its strategies, guarded by itself */
+    private static final Map<Layer1ApiProvider, SharedInstrumentStates> INSTANCES = new IdentityHashMap<>();
+
+    private final Layer1ApiProvider provider;
+
+    private final Map<String, InstrumentState> states = new ConcurrentHashMap<>(); //alias - state
+    private final Map<String, Integer> aliasIds = new ConcurrentHashMap<>();
+    private final AtomicInteger nextAliasId = new AtomicInteger();
+    private final List<Layer1ApiHelperStrategyAbstract<?>> strategies = new CopyOnWriteArrayList<>();
+    private volatile Layer1ApiHelperStrategyAbstract<?> source;
+    private final OrderRateGovernor rateGovernor = new OrderRateGovernor();
+
+    private SharedInstrumentStates(Layer1ApiProvider provider) {
+        this.provider = provider;
+    }
+
+    /**
+     * @return states shared by strategies of the provider, that the strategy
+     *         is now attached to
+     */
+    public static SharedInstrumentStates attach(Layer1ApiProvider provider, Layer1ApiHelperStrategyAbstract<?> strategy) {
+        synchronized (INSTANCES) {
+            SharedInstrumentStates instance = INSTANCES.computeIfAbsent(provider, SharedInstrumentStates::new);
+            instance.strategies.add(strategy);
+            if (instance.source == null) {
+                instance.source = strategy;
+            }
+            return instance;
+        }
+    }
+
+    public void detach(Layer1ApiHelperStrategyAbstract<?> strategy) {
+        synchronized (INSTANCES) {
+            strategies.remove(strategy);
+            if (source == strategy) {
+                source = strategies.isEmpty() ? null : strategies.get(0);
+            }
+            if (strategies.isEmpty()) {
+                states.clear();
+                rateGovernor.shutdown();
+                INSTANCES.remove(provider);
+            }
+        }
+    }
+
+    /**
+     * @return true if data received by the strategy has to be applied to the
+     *         state, false if it's applied from another strategy
+     */
+    public boolean isSource(Layer1ApiHelperStrategyAbstract<?> strategy) {
+        return source == strategy;
+    }
+
+    /**
+     * @return alias - state, modified by the source only
+     */
+    public Map<String, InstrumentState> getStates() {
+        return states;
+    }
+    
+    /**
+     * @return small non-negative id of the alias, the same for as long as the
+     *         application runs, so strategies can keep per-instrument data in
+     *         arrays. Ids are assigned in order, starting from 0.
+     */
+    public int getAliasId(String alias) {
+        Integer id = aliasIds.get(alias);
+        return id != null ? id : aliasIds.computeIfAbsent(alias, a -> nextAliasId.getAndIncrement());
+    }
+    
+    /**
+     * @return governor that all order updates of the strategies go through
+     */
+    public OrderRateGovernor getRateGovernor() {
+        return rateGovernor;
+    }
+
+    /**
+     * Asks every attached strategy to act on the new state of the instrument.
+     * Has to be called with the instrument lock held. A strategy that fails
+     * does not keep the others from acting.
+     *
+     * @param eventNs {@link System#nanoTime()} when the change was received
+     */
+    public void onStateChanged(InstrumentState state, long eventNs) {
+        for (Layer1ApiHelperStrategyAbstract<?> strategy : strategies) {
+            try {
+                strategy.onStateChanged(state, eventNs);
+            } catch (RuntimeException e) {
+                Log.warn("Helper strategy: failed to act on " + state.alias, e);
+            }
+        }
+    }
+
+    /**
+     * Same as {@link #onStateChanged(InstrumentState, long)}, but strategies
+     * may conflate depth changes and act on them later.
+     */
+    public void onDepthChanged(InstrumentState state, long eventNs) {
+        for (Layer1ApiHelperStrategyAbstract<?> strategy : strategies) {
+            try {
+                strategy.onDepthChanged(state, eventNs);
+            } catch (RuntimeException e) {
+                Log.warn("Helper strategy: failed to act on " + state.alias, e);
+            }
+        }
+    }
+}
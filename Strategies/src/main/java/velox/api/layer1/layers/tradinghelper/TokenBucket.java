@@ -0,0 +1,64 @@
+package velox.api.layer1.layers.tradinghelper;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket. Instead of a token count it keeps the time when the
+ * bucket would be full again, so taking a token is a single compare-and-set
+ * and refill needs no timer.
+ */
+public class TokenBucket {
+
+    private final long intervalNs;
+    private final long toleranceNs;
+    /** Time when all tokens would be available again */
+    private final AtomicLong fullTimeNs = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * @param tokensPerSecond refill rate
+     * @param capacity        tokens that can be taken at once after idle time
+     */
+    public TokenBucket(double tokensPerSecond, int capacity) {
+        if (tokensPerSecond <= 0 || capacity < 1) {
+            throw new IllegalArgumentException("Invalid token bucket: " + tokensPerSecond + " per second, capacity " + capacity);
+        }
+        intervalNs = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / tokensPerSecond));
+        toleranceNs = intervalNs * (capacity - 1);
+    }
+
+    /**
+     * @param nowNs {@link System#nanoTime()}
+     * @return true if a token was taken
+     */
+    public boolean tryAcquire(long nowNs) {
+        while (true) {
+            long fullTime = fullTimeNs.get();
+            long start = fullTime == Long.MIN_VALUE || fullTime - nowNs < 0 ? nowNs : fullTime;
+            if (start - nowNs > toleranceNs) {
+                return false;
+            }
+            if (fullTimeNs.compareAndSet(fullTime, start + intervalNs)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns a token taken by {@link #tryAcquire(long)} that was not used.
+     */
+    public void release() {
+        fullTimeNs.addAndGet(-intervalNs);
+    }
+
+    /**
+     * @return nanoseconds until one token will be available
+     */
+    public long getWaitNs(long nowNs) {
+        long fullTime = fullTimeNs.get();
+        if (fullTime == Long.MIN_VALUE) {
+            return 0;
+        }
+        return Math.max(0, fullTime - toleranceNs - nowNs);
+    }
+}
@@ -0,0 +1,110 @@
+package velox.api.layer1.layers.tradinghelper;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Working limit orders of an instrument, indexed by side and price level, so
+ * orders within a range of levels are found without looking at the others.
+ * <p>
+ * Not thread safe. Index must not be modified from within
+ * {@link #forEachOrder(boolean, int, int, OrderConsumer)}.
+ */
+public class WorkingOrderIndex {
+
+    public interface OrderConsumer {
+        void accept(String orderId, int level);
+    }
+
+    private static class Order {
+        final boolean isBid;
+        int level;
+
+        Order(boolean isBid, int level) {
+            this.isBid = isBid;
+            this.level = level;
+        }
+    }
+
+    private final Map<String, Order> orders = new HashMap<>();
+    /** level - ids of orders at that level */
+    private final TreeMap<Integer, Set<String>> bidLevels = new TreeMap<>();
+    private final TreeMap<Integer, Set<String>> askLevels = new TreeMap<>();
+
+    /**
+     * Adds the order or moves it to a new level.
+     */
+    public void put(String orderId, boolean isBid, int level) {
+        Order order = orders.get(orderId);
+        if (order != null) {
+            if (order.isBid == isBid && order.level == level) {
+                return;
+            }
+            removeFromLevel(order, orderId);
+            if (order.isBid != isBid) {
+                order = new Order(isBid, level);
+                orders.put(orderId, order);
+            } else {
+                order.level = level;
+            }
+        } else {
+            order = new Order(isBid, level);
+            orders.put(orderId, order);
+        }
+        getLevels(isBid).computeIfAbsent(level, l -> new LinkedHashSet<>()).add(orderId);
+    }
+
+    /**
+     * @return true if the order was known
+     */
+    public boolean remove(String orderId) {
+        Order order = orders.remove(orderId);
+        if (order == null) {
+            return false;
+        }
+        removeFromLevel(order, orderId);
+        return true;
+    }
+
+    public void clear() {
+        orders.clear();
+        bidLevels.clear();
+        askLevels.clear();
+    }
+
+    public int size() {
+        return orders.size();
+    }
+
+    /**
+     * Passes orders of the side with levels in [fromLevel, toLevel] to the
+     * consumer, in order of levels.
+     */
+    public void forEachOrder(boolean isBid, int fromLevel, int toLevel, OrderConsumer consumer) {
+        if (fromLevel > toLevel) {
+            return;
+        }
+        for (Map.Entry<Integer, Set<String>> entry : getLevels(isBid).subMap(fromLevel, true, toLevel, true).entrySet()) {
+            int level = entry.getKey();
+            for (String orderId : entry.getValue()) {
+                consumer.accept(orderId, level);
+            }
+        }
+    }
+
+    private TreeMap<Integer, Set<String>> getLevels(boolean isBid) {
+        return isBid ? bidLevels : askLevels;
+    }
+
+    private void removeFromLevel(Order order, String orderId) {
+        TreeMap<Integer, Set<String>> levels = getLevels(order.isBid);
+        Set<String> orderIds = levels.get(order.level);
+        orderIds.remove(orderId);
+        if (orderIds.isEmpty()) {
+            levels.remove(order.level);
+        }
+    }
+}
@@ -0,0 +1,451 @@
+package velox.api.layer1.simpledemo.datarecording;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import velox.api.layer1.common.Log;
+import velox.api.layer1.data.ExecutionInfo;
+import velox.api.layer1.data.InstrumentInfo;
+import velox.api.layer1.data.OrderInfoUpdate;
+import velox.api.layer1.layers.utils.OrderBook;
+
+/**
+ * Moves the actual writing off the data thread. Calls are put into a
+ * preallocated ring buffer and a dedicated thread passes them to the
+ * underlying {@link DataRecorder} in batches, flushing it when enough events
+ * were written or enough time has passed since the previous flush.
+ * <p>
+ * Recording methods can be called from several threads at once (data,
+ * trading and instrument callbacks may come from different ones): producers
+ * claim slots with a compare-and-set and mark each slot as published once it
+ * is filled, so the writer never reads a slot that is still being written.
+ * Events are written in the order they were claimed.
+ * <p>
+ * If the writer can't keep up, depth, MBO and trade events are dropped (and
+ * counted), while instruments, snapshots and orders wait for free space since
+ * losing those would make the file inconsistent. If the recorder fails,
+ * with any exception, the writer keeps draining and drops events until the
+ * recorder is replaced.
+ */
+public class AsyncRecorder implements DataRecorder {
+
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final int FLUSH_EVENTS_THRESHOLD = 1 << 14;
+    private static final long FLUSH_INTERVAL_NS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final long IDLE_PARK_NS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final int EVENT_INSTRUMENT = 0;
+    private static final int EVENT_TRADE = 1;
+    private static final int EVENT_DEPTH = 2;
+    private static final int EVENT_ORDER_UPDATED = 3;
+    private static final int EVENT_MBO_SEND = 4;
+    private static final int EVENT_MBO_REPLACE = 5;
+    private static final int EVENT_MBO_CANCEL = 6;
+    private static final int EVENT_BOOK_SNAPSHOT = 7;
+    private static final int EVENT_ORDER_EXECUTED = 8;
+
+    /**
+     * Mutable ring buffer slot, reused for all kinds of events.
+     */
+    private static class Event {
+        int type;
+        long time;
+        int id;
+        boolean isBid;
+        int price;
+        double tradePrice;
+        int size;
+        int aggressor;
+        int otcCode;
+        InstrumentInfo instrumentInfo;
+        OrderBook orderBook;
+        /** Immutable, so passed to the writer thread as is */
+        OrderInfoUpdate orderInfoUpdate;
+        ExecutionInfo executionInfo;
+        /** MBO order id */
+        String data;
+        /** Sequence the slot was claimed for, written by the claiming producer */
+        long sequence;
+        /** Equal to sequence once the slot is filled and can be written */
+        volatile long publishedSequence = -1;
+    }
+
+    private final Event[] events;
+    private final int mask;
+
+    /** Next sequence to be claimed by a producer */
+    private final AtomicLong tail = new AtomicLong();
+    /** Next sequence to be read by writer thread */
+    private final AtomicLong head = new AtomicLong();
+
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private volatile long lastFlushLatencyNs;
+    private volatile long maxFlushLatencyNs;
+
+    /** Only accessed by writer thread after construction */
+    private DataRecorder recorder;
+    private final AtomicReference<DataRecorder> pendingRecorder = new AtomicReference<>();
+    private volatile boolean isRunning = true;
+
+    private final Thread writerThread;
+
+    public AsyncRecorder(DataRecorder recorder) {
+        this(recorder, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity ring buffer size, has to be a power of two
+     */
+    public AsyncRecorder(DataRecorder recorder, int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.recorder = recorder;
+        events = new Event[capacity];
+        for (int i = 0; i < capacity; ++i) {
+            events[i] = new Event();
+        }
+        mask = capacity - 1;
+
+        writerThread = new Thread(this::writeLoop, "FeedRecorder writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Makes writer thread close current recorder and continue with the new
+     * one. Events that are already queued will be written to the new one.
+     * Can be called from any thread.
+     */
+    public void replaceRecorder(DataRecorder newRecorder) throws IOException {
+        DataRecorder skippedRecorder = pendingRecorder.getAndSet(newRecorder);
+        LockSupport.unpark(writerThread);
+        if (skippedRecorder != null) {
+            // Was replaced before writer thread picked it up, so nothing was written there
+            skippedRecorder.close();
+        }
+    }
+
+    /**
+     * @return slot for the next event or null if the queue is full and the
+     *         event should be dropped
+     */
+    private Event tryClaim() {
+        while (true) {
+            long sequence = tail.get();
+            if (sequence - head.get() >= events.length) {
+                droppedEvents.incrementAndGet();
+                return null;
+            }
+            if (tail.compareAndSet(sequence, sequence + 1)) {
+                return claimed(sequence);
+            }
+        }
+    }
+
+    private Event claim() {
+        while (true) {
+            long sequence = tail.get();
+            if (sequence - head.get() >= events.length) {
+                if (!isRunning) {
+                    throw new IllegalStateException("Recorder is closed");
+                }
+                // Nobody would ever free the slot
+                if (!writerThread.isAlive()) {
+                    throw new IllegalStateException("Recorder writer thread has stopped");
+                }
+                Thread.yield();
+            } else if (tail.compareAndSet(sequence, sequence + 1)) {
+                return claimed(sequence);
+            }
+        }
+    }
+
+    private Event claimed(long sequence) {
+        Event event = events[(int) sequence & mask];
+        event.sequence = sequence;
+        return event;
+    }
+
+    private void publish(Event event) {
+        event.publishedSequence = event.sequence;
+    }
+
+    @Override
+    public void onInstrumentAdded(long time, int id, InstrumentInfo instrumentInfo) {
+        Event event = claim();
+        event.type = EVENT_INSTRUMENT;
+        event.time = time;
+        event.id = id;
+        event.instrumentInfo = instrumentInfo;
+        publish(event);
+    }
+
+    @Override
+    public void onTrade(long time, int id, double price, int size, int aggressor, int otcCode) {
+        Event event = tryClaim();
+        if (event != null) {
+            event.type = EVENT_TRADE;
+            event.time = time;
+            event.id = id;
+            event.tradePrice = price;
+            event.size = size;
+            event.aggressor = aggressor;
+            event.otcCode = otcCode;
+            publish(event);
+        }
+    }
+
+    @Override
+    public void onDepth(long time, int id, boolean isBid, int price, int size) {
+        Event event = tryClaim();
+        if (event != null) {
+            event.type = EVENT_DEPTH;
+            event.time = time;
+            event.id = id;
+            event.isBid = isBid;
+            event.price = price;
+            event.size = size;
+            publish(event);
+        }
+    }
+
+    /**
+     * Book is copied, so caller can keep updating it.
+     */
+    @Override
+    public void onBookSnapshot(long time, int id, OrderBook orderBook) {
+        Event event = claim();
+        event.type = EVENT_BOOK_SNAPSHOT;
+        event.time = time;
+        event.id = id;
+        event.orderBook = new OrderBook(orderBook);
+        publish(event);
+    }
+
+    @Override
+    public void onMboSend(long time, int id, String orderId, boolean isBid, int price, int size) {
+        Event event = tryClaim();
+        if (event != null) {
+            event.type = EVENT_MBO_SEND;
+            event.time = time;
+            event.id = id;
+            event.data = orderId;
+            event.isBid = isBid;
+            event.price = price;
+            event.size = size;
+            publish(event);
+        }
+    }
+
+    @Override
+    public void onMboReplace(long time, int id, String orderId, int price, int size) {
+        Event event = tryClaim();
+        if (event != null) {
+            event.type = EVENT_MBO_REPLACE;
+            event.time = time;
+            event.id = id;
+            event.data = orderId;
+            event.price = price;
+            event.size = size;
+            publish(event);
+        }
+    }
+
+    @Override
+    public void onMboCancel(long time, int id, String orderId) {
+        Event event = tryClaim();
+        if (event != null) {
+            event.type = EVENT_MBO_CANCEL;
+            event.time = time;
+            event.id = id;
+            event.data = orderId;
+            publish(event);
+        }
+    }
+
+    @Override
+    public void onOrderUpdated(long time, OrderInfoUpdate orderInfoUpdate) {
+        Event event = claim();
+        event.type = EVENT_ORDER_UPDATED;
+        event.time = time;
+        event.orderInfoUpdate = orderInfoUpdate;
+        publish(event);
+    }
+
+    @Override
+    public void onOrderExecuted(long time, ExecutionInfo executionInfo) {
+        Event event = claim();
+        event.type = EVENT_ORDER_EXECUTED;
+        event.time = time;
+        event.executionInfo = executionInfo;
+        publish(event);
+    }
+
+    /**
+     * Flushing is done by the writer thread on its own schedule.
+     */
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Writes everything that is queued, then closes the underlying recorder.
+     */
+    @Override
+    public void close() throws IOException {
+        isRunning = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for recorder to finish", e);
+        }
+    }
+
+    private void writeLoop() {
+        long eventsSinceFlush = 0;
+        long lastFlushTime = System.nanoTime();
+        boolean isFailed = false;
+
+        while (true) {
+            // Read the flag before draining, so nothing published before close() is lost
+            boolean isLastIteration = !isRunning;
+
+            DataRecorder newRecorder = pendingRecorder.getAndSet(null);
+            if (newRecorder != null) {
+                try {
+                    recorder.close();
+                } catch (IOException | RuntimeException e) {
+                    Log.error("FeedRecorder: failed to close recorder", e);
+                }
+                recorder = newRecorder;
+                isFailed = false;
+                eventsSinceFlush = 0;
+            }
+
+            long sequence = head.get();
+            Event event = events[(int) sequence & mask];
+            // Stops at the first slot that is claimed but not filled yet, even if later ones are
+            while (event.publishedSequence == sequence) {
+                if (!isFailed) {
+                    try {
+                        write(event);
+                    } catch (IOException | RuntimeException e) {
+                        // Writer thread has to keep draining, or producers of instruments and orders would wait forever
+                        Log.error("FeedRecorder: writing failed, dropping events until recorder is replaced", e);
+                        isFailed = true;
+                    }
+                }
+                if (isFailed) {
+                    droppedEvents.incrementAndGet();
+                }
+                event.instrumentInfo = null;
+                event.orderBook = null;
+                event.orderInfoUpdate = null;
+                event.executionInfo = null;
+                event.data = null;
+                ++sequence;
+                ++eventsSinceFlush;
+                // Free slots as we go, so producer does not have to wait for the whole batch
+                if ((sequence & 0xFF) == 0) {
+                    head.lazySet(sequence);
+                }
+                event = events[(int) sequence & mask];
+            }
+            head.lazySet(sequence);
+
+            long now = System.nanoTime();
+            if (!isFailed && eventsSinceFlush > 0
+                    && (eventsSinceFlush >= FLUSH_EVENTS_THRESHOLD || now - lastFlushTime >= FLUSH_INTERVAL_NS)) {
+                flushRecorder();
+                eventsSinceFlush = 0;
+                lastFlushTime = System.nanoTime();
+            }
+
+            if (isLastIteration) {
+                try {
+                    recorder.close();
+                } catch (IOException | RuntimeException e) {
+                    Log.error("FeedRecorder: failed to close recorder", e);
+                }
+                return;
+            }
+
+            if (events[(int) sequence & mask].publishedSequence != sequence) {
+                LockSupport.parkNanos(IDLE_PARK_NS);
+            }
+        }
+    }
+
+    private void write(Event event) throws IOException {
+        switch (event.type) {
+        case EVENT_INSTRUMENT:
+            recorder.onInstrumentAdded(event.time, event.id, event.instrumentInfo);
+            break;
+        case EVENT_TRADE:
+            recorder.onTrade(event.time, event.id, event.tradePrice, event.size, event.aggressor, event.otcCode);
+            break;
+        case EVENT_DEPTH:
+            recorder.onDepth(event.time, event.id, event.isBid, event.price, event.size);
+            break;
+        case EVENT_BOOK_SNAPSHOT:
+            recorder.onBookSnapshot(event.time, event.id, event.orderBook);
+            break;
+        case EVENT_ORDER_UPDATED:
+            recorder.onOrderUpdated(event.time, event.orderInfoUpdate);
+            break;
+        case EVENT_ORDER_EXECUTED:
+            recorder.onOrderExecuted(event.time, event.executionInfo);
+            break;
+        case EVENT_MBO_SEND:
+            recorder.onMboSend(event.time, event.id, event.data, event.isBid, event.price, event.size);
+            break;
+        case EVENT_MBO_REPLACE:
+            recorder.onMboReplace(event.time, event.id, event.data, event.price, event.size);
+            break;
+        case EVENT_MBO_CANCEL:
+            recorder.onMboCancel(event.time, event.id, event.data);
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown event type: " + event.type);
+        }
+    }
+
+    private void flushRecorder() {
+        long start = System.nanoTime();
+        try {
+            recorder.flush();
+        } catch (IOException | RuntimeException e) {
+            Log.error("FeedRecorder: flush failed", e);
+        }
+        long latency = System.nanoTime() - start;
+        lastFlushLatencyNs = latency;
+        if (latency > maxFlushLatencyNs) {
+            maxFlushLatencyNs = latency;
+        }
+    }
+
+    /**
+     * @return number of events waiting to be written
+     */
+    public long getQueueDepth() {
+        return tail.get() - head.get();
+    }
+
+    public long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    public long getLastFlushLatencyNs() {
+        return lastFlushLatencyNs;
+    }
+
+    public long getMaxFlushLatencyNs() {
+        return maxFlushLatencyNs;
+    }
+}
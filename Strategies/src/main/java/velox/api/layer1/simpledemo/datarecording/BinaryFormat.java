@@ -0,0 +1,70 @@
+package velox.api.layer1.simpledemo.datarecording;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Layout of the files written by {@link BinaryFormatRecorder}.
+ * <p>
+ * A file starts with {@link #MAGIC} and {@link #VERSION} followed by records.
+ * Every record starts with a one byte tag from {@link SpecificFormatTags}
+ * followed by a payload which has fixed size for the frequent records:
+ * <ul>
+ * <li>{@link SpecificFormatTags#ON_BOOK_UPDATE}: time (long, ns), id (int), side (byte), price level (int), size (int)</li>
+ * <li>{@link SpecificFormatTags#ON_TRADE}: time (long, ns), id (int), price level (double), size (int), aggressor (byte), otc code (int)</li>
+ * <li>{@link SpecificFormatTags#ON_MBO_SEND}: time (long, ns), id (int), order key (int), side (byte), price level (int), size (int)</li>
+ * <li>{@link SpecificFormatTags#ON_MBO_REPLACE}: time (long, ns), id (int), order key (int), price level (int), size (int)</li>
+ * <li>{@link SpecificFormatTags#ON_MBO_CANCEL}: time (long, ns), id (int), order key (int)</li>
+ * </ul>
+ * Rare records contain strings, encoded as unsigned short length followed by UTF-8 bytes:
+ * <ul>
+ * <li>{@link SpecificFormatTags#ON_FEED_SOURCE}: time (long, ns), data source (string)</li>
+ * <li>{@link SpecificFormatTags#ON_CONTRACT_DETAILS}: time (long, ns), id (int), exchange, symbol, type (strings), pips (double), multiplier (double)</li>
+ * <li>{@link SpecificFormatTags#ON_MBO_ORDER_ID}: time (long, ns), id (int), order key (int), order id (string)</li>
+ * </ul>
+ * {@link SpecificFormatTags#ON_BOOK_SNAPSHOT} record is time (long, ns), id (int),
+ * bid levels count (int), ask levels count (int), followed by price level (int)
+ * and size (int) of each bid and then each ask level.
+ * Order keys are assigned by {@link OrderIdInterner}.
+ * Trade prices are stored as double since trades are not guaranteed to happen
+ * exactly on a price level. All values are little-endian.
+ */
+public class BinaryFormat {
+
+    public static final int MAGIC = 0x52464D42; // "BMFR" when read as little-endian bytes
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = Integer.BYTES + Short.BYTES;
+
+    public static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    public static final int DEPTH_RECORD_SIZE = 1 + Long.BYTES + Integer.BYTES + 1 + Integer.BYTES + Integer.BYTES;
+    public static final int TRADE_RECORD_SIZE = 1 + Long.BYTES + Integer.BYTES + Double.BYTES + Integer.BYTES + 1 + Integer.BYTES;
+    public static final int MBO_SEND_RECORD_SIZE = 1 + Long.BYTES + Integer.BYTES + Integer.BYTES + 1 + Integer.BYTES + Integer.BYTES;
+    public static final int MBO_REPLACE_RECORD_SIZE = 1 + Long.BYTES + Integer.BYTES + Integer.BYTES + Integer.BYTES + Integer.BYTES;
+    public static final int MBO_CANCEL_RECORD_SIZE = 1 + Long.BYTES + Integer.BYTES + Integer.BYTES;
+    public static final int SNAPSHOT_HEADER_SIZE = 1 + Long.BYTES + Integer.BYTES + Integer.BYTES + Integer.BYTES;
+    public static final int SNAPSHOT_LEVEL_SIZE = Integer.BYTES + Integer.BYTES;
+
+    public static final int MAX_STRING_LENGTH = 0xFFFF;
+
+    public static byte[] encodeString(String value) {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_LENGTH) {
+            throw new IllegalArgumentException("String is too long for binary format: " + bytes.length + " bytes");
+        }
+        return bytes;
+    }
+
+    public static void putString(ByteBuffer buffer, byte[] encoded) {
+        buffer.putShort((short) encoded.length);
+        buffer.put(encoded);
+    }
+
+    public static String getString(ByteBuffer buffer) {
+        int length = Short.toUnsignedInt(buffer.getShort());
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,209 @@
+package velox.api.layer1.simpledemo.datarecording;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+
+import velox.api.layer1.data.InstrumentInfo;
+import velox.api.layer1.layers.utils.OrderBook;
+
+/**
+ * Reads depth files written by {@link BinaryFormatRecorder}.
+ */
+public class BinaryFormatReader implements RecordingReader {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+
+    private final OrderIdDictionary orderIdDictionary = new OrderIdDictionary();
+    private final Set<Integer> knownInstruments;
+
+    public BinaryFormatReader(File depth) throws IOException {
+        this(depth, 0, new HashSet<>());
+    }
+
+    /**
+     * @param offset where to start reading, has to be an index point written
+     *            by {@link SegmentedRecorder} or 0 for the beginning
+     * @param knownInstruments ids of instruments already passed to the target,
+     *            updated as new ones are read
+     */
+    BinaryFormatReader(File depth, long offset, Set<Integer> knownInstruments) throws IOException {
+        this.knownInstruments = knownInstruments;
+        channel = FileChannel.open(depth.toPath(), StandardOpenOption.READ);
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(BinaryFormat.BYTE_ORDER);
+        buffer.flip();
+
+        if (!ensureAvailable(BinaryFormat.HEADER_SIZE) || buffer.getInt() != BinaryFormat.MAGIC) {
+            channel.close();
+            throw new IOException("Not a binary recording: " + depth);
+        }
+        short version = buffer.getShort();
+        if (version != BinaryFormat.VERSION) {
+            channel.close();
+            throw new IOException("Unsupported binary recording version " + version + ": " + depth);
+        }
+        if (offset > BinaryFormat.HEADER_SIZE) {
+            channel.position(offset);
+            buffer.clear().flip();
+        }
+    }
+
+    /**
+     * @return false if end of file was reached before requested number of
+     *         bytes became available
+     */
+    private boolean ensureAvailable(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return true;
+        }
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                buffer.flip();
+                return false;
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+
+    private void require(int bytes) throws IOException {
+        if (!ensureAvailable(bytes)) {
+            throw new EOFException("Truncated record");
+        }
+    }
+
+    private String readString() throws IOException {
+        require(Short.BYTES);
+        int length = Short.toUnsignedInt(buffer.getShort(buffer.position()));
+        require(Short.BYTES + length);
+        return BinaryFormat.getString(buffer);
+    }
+
+    @Override
+    public boolean readNext(DataRecorder target) throws IOException {
+        if (!ensureAvailable(1)) {
+            return false;
+        }
+
+        byte tag = buffer.get(buffer.position());
+        switch (tag) {
+        case SpecificFormatTags.ON_BOOK_UPDATE: {
+            require(BinaryFormat.DEPTH_RECORD_SIZE);
+            buffer.get();
+            long time = buffer.getLong();
+            int id = buffer.getInt();
+            boolean isBid = buffer.get() == SpecificFormatTags.BID_SIDE;
+            int price = buffer.getInt();
+            int size = buffer.getInt();
+            target.onDepth(time, id, isBid, price, size);
+            break;
+        } case SpecificFormatTags.ON_TRADE: {
+            require(BinaryFormat.TRADE_RECORD_SIZE);
+            buffer.get();
+            long time = buffer.getLong();
+            int id = buffer.getInt();
+            double price = buffer.getDouble();
+            int size = buffer.getInt();
+            int aggressor = buffer.get();
+            int otcCode = buffer.getInt();
+            target.onTrade(time, id, price, size, aggressor, otcCode);
+            break;
+        } case SpecificFormatTags.ON_BOOK_SNAPSHOT: {
+            require(BinaryFormat.SNAPSHOT_HEADER_SIZE);
+            buffer.get();
+            long time = buffer.getLong();
+            int id = buffer.getInt();
+            int bidsCount = buffer.getInt();
+            int asksCount = buffer.getInt();
+            OrderBook orderBook = new OrderBook();
+            readLevels(orderBook, true, bidsCount);
+            readLevels(orderBook, false, asksCount);
+            target.onBookSnapshot(time, id, orderBook);
+            break;
+        } case SpecificFormatTags.ON_MBO_SEND: {
+            require(BinaryFormat.MBO_SEND_RECORD_SIZE);
+            buffer.get();
+            long time = buffer.getLong();
+            int id = buffer.getInt();
+            String orderId = orderIdDictionary.resolve(id, buffer.getInt());
+            boolean isBid = buffer.get() == SpecificFormatTags.BID_SIDE;
+            int price = buffer.getInt();
+            int size = buffer.getInt();
+            target.onMboSend(time, id, orderId, isBid, price, size);
+            break;
+        } case SpecificFormatTags.ON_MBO_REPLACE: {
+            require(BinaryFormat.MBO_REPLACE_RECORD_SIZE);
+            buffer.get();
+            long time = buffer.getLong();
+            int id = buffer.getInt();
+            String orderId = orderIdDictionary.resolve(id, buffer.getInt());
+            int price = buffer.getInt();
+            int size = buffer.getInt();
+            target.onMboReplace(time, id, orderId, price, size);
+            break;
+        } case SpecificFormatTags.ON_MBO_CANCEL: {
+            require(BinaryFormat.MBO_CANCEL_RECORD_SIZE);
+            buffer.get();
+            long time = buffer.getLong();
+            int id = buffer.getInt();
+            String orderId = orderIdDictionary.release(id, buffer.getInt());
+            target.onMboCancel(time, id, orderId);
+            break;
+        } case SpecificFormatTags.ON_MBO_ORDER_ID: {
+            require(1 + Long.BYTES + Integer.BYTES + Integer.BYTES);
+            buffer.get();
+            buffer.getLong();
+            int id = buffer.getInt();
+            int orderKey = buffer.getInt();
+            orderIdDictionary.define(id, orderKey, readString());
+            break;
+        } case SpecificFormatTags.ON_FEED_SOURCE: {
+            require(1 + Long.BYTES);
+            buffer.get();
+            buffer.getLong();
+            readString();
+            break;
+        } case SpecificFormatTags.ON_CONTRACT_DETAILS: {
+            require(1 + Long.BYTES + Integer.BYTES);
+            buffer.get();
+            long time = buffer.getLong();
+            int id = buffer.getInt();
+            String exchange = readString();
+            String symbol = readString();
+            String type = readString();
+            require(2 * Double.BYTES);
+            double pips = buffer.getDouble();
+            double multiplier = buffer.getDouble();
+            if (knownInstruments.add(id)) {
+                target.onInstrumentAdded(time, id, new InstrumentInfo(symbol, exchange, type, pips, multiplier, symbol, true));
+            }
+            break;
+        } default:
+            throw new IOException("Unknown record tag: " + tag);
+        }
+        return true;
+    }
+
+    private void readLevels(OrderBook orderBook, boolean isBid, int count) throws IOException {
+        for (int i = 0; i < count; ++i) {
+            require(BinaryFormat.SNAPSHOT_LEVEL_SIZE);
+            int price = buffer.getInt();
+            int size = buffer.getInt();
+            orderBook.onUpdate(isBid, price, size);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
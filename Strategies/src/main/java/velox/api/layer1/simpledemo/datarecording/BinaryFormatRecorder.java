@@ -0,0 +1,204 @@
+package velox.api.layer1.simpledemo.datarecording;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import velox.api.layer1.data.ExecutionInfo;
+import velox.api.layer1.data.InstrumentInfo;
+import velox.api.layer1.data.OrderInfoUpdate;
+import velox.api.layer1.layers.utils.OrderBook;
+
+/**
+ * Records into the fixed-layout binary format described in
+ * {@link BinaryFormat}. Unlike {@link SpecificFormatRecorder} it does not
+ * format numbers into text - records are put into a preallocated buffer that
+ * reaches the disk when it fills up, on {@link #flush()} or on {@link #close()}.
+ */
+public class BinaryFormatRecorder implements IndexableRecorder {
+
+    private static final int DEPTH_BUFFER_SIZE = 1 << 20;
+    private static final int ORDERS_BUFFER_SIZE = 1 << 16;
+
+    private final BufferedChannelWriter depthWriter;
+    private final BufferedChannelWriter ordersWriter;
+
+    private final OrderIdInterner orderIdInterner = new OrderIdInterner();
+
+    public BinaryFormatRecorder(long time, File depth, File orders, String dataSource) throws IOException {
+        depthWriter = new BufferedChannelWriter(depth, DEPTH_BUFFER_SIZE);
+        ordersWriter = new BufferedChannelWriter(orders, ORDERS_BUFFER_SIZE);
+
+        writeHeader(depthWriter);
+        OrderDataFormat.writeHeader(ordersWriter);
+
+        byte[] dataSourceBytes = BinaryFormat.encodeString(dataSource);
+        ByteBuffer buffer = depthWriter.reserve(1 + Long.BYTES + Short.BYTES + dataSourceBytes.length)
+                .put((byte) SpecificFormatTags.ON_FEED_SOURCE)
+                .putLong(time);
+        BinaryFormat.putString(buffer, dataSourceBytes);
+    }
+
+    private static void writeHeader(BufferedChannelWriter writer) throws IOException {
+        writer.reserve(BinaryFormat.HEADER_SIZE)
+                .putInt(BinaryFormat.MAGIC)
+                .putShort(BinaryFormat.VERSION);
+    }
+
+    @Override
+    public void onTrade(long time, int id, double price, int size, int aggressor, int otcCode) throws IOException {
+        depthWriter.reserve(BinaryFormat.TRADE_RECORD_SIZE)
+                .put((byte) SpecificFormatTags.ON_TRADE)
+                .putLong(time)
+                .putInt(id)
+                .putDouble(price)
+                .putInt(size)
+                .put((byte) aggressor)
+                .putInt(otcCode);
+    }
+
+    @Override
+    public void onDepth(long time, int id, boolean isBid, int price, int size) throws IOException {
+        depthWriter.reserve(BinaryFormat.DEPTH_RECORD_SIZE)
+                .put((byte) SpecificFormatTags.ON_BOOK_UPDATE)
+                .putLong(time)
+                .putInt(id)
+                .put((byte) (isBid ? SpecificFormatTags.BID_SIDE : SpecificFormatTags.ASK_SIDE))
+                .putInt(price)
+                .putInt(size);
+    }
+
+    @Override
+    public void onBookSnapshot(long time, int id, OrderBook orderBook) throws IOException {
+        Map<Integer, Long> bids = orderBook.getBidMap();
+        Map<Integer, Long> asks = orderBook.getAskMap();
+        depthWriter.reserve(BinaryFormat.SNAPSHOT_HEADER_SIZE)
+                .put((byte) SpecificFormatTags.ON_BOOK_SNAPSHOT)
+                .putLong(time)
+                .putInt(id)
+                .putInt(bids.size())
+                .putInt(asks.size());
+        writeLevels(bids);
+        writeLevels(asks);
+    }
+
+    private void writeLevels(Map<Integer, Long> levels) throws IOException {
+        // Reserving level by level, so books of any depth fit into the buffer
+        for (Map.Entry<Integer, Long> level : levels.entrySet()) {
+            depthWriter.reserve(BinaryFormat.SNAPSHOT_LEVEL_SIZE)
+                    .putInt(level.getKey())
+                    .putInt(level.getValue().intValue());
+        }
+    }
+
+    @Override
+    public void onMboSend(long time, int id, String orderId, boolean isBid, int price, int size) throws IOException {
+        int orderKey = getOrderKey(time, id, orderId);
+        depthWriter.reserve(BinaryFormat.MBO_SEND_RECORD_SIZE)
+                .put((byte) SpecificFormatTags.ON_MBO_SEND)
+                .putLong(time)
+                .putInt(id)
+                .putInt(orderKey)
+                .put((byte) (isBid ? SpecificFormatTags.BID_SIDE : SpecificFormatTags.ASK_SIDE))
+                .putInt(price)
+                .putInt(size);
+    }
+
+    @Override
+    public void onMboReplace(long time, int id, String orderId, int price, int size) throws IOException {
+        int orderKey = getOrderKey(time, id, orderId);
+        depthWriter.reserve(BinaryFormat.MBO_REPLACE_RECORD_SIZE)
+                .put((byte) SpecificFormatTags.ON_MBO_REPLACE)
+                .putLong(time)
+                .putInt(id)
+                .putInt(orderKey)
+                .putInt(price)
+                .putInt(size);
+    }
+
+    @Override
+    public void onMboCancel(long time, int id, String orderId) throws IOException {
+        int orderKey = getOrderKey(time, id, orderId);
+        depthWriter.reserve(BinaryFormat.MBO_CANCEL_RECORD_SIZE)
+                .put((byte) SpecificFormatTags.ON_MBO_CANCEL)
+                .putLong(time)
+                .putInt(id)
+                .putInt(orderKey);
+        orderIdInterner.release(id, orderId);
+    }
+
+    /**
+     * @return key of the order, writing its definition first if the order
+     *         was not seen before
+     */
+    private int getOrderKey(long time, int id, String orderId) throws IOException {
+        int orderKey = orderIdInterner.find(id, orderId);
+        if (orderKey < 0) {
+            orderKey = orderIdInterner.assign(id, orderId);
+            byte[] orderIdBytes = BinaryFormat.encodeString(orderId);
+            ByteBuffer buffer = depthWriter.reserve(1 + Long.BYTES + Integer.BYTES + Integer.BYTES
+                    + Short.BYTES + orderIdBytes.length)
+                    .put((byte) SpecificFormatTags.ON_MBO_ORDER_ID)
+                    .putLong(time)
+                    .putInt(id)
+                    .putInt(orderKey);
+            BinaryFormat.putString(buffer, orderIdBytes);
+        }
+        return orderKey;
+    }
+
+    @Override
+    public void onInstrumentAdded(long time, int id, InstrumentInfo instrumentInfo) throws IOException {
+        byte[] exchange = BinaryFormat.encodeString(instrumentInfo.exchange);
+        byte[] symbol = BinaryFormat.encodeString(instrumentInfo.symbol);
+        byte[] type = BinaryFormat.encodeString(instrumentInfo.type);
+
+        ByteBuffer buffer = depthWriter.reserve(1 + Long.BYTES + Integer.BYTES
+                + 3 * Short.BYTES + exchange.length + symbol.length + type.length
+                + 2 * Double.BYTES);
+        buffer.put((byte) SpecificFormatTags.ON_CONTRACT_DETAILS)
+                .putLong(time)
+                .putInt(id);
+        BinaryFormat.putString(buffer, exchange);
+        BinaryFormat.putString(buffer, symbol);
+        BinaryFormat.putString(buffer, type);
+        buffer.putDouble(instrumentInfo.pips)
+                .putDouble(instrumentInfo.multiplier);
+    }
+
+    @Override
+    public long getDepthPosition() throws IOException {
+        return depthWriter.position();
+    }
+
+    @Override
+    public void resetState(long time) {
+        orderIdInterner.clear();
+    }
+
+    @Override
+    public void onOrderUpdated(long time, OrderInfoUpdate orderInfoUpdate) throws IOException {
+        OrderDataFormat.writeOrderUpdate(ordersWriter, time, orderInfoUpdate);
+    }
+
+    @Override
+    public void onOrderExecuted(long time, ExecutionInfo executionInfo) throws IOException {
+        OrderDataFormat.writeExecution(ordersWriter, time, executionInfo);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        depthWriter.flush();
+        ordersWriter.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            depthWriter.close();
+        } finally {
+            ordersWriter.close();
+        }
+    }
+}
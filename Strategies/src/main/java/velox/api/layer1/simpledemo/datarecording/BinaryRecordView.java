@@ -0,0 +1,232 @@
+package velox.api.layer1.simpledemo.datarecording;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import velox.api.layer1.data.InstrumentInfo;
+
+/**
+ * Flyweight over a record of a {@link BinaryFormat} file. Values are read
+ * straight from the underlying buffer when accessors are called, nothing is
+ * copied or allocated (except for the string accessors of the rare records).
+ * The same instance is reused for all records of a {@link MappedBinaryReader},
+ * so it's only valid until the reader moves on.
+ * <p>
+ * Accessors are only meaningful for the records that have the corresponding
+ * field, for other records they return garbage.
+ */
+public class BinaryRecordView {
+
+    private static final int TIME_OFFSET = 1;
+    private static final int ID_OFFSET = TIME_OFFSET + Long.BYTES;
+    /** Where record-specific fields start in all records but feed source */
+    private static final int PAYLOAD_OFFSET = ID_OFFSET + Integer.BYTES;
+
+    private ByteBuffer buffer;
+    private int offset;
+    private int length;
+
+    void wrap(ByteBuffer buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * @return one of {@link SpecificFormatTags} record tags
+     */
+    public char getTag() {
+        return (char) buffer.get(offset);
+    }
+
+    /**
+     * @return size of the record in bytes, including the tag
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Time in nanoseconds, available for all records.
+     */
+    public long getTime() {
+        return buffer.getLong(offset + TIME_OFFSET);
+    }
+
+    /**
+     * Available for all records except {@link SpecificFormatTags#ON_FEED_SOURCE}.
+     */
+    public int getInstrumentId() {
+        return buffer.getInt(offset + ID_OFFSET);
+    }
+
+    /**
+     * Available for depth updates and MBO sends.
+     */
+    public boolean isBid() {
+        int sideOffset = getTag() == SpecificFormatTags.ON_BOOK_UPDATE ? 0 : Integer.BYTES;
+        return buffer.get(offset + PAYLOAD_OFFSET + sideOffset) == SpecificFormatTags.BID_SIDE;
+    }
+
+    /**
+     * Price level of depth updates and MBO sends/replaces.
+     */
+    public int getPrice() {
+        switch (getTag()) {
+        case SpecificFormatTags.ON_BOOK_UPDATE:
+            return buffer.getInt(offset + PAYLOAD_OFFSET + 1);
+        case SpecificFormatTags.ON_MBO_SEND:
+            return buffer.getInt(offset + PAYLOAD_OFFSET + Integer.BYTES + 1);
+        default:
+            return buffer.getInt(offset + PAYLOAD_OFFSET + Integer.BYTES);
+        }
+    }
+
+    /**
+     * Price level of trades, might be between levels.
+     */
+    public double getTradePrice() {
+        return buffer.getDouble(offset + PAYLOAD_OFFSET);
+    }
+
+    /**
+     * Size of depth updates, trades and MBO sends/replaces.
+     */
+    public int getSize() {
+        switch (getTag()) {
+        case SpecificFormatTags.ON_BOOK_UPDATE:
+            return buffer.getInt(offset + PAYLOAD_OFFSET + 1 + Integer.BYTES);
+        case SpecificFormatTags.ON_TRADE:
+            return buffer.getInt(offset + PAYLOAD_OFFSET + Double.BYTES);
+        case SpecificFormatTags.ON_MBO_SEND:
+            return buffer.getInt(offset + PAYLOAD_OFFSET + Integer.BYTES + 1 + Integer.BYTES);
+        default:
+            return buffer.getInt(offset + PAYLOAD_OFFSET + 2 * Integer.BYTES);
+        }
+    }
+
+    public int getAggressor() {
+        return buffer.get(offset + PAYLOAD_OFFSET + Double.BYTES + Integer.BYTES);
+    }
+
+    public int getOtcCode() {
+        return buffer.getInt(offset + PAYLOAD_OFFSET + Double.BYTES + Integer.BYTES + 1);
+    }
+
+    /**
+     * Available for MBO records, see {@link OrderIdInterner} for the meaning.
+     */
+    public int getOrderKey() {
+        return buffer.getInt(offset + PAYLOAD_OFFSET);
+    }
+
+    public int getBidsCount() {
+        return buffer.getInt(offset + PAYLOAD_OFFSET);
+    }
+
+    public int getAsksCount() {
+        return buffer.getInt(offset + PAYLOAD_OFFSET + Integer.BYTES);
+    }
+
+    /**
+     * @param level index of the level in the snapshot, bids go first
+     */
+    public int getLevelPrice(int level) {
+        return buffer.getInt(offset + BinaryFormat.SNAPSHOT_HEADER_SIZE + level * BinaryFormat.SNAPSHOT_LEVEL_SIZE);
+    }
+
+    public int getLevelSize(int level) {
+        return buffer.getInt(offset + BinaryFormat.SNAPSHOT_HEADER_SIZE + level * BinaryFormat.SNAPSHOT_LEVEL_SIZE
+                + Integer.BYTES);
+    }
+
+    /**
+     * Order id of {@link SpecificFormatTags#ON_MBO_ORDER_ID} record. Allocates.
+     */
+    public String getOrderId() {
+        return getString(offset + PAYLOAD_OFFSET + Integer.BYTES);
+    }
+
+    /**
+     * Data source of {@link SpecificFormatTags#ON_FEED_SOURCE} record. Allocates.
+     */
+    public String getDataSource() {
+        return getString(offset + ID_OFFSET);
+    }
+
+    /**
+     * Instrument of {@link SpecificFormatTags#ON_CONTRACT_DETAILS} record. Allocates.
+     */
+    public InstrumentInfo getInstrumentInfo() {
+        int position = offset + PAYLOAD_OFFSET;
+        String exchange = getString(position);
+        position += Short.BYTES + getStringLength(position);
+        String symbol = getString(position);
+        position += Short.BYTES + getStringLength(position);
+        String type = getString(position);
+        position += Short.BYTES + getStringLength(position);
+        double pips = buffer.getDouble(position);
+        double multiplier = buffer.getDouble(position + Double.BYTES);
+        return new InstrumentInfo(symbol, exchange, type, pips, multiplier, symbol, true);
+    }
+
+    private int getStringLength(int position) {
+        return Short.toUnsignedInt(buffer.getShort(position));
+    }
+
+    private String getString(int position) {
+        byte[] bytes = new byte[getStringLength(position)];
+        for (int i = 0; i < bytes.length; ++i) {
+            bytes[i] = buffer.get(position + Short.BYTES + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return length of the record starting at the offset or -1 if the
+     *         available bytes are not enough to tell
+     */
+    static int getRecordLength(ByteBuffer buffer, int offset, int available) {
+        if (available < 1) {
+            return -1;
+        }
+        switch (buffer.get(offset)) {
+        case SpecificFormatTags.ON_BOOK_UPDATE:
+            return BinaryFormat.DEPTH_RECORD_SIZE;
+        case SpecificFormatTags.ON_TRADE:
+            return BinaryFormat.TRADE_RECORD_SIZE;
+        case SpecificFormatTags.ON_MBO_SEND:
+            return BinaryFormat.MBO_SEND_RECORD_SIZE;
+        case SpecificFormatTags.ON_MBO_REPLACE:
+            return BinaryFormat.MBO_REPLACE_RECORD_SIZE;
+        case SpecificFormatTags.ON_MBO_CANCEL:
+            return BinaryFormat.MBO_CANCEL_RECORD_SIZE;
+        case SpecificFormatTags.ON_BOOK_SNAPSHOT: {
+            if (available < BinaryFormat.SNAPSHOT_HEADER_SIZE) {
+                return -1;
+            }
+            long levels = (long) buffer.getInt(offset + PAYLOAD_OFFSET)
+                    + buffer.getInt(offset + PAYLOAD_OFFSET + Integer.BYTES);
+            return (int) (BinaryFormat.SNAPSHOT_HEADER_SIZE + levels * BinaryFormat.SNAPSHOT_LEVEL_SIZE);
+        } case SpecificFormatTags.ON_MBO_ORDER_ID:
+            return getStringsEnd(buffer, offset, available, PAYLOAD_OFFSET + Integer.BYTES, 1);
+        case SpecificFormatTags.ON_FEED_SOURCE:
+            return getStringsEnd(buffer, offset, available, ID_OFFSET, 1);
+        case SpecificFormatTags.ON_CONTRACT_DETAILS: {
+            int stringsEnd = getStringsEnd(buffer, offset, available, PAYLOAD_OFFSET, 3);
+            return stringsEnd < 0 ? -1 : stringsEnd + 2 * Double.BYTES;
+        } default:
+            throw new IllegalArgumentException("Unknown record tag: " + buffer.get(offset));
+        }
+    }
+
+    private static int getStringsEnd(ByteBuffer buffer, int offset, int available, int position, int count) {
+        for (int i = 0; i < count; ++i) {
+            if (available < position + Short.BYTES) {
+                return -1;
+            }
+            position += Short.BYTES + Short.toUnsignedInt(buffer.getShort(offset + position));
+        }
+        return position;
+    }
+}
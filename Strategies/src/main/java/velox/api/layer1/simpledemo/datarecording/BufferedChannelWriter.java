@@ -0,0 +1,69 @@
+package velox.api.layer1.simpledemo.datarecording;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends records to a file through a preallocated buffer. Records are
+ * written into {@link #reserve(int)} result directly and reach the file only
+ * when the buffer is full or on {@link #flush()}, so there are no allocations
+ * and no system calls per record.
+ */
+class BufferedChannelWriter implements Closeable {
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+
+    BufferedChannelWriter(File file, int bufferSize) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        buffer = ByteBuffer.allocateDirect(bufferSize).order(BinaryFormat.BYTE_ORDER);
+    }
+
+    /**
+     * Makes sure at least requested number of bytes can be put into the
+     * returned buffer without overflowing it.
+     */
+    ByteBuffer reserve(int bytes) throws IOException {
+        if (bytes > buffer.capacity()) {
+            throw new IllegalArgumentException("Record of " + bytes + " bytes does not fit into "
+                    + buffer.capacity() + " bytes buffer");
+        }
+        if (buffer.remaining() < bytes) {
+            drain();
+        }
+        return buffer;
+    }
+
+    /**
+     * @return number of bytes written so far, including the buffered ones
+     */
+    long position() throws IOException {
+        return channel.position() + buffer.position();
+    }
+
+    void flush() throws IOException {
+        drain();
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            channel.close();
+        }
+    }
+}
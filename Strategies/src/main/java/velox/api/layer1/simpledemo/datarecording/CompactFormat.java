@@ -0,0 +1,86 @@
+package velox.api.layer1.simpledemo.datarecording;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Layout of the files written by {@link CompactFormatRecorder}.
+ * <p>
+ * A file starts with {@link #MAGIC} and {@link #VERSION} followed by records.
+ * Integers are written as varints (7 bits per byte, low bits first), signed
+ * ones are zigzag-encoded first so that small negative values stay short.
+ * Time is written as a signed delta from the time of the previous record,
+ * prices as a signed delta from the last price of the same instrument.
+ * Instruments are referred to by index, assigned in the order of their
+ * {@link SpecificFormatTags#ON_CONTRACT_DETAILS} records.
+ * <ul>
+ * <li>{@link #TAG_RESET}: time (long, ns). Forgets instrument indices, order keys and last prices</li>
+ * <li>{@link #TAG_DEPTH_BID}, {@link #TAG_DEPTH_ASK}: instrument, time delta, price delta, size</li>
+ * <li>{@link #TAG_TRADE}: instrument, time delta, price delta, size, aggressor (byte), otc code</li>
+ * <li>{@link #TAG_TRADE_FRACTIONAL}: same as above, but price is a double level and last price is not changed</li>
+ * <li>{@link #TAG_MBO_SEND_BID}, {@link #TAG_MBO_SEND_ASK}: instrument, time delta, order key, price delta, size</li>
+ * <li>{@link #TAG_MBO_REPLACE}: instrument, time delta, order key, price delta, size</li>
+ * <li>{@link #TAG_MBO_CANCEL}: instrument, time delta, order key</li>
+ * <li>{@link SpecificFormatTags#ON_MBO_ORDER_ID}: instrument, time delta, order key, order id (string)</li>
+ * <li>{@link SpecificFormatTags#ON_BOOK_SNAPSHOT}: instrument, time delta, bid levels count, ask levels count,
+ * then price delta from the previous level and size of each bid and then each ask level</li>
+ * <li>{@link SpecificFormatTags#ON_FEED_SOURCE}: time (long, ns), data source (string)</li>
+ * <li>{@link SpecificFormatTags#ON_CONTRACT_DETAILS}: time delta, id (int), exchange, symbol, type (strings),
+ * pips (double), multiplier (double)</li>
+ * </ul>
+ * Strings, longs and doubles are encoded as in {@link BinaryFormat}. Orders
+ * file has the same layout as the one written by {@link BinaryFormatRecorder},
+ * except for the header.
+ */
+public class CompactFormat {
+
+    public static final int MAGIC = 0x43464D42; // "BMFC" when read as little-endian bytes
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = Integer.BYTES + Short.BYTES;
+
+    public static final ByteOrder BYTE_ORDER = BinaryFormat.BYTE_ORDER;
+
+    // Frequent records have their own tags, so side does not take a byte
+    public static final byte TAG_RESET = 1;
+    public static final byte TAG_DEPTH_BID = 2;
+    public static final byte TAG_DEPTH_ASK = 3;
+    public static final byte TAG_TRADE = 4;
+    public static final byte TAG_TRADE_FRACTIONAL = 5;
+    public static final byte TAG_MBO_SEND_BID = 6;
+    public static final byte TAG_MBO_SEND_ASK = 7;
+    public static final byte TAG_MBO_REPLACE = 8;
+    public static final byte TAG_MBO_CANCEL = 9;
+
+    public static final int MAX_VARINT_SIZE = 10;
+    /** Upper bound of any record without strings and snapshot levels */
+    public static final int MAX_RECORD_SIZE = 1 + 6 * MAX_VARINT_SIZE + Double.BYTES + 1;
+
+    public static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    public static void putZigZag(ByteBuffer buffer, long value) {
+        putVarLong(buffer, (value << 1) ^ (value >> 63));
+    }
+
+    public static long getVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    public static long getZigZag(ByteBuffer buffer) {
+        long value = getVarLong(buffer);
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
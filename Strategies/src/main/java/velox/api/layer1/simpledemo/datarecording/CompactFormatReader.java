@@ -0,0 +1,255 @@
+package velox.api.layer1.simpledemo.datarecording;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+
+import velox.api.layer1.data.InstrumentInfo;
+import velox.api.layer1.layers.utils.OrderBook;
+
+/**
+ * Reads depth files written by {@link CompactFormatRecorder}, either as is
+ * or after {@link DeflatedSegment#deflate(File, File)}.
+ */
+public class CompactFormatReader implements RecordingReader {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private static class InstrumentState {
+        final int id;
+        int lastPrice;
+
+        InstrumentState(int id) {
+            this.id = id;
+        }
+    }
+
+    private ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+
+    private final OrderIdDictionary orderIdDictionary = new OrderIdDictionary();
+    private final Set<Integer> knownInstruments;
+
+    private final ArrayList<InstrumentState> instruments = new ArrayList<>();
+    private long lastTime;
+
+    public CompactFormatReader(File depth) throws IOException {
+        this(depth, 0, new HashSet<>());
+    }
+
+    /**
+     * @param offset where to start reading, has to be an index point written
+     *            by {@link SegmentedRecorder} or 0 for the beginning
+     * @param knownInstruments ids of instruments already passed to the target,
+     *            updated as new ones are read
+     */
+    CompactFormatReader(File depth, long offset, Set<Integer> knownInstruments) throws IOException {
+        this.knownInstruments = knownInstruments;
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(CompactFormat.BYTE_ORDER);
+        buffer.flip();
+
+        channel = openChannel(depth, 0);
+        if (!ensureAvailable(CompactFormat.HEADER_SIZE) || buffer.getInt() != CompactFormat.MAGIC) {
+            channel.close();
+            throw new IOException("Not a compact recording: " + depth);
+        }
+        short version = buffer.getShort();
+        if (version != CompactFormat.VERSION) {
+            channel.close();
+            throw new IOException("Unsupported compact recording version " + version + ": " + depth);
+        }
+        if (offset > CompactFormat.HEADER_SIZE) {
+            if (channel instanceof FileChannel) {
+                ((FileChannel) channel).position(offset);
+            } else {
+                // Deflated stream can only be opened at the right block
+                channel.close();
+                channel = openChannel(depth, offset);
+            }
+            buffer.clear().flip();
+        }
+    }
+
+    private static ReadableByteChannel openChannel(File depth, long offset) throws IOException {
+        if (DeflatedSegment.isDeflated(depth)) {
+            return Channels.newChannel(DeflatedSegment.open(depth, offset));
+        }
+        FileChannel fileChannel = FileChannel.open(depth.toPath(), StandardOpenOption.READ);
+        fileChannel.position(offset);
+        return fileChannel;
+    }
+
+    /**
+     * @return false if end of file was reached before requested number of
+     *         bytes became available
+     */
+    private boolean ensureAvailable(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return true;
+        }
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                buffer.flip();
+                return false;
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+
+    private void require(int bytes) throws IOException {
+        if (!ensureAvailable(bytes)) {
+            throw new EOFException("Truncated record");
+        }
+    }
+
+    private String readString() throws IOException {
+        require(Short.BYTES);
+        int length = Short.toUnsignedInt(buffer.getShort(buffer.position()));
+        require(Short.BYTES + length);
+        return BinaryFormat.getString(buffer);
+    }
+
+    private InstrumentState readInstrument() throws IOException {
+        int index = (int) CompactFormat.getVarLong(buffer);
+        if (index >= instruments.size()) {
+            throw new IOException("Record for undefined instrument index " + index);
+        }
+        return instruments.get(index);
+    }
+
+    private long readTime() {
+        lastTime += CompactFormat.getZigZag(buffer);
+        return lastTime;
+    }
+
+    private int readPrice(InstrumentState instrument) {
+        instrument.lastPrice += (int) CompactFormat.getZigZag(buffer);
+        return instrument.lastPrice;
+    }
+
+    @Override
+    public boolean readNext(DataRecorder target) throws IOException {
+        if (!ensureAvailable(1)) {
+            return false;
+        }
+        // Record size is not known upfront, so getting as much as a record can take
+        ensureAvailable(CompactFormat.MAX_RECORD_SIZE);
+        try {
+            readRecord(target);
+        } catch (BufferUnderflowException e) {
+            throw new EOFException("Truncated record");
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e);
+        }
+        return true;
+    }
+
+    private void readRecord(DataRecorder target) throws IOException {
+        byte tag = buffer.get();
+        switch (tag) {
+        case CompactFormat.TAG_DEPTH_BID:
+        case CompactFormat.TAG_DEPTH_ASK: {
+            InstrumentState instrument = readInstrument();
+            long time = readTime();
+            int price = readPrice(instrument);
+            int size = (int) CompactFormat.getVarLong(buffer);
+            target.onDepth(time, instrument.id, tag == CompactFormat.TAG_DEPTH_BID, price, size);
+            break;
+        } case CompactFormat.TAG_TRADE:
+        case CompactFormat.TAG_TRADE_FRACTIONAL: {
+            InstrumentState instrument = readInstrument();
+            long time = readTime();
+            double price = tag == CompactFormat.TAG_TRADE ? readPrice(instrument) : buffer.getDouble();
+            int size = (int) CompactFormat.getVarLong(buffer);
+            int aggressor = buffer.get();
+            int otcCode = (int) CompactFormat.getVarLong(buffer);
+            target.onTrade(time, instrument.id, price, size, aggressor, otcCode);
+            break;
+        } case CompactFormat.TAG_MBO_SEND_BID:
+        case CompactFormat.TAG_MBO_SEND_ASK: {
+            InstrumentState instrument = readInstrument();
+            long time = readTime();
+            String orderId = orderIdDictionary.resolve(instrument.id, (int) CompactFormat.getVarLong(buffer));
+            int price = readPrice(instrument);
+            int size = (int) CompactFormat.getVarLong(buffer);
+            target.onMboSend(time, instrument.id, orderId, tag == CompactFormat.TAG_MBO_SEND_BID, price, size);
+            break;
+        } case CompactFormat.TAG_MBO_REPLACE: {
+            InstrumentState instrument = readInstrument();
+            long time = readTime();
+            String orderId = orderIdDictionary.resolve(instrument.id, (int) CompactFormat.getVarLong(buffer));
+            int price = readPrice(instrument);
+            int size = (int) CompactFormat.getVarLong(buffer);
+            target.onMboReplace(time, instrument.id, orderId, price, size);
+            break;
+        } case CompactFormat.TAG_MBO_CANCEL: {
+            InstrumentState instrument = readInstrument();
+            long time = readTime();
+            String orderId = orderIdDictionary.release(instrument.id, (int) CompactFormat.getVarLong(buffer));
+            target.onMboCancel(time, instrument.id, orderId);
+            break;
+        } case SpecificFormatTags.ON_MBO_ORDER_ID: {
+            InstrumentState instrument = readInstrument();
+            readTime();
+            int orderKey = (int) CompactFormat.getVarLong(buffer);
+            orderIdDictionary.define(instrument.id, orderKey, readString());
+            break;
+        } case SpecificFormatTags.ON_BOOK_SNAPSHOT: {
+            InstrumentState instrument = readInstrument();
+            long time = readTime();
+            int bidsCount = (int) CompactFormat.getVarLong(buffer);
+            int asksCount = (int) CompactFormat.getVarLong(buffer);
+            OrderBook orderBook = new OrderBook();
+            for (int i = 0; i < bidsCount + asksCount; ++i) {
+                ensureAvailable(2 * CompactFormat.MAX_VARINT_SIZE);
+                int price = readPrice(instrument);
+                orderBook.onUpdate(i < bidsCount, price, CompactFormat.getVarLong(buffer));
+            }
+            target.onBookSnapshot(time, instrument.id, orderBook);
+            break;
+        } case CompactFormat.TAG_RESET: {
+            require(Long.BYTES);
+            lastTime = buffer.getLong();
+            instruments.clear();
+            break;
+        } case SpecificFormatTags.ON_FEED_SOURCE: {
+            require(Long.BYTES);
+            lastTime = buffer.getLong();
+            readString();
+            break;
+        } case SpecificFormatTags.ON_CONTRACT_DETAILS: {
+            long time = readTime();
+            require(Integer.BYTES);
+            int id = buffer.getInt();
+            String exchange = readString();
+            String symbol = readString();
+            String type = readString();
+            require(2 * Double.BYTES);
+            double pips = buffer.getDouble();
+            double multiplier = buffer.getDouble();
+            instruments.add(new InstrumentState(id));
+            if (knownInstruments.add(id)) {
+                target.onInstrumentAdded(time, id, new InstrumentInfo(symbol, exchange, type, pips, multiplier, symbol, true));
+            }
+            break;
+        } default:
+            throw new IOException("Unknown record tag: " + tag);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,254 @@
+package velox.api.layer1.simpledemo.datarecording;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import velox.api.layer1.data.ExecutionInfo;
+import velox.api.layer1.data.InstrumentInfo;
+import velox.api.layer1.data.OrderInfoUpdate;
+import velox.api.layer1.layers.utils.OrderBook;
+
+/**
+ * Records into the delta/varint encoded format described in
+ * {@link CompactFormat}. A typical depth update takes 5-8 bytes instead of
+ * 22 in {@link BinaryFormatRecorder} and about 40 in
+ * {@link SpecificFormatRecorder}, at the cost of only being readable
+ * sequentially from the start or from an index point.
+ */
+public class CompactFormatRecorder implements IndexableRecorder {
+
+    private static final int DEPTH_BUFFER_SIZE = 1 << 20;
+    private static final int ORDERS_BUFFER_SIZE = 1 << 16;
+
+    private static class InstrumentState {
+        final int index;
+        int lastPrice;
+
+        InstrumentState(int index) {
+            this.index = index;
+        }
+    }
+
+    private final BufferedChannelWriter depthWriter;
+    private final BufferedChannelWriter ordersWriter;
+
+    private final OrderIdInterner orderIdInterner = new OrderIdInterner();
+
+    private final Map<Integer, InstrumentState> instruments = new HashMap<>();
+    private int lastInstrumentId;
+    private InstrumentState lastInstrument;
+    private int nextInstrumentIndex;
+    private long lastTime;
+
+    public CompactFormatRecorder(long time, File depth, File orders, String dataSource) throws IOException {
+        depthWriter = new BufferedChannelWriter(depth, DEPTH_BUFFER_SIZE);
+        ordersWriter = new BufferedChannelWriter(orders, ORDERS_BUFFER_SIZE);
+
+        writeHeader(depthWriter);
+        OrderDataFormat.writeHeader(ordersWriter);
+
+        byte[] dataSourceBytes = BinaryFormat.encodeString(dataSource);
+        ByteBuffer buffer = depthWriter.reserve(1 + Long.BYTES + Short.BYTES + dataSourceBytes.length)
+                .put((byte) SpecificFormatTags.ON_FEED_SOURCE)
+                .putLong(time);
+        BinaryFormat.putString(buffer, dataSourceBytes);
+        lastTime = time;
+    }
+
+    private static void writeHeader(BufferedChannelWriter writer) throws IOException {
+        writer.reserve(CompactFormat.HEADER_SIZE)
+                .putInt(CompactFormat.MAGIC)
+                .putShort(CompactFormat.VERSION);
+    }
+
+    private InstrumentState getInstrument(int id) throws IOException {
+        // Consecutive events usually belong to the same instrument
+        if (lastInstrument == null || lastInstrumentId != id) {
+            InstrumentState instrument = instruments.get(id);
+            if (instrument == null) {
+                throw new IOException("Record for unknown instrument " + id);
+            }
+            lastInstrument = instrument;
+            lastInstrumentId = id;
+        }
+        return lastInstrument;
+    }
+
+    /**
+     * Starts a record that refers to an instrument and has time.
+     */
+    private ByteBuffer startRecord(int bytes, byte tag, InstrumentState instrument, long time) throws IOException {
+        ByteBuffer buffer = depthWriter.reserve(bytes).put(tag);
+        CompactFormat.putVarLong(buffer, instrument.index);
+        CompactFormat.putZigZag(buffer, time - lastTime);
+        lastTime = time;
+        return buffer;
+    }
+
+    private static void putPrice(ByteBuffer buffer, InstrumentState instrument, int price) {
+        CompactFormat.putZigZag(buffer, price - instrument.lastPrice);
+        instrument.lastPrice = price;
+    }
+
+    @Override
+    public void onTrade(long time, int id, double price, int size, int aggressor, int otcCode) throws IOException {
+        InstrumentState instrument = getInstrument(id);
+        int priceLevel = (int) price;
+        ByteBuffer buffer;
+        if (priceLevel == price) {
+            buffer = startRecord(CompactFormat.MAX_RECORD_SIZE, CompactFormat.TAG_TRADE, instrument, time);
+            putPrice(buffer, instrument, priceLevel);
+        } else {
+            buffer = startRecord(CompactFormat.MAX_RECORD_SIZE, CompactFormat.TAG_TRADE_FRACTIONAL, instrument, time);
+            buffer.putDouble(price);
+        }
+        CompactFormat.putVarLong(buffer, size);
+        buffer.put((byte) aggressor);
+        CompactFormat.putVarLong(buffer, otcCode);
+    }
+
+    @Override
+    public void onDepth(long time, int id, boolean isBid, int price, int size) throws IOException {
+        InstrumentState instrument = getInstrument(id);
+        ByteBuffer buffer = startRecord(CompactFormat.MAX_RECORD_SIZE,
+                isBid ? CompactFormat.TAG_DEPTH_BID : CompactFormat.TAG_DEPTH_ASK, instrument, time);
+        putPrice(buffer, instrument, price);
+        CompactFormat.putVarLong(buffer, size);
+    }
+
+    @Override
+    public void onBookSnapshot(long time, int id, OrderBook orderBook) throws IOException {
+        InstrumentState instrument = getInstrument(id);
+        Map<Integer, Long> bids = orderBook.getBidMap();
+        Map<Integer, Long> asks = orderBook.getAskMap();
+        ByteBuffer buffer = startRecord(CompactFormat.MAX_RECORD_SIZE, (byte) SpecificFormatTags.ON_BOOK_SNAPSHOT,
+                instrument, time);
+        CompactFormat.putVarLong(buffer, bids.size());
+        CompactFormat.putVarLong(buffer, asks.size());
+        writeLevels(instrument, bids);
+        writeLevels(instrument, asks);
+    }
+
+    private void writeLevels(InstrumentState instrument, Map<Integer, Long> levels) throws IOException {
+        for (Map.Entry<Integer, Long> level : levels.entrySet()) {
+            ByteBuffer buffer = depthWriter.reserve(2 * CompactFormat.MAX_VARINT_SIZE);
+            putPrice(buffer, instrument, level.getKey());
+            CompactFormat.putVarLong(buffer, level.getValue());
+        }
+    }
+
+    @Override
+    public void onMboSend(long time, int id, String orderId, boolean isBid, int price, int size) throws IOException {
+        InstrumentState instrument = getInstrument(id);
+        int orderKey = getOrderKey(time, id, instrument, orderId);
+        ByteBuffer buffer = startRecord(CompactFormat.MAX_RECORD_SIZE,
+                isBid ? CompactFormat.TAG_MBO_SEND_BID : CompactFormat.TAG_MBO_SEND_ASK, instrument, time);
+        CompactFormat.putVarLong(buffer, orderKey);
+        putPrice(buffer, instrument, price);
+        CompactFormat.putVarLong(buffer, size);
+    }
+
+    @Override
+    public void onMboReplace(long time, int id, String orderId, int price, int size) throws IOException {
+        InstrumentState instrument = getInstrument(id);
+        int orderKey = getOrderKey(time, id, instrument, orderId);
+        ByteBuffer buffer = startRecord(CompactFormat.MAX_RECORD_SIZE, CompactFormat.TAG_MBO_REPLACE, instrument, time);
+        CompactFormat.putVarLong(buffer, orderKey);
+        putPrice(buffer, instrument, price);
+        CompactFormat.putVarLong(buffer, size);
+    }
+
+    @Override
+    public void onMboCancel(long time, int id, String orderId) throws IOException {
+        InstrumentState instrument = getInstrument(id);
+        int orderKey = getOrderKey(time, id, instrument, orderId);
+        ByteBuffer buffer = startRecord(CompactFormat.MAX_RECORD_SIZE, CompactFormat.TAG_MBO_CANCEL, instrument, time);
+        CompactFormat.putVarLong(buffer, orderKey);
+        orderIdInterner.release(id, orderId);
+    }
+
+    /**
+     * @return key of the order, writing its definition first if the order
+     *         was not seen before
+     */
+    private int getOrderKey(long time, int id, InstrumentState instrument, String orderId) throws IOException {
+        int orderKey = orderIdInterner.find(id, orderId);
+        if (orderKey < 0) {
+            orderKey = orderIdInterner.assign(id, orderId);
+            byte[] orderIdBytes = BinaryFormat.encodeString(orderId);
+            ByteBuffer buffer = startRecord(1 + 3 * CompactFormat.MAX_VARINT_SIZE + Short.BYTES + orderIdBytes.length,
+                    (byte) SpecificFormatTags.ON_MBO_ORDER_ID, instrument, time);
+            CompactFormat.putVarLong(buffer, orderKey);
+            BinaryFormat.putString(buffer, orderIdBytes);
+        }
+        return orderKey;
+    }
+
+    @Override
+    public void onInstrumentAdded(long time, int id, InstrumentInfo instrumentInfo) throws IOException {
+        byte[] exchange = BinaryFormat.encodeString(instrumentInfo.exchange);
+        byte[] symbol = BinaryFormat.encodeString(instrumentInfo.symbol);
+        byte[] type = BinaryFormat.encodeString(instrumentInfo.type);
+
+        ByteBuffer buffer = depthWriter.reserve(1 + CompactFormat.MAX_VARINT_SIZE + Integer.BYTES
+                + 3 * Short.BYTES + exchange.length + symbol.length + type.length
+                + 2 * Double.BYTES);
+        buffer.put((byte) SpecificFormatTags.ON_CONTRACT_DETAILS);
+        CompactFormat.putZigZag(buffer, time - lastTime);
+        lastTime = time;
+        buffer.putInt(id);
+        BinaryFormat.putString(buffer, exchange);
+        BinaryFormat.putString(buffer, symbol);
+        BinaryFormat.putString(buffer, type);
+        buffer.putDouble(instrumentInfo.pips)
+                .putDouble(instrumentInfo.multiplier);
+
+        instruments.put(id, new InstrumentState(nextInstrumentIndex++));
+        lastInstrument = null;
+    }
+
+    @Override
+    public long getDepthPosition() throws IOException {
+        return depthWriter.position();
+    }
+
+    @Override
+    public void resetState(long time) throws IOException {
+        depthWriter.reserve(1 + Long.BYTES)
+                .put(CompactFormat.TAG_RESET)
+                .putLong(time);
+        lastTime = time;
+        instruments.clear();
+        lastInstrument = null;
+        nextInstrumentIndex = 0;
+        orderIdInterner.clear();
+    }
+
+    @Override
+    public void onOrderUpdated(long time, OrderInfoUpdate orderInfoUpdate) throws IOException {
+        OrderDataFormat.writeOrderUpdate(ordersWriter, time, orderInfoUpdate);
+    }
+
+    @Override
+    public void onOrderExecuted(long time, ExecutionInfo executionInfo) throws IOException {
+        OrderDataFormat.writeExecution(ordersWriter, time, executionInfo);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        depthWriter.flush();
+        ordersWriter.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            depthWriter.close();
+        } finally {
+            ordersWriter.close();
+        }
+    }
+}
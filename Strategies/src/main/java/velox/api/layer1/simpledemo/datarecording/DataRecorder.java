@@ -0,0 +1,47 @@
+package velox.api.layer1.simpledemo.datarecording;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+
+import velox.api.layer1.data.ExecutionInfo;
+import velox.api.layer1.data.InstrumentInfo;
+import velox.api.layer1.data.OrderInfoUpdate;
+import velox.api.layer1.layers.utils.OrderBook;
+
+/**
+ * Common surface of the feed recorders. Each implementation defines its own
+ * on-disk format, {@link FeedRecorder} only decides what to record and when.
+ * <p>
+ * Times are in nanoseconds, prices are in price levels (multiply by
+ * {@link InstrumentInfo#pips} to get the real price). Instruments are
+ * identified by the id passed to {@link #onInstrumentAdded(long, int, InstrumentInfo)}.
+ * <p>
+ * Implementations are free to buffer data, it is only guaranteed to reach
+ * the disk after {@link #flush()} or {@link #close()}.
+ */
+public interface DataRecorder extends Closeable, Flushable {
+
+    void onInstrumentAdded(long time, int id, InstrumentInfo instrumentInfo) throws IOException;
+
+    void onTrade(long time, int id, double price, int size, int aggressor, int otcCode) throws IOException;
+
+    void onDepth(long time, int id, boolean isBid, int price, int size) throws IOException;
+
+    /**
+     * Full state of the book of the instrument, replacing whatever was known
+     * before. Depth updates that follow are applied on top of it. The book
+     * must not be modified until the call returns.
+     */
+    void onBookSnapshot(long time, int id, OrderBook orderBook) throws IOException;
+
+    void onMboSend(long time, int id, String orderId, boolean isBid, int price, int size) throws IOException;
+
+    void onMboReplace(long time, int id, String orderId, int price, int size) throws IOException;
+
+    void onMboCancel(long time, int id, String orderId) throws IOException;
+
+    void onOrderUpdated(long time, OrderInfoUpdate orderInfoUpdate) throws IOException;
+
+    void onOrderExecuted(long time, ExecutionInfo executionInfo) throws IOException;
+}
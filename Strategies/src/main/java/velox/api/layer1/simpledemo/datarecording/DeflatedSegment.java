@@ -0,0 +1,258 @@
+package velox.api.layer1.simpledemo.datarecording;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Block-level compression of closed recording segments. Each index point of
+ * the segment starts a new independently deflated block, so reading can still
+ * start from any index point without inflating what's before it.
+ * <p>
+ * File is {@link #MAGIC} and {@link #VERSION}, followed by zlib blocks and a
+ * block table: uncompressed offset (long) and file offset (long) of each
+ * block, then blocks count (int) and {@link #MAGIC} again.
+ */
+public class DeflatedSegment {
+
+    public static final String EXTENSION = ".z";
+
+    public static final int MAGIC = 0x5A464D42; // "BMFZ" when read as little-endian bytes
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = Integer.BYTES + Short.BYTES;
+    public static final int TRAILER_SIZE = Integer.BYTES + Integer.BYTES;
+    public static final int BLOCK_ENTRY_SIZE = Long.BYTES + Long.BYTES;
+
+    private static final int CHUNK_SIZE = 1 << 16;
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    public static boolean isDeflated(File file) {
+        return file.getName().endsWith(EXTENSION);
+    }
+
+    public static File getDeflatedFile(File file) {
+        return new File(file.getPath() + EXTENSION);
+    }
+
+    /**
+     * Compresses the segment into {@link #getDeflatedFile(File)} and deletes
+     * the original. Deflated file only appears when it's complete, so the
+     * segment is readable at any moment.
+     */
+    public static void deflate(File depth, File index) throws IOException {
+        long[] blockStarts;
+        try (RecordingIndex recordingIndex = new RecordingIndex(index)) {
+            int entriesCount = recordingIndex.getEntriesCount();
+            blockStarts = new long[entriesCount + 1];
+            blockStarts[0] = 0;
+            int blocksCount = 1;
+            for (int i = 0; i < entriesCount; ++i) {
+                long offset = recordingIndex.getOffset(i);
+                if (offset > blockStarts[blocksCount - 1]) {
+                    blockStarts[blocksCount++] = offset;
+                }
+            }
+            blockStarts = Arrays.copyOf(blockStarts, blocksCount);
+        }
+
+        File deflated = getDeflatedFile(depth);
+        File temporary = new File(deflated.getPath() + ".tmp");
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (FileChannel input = FileChannel.open(depth.toPath(), StandardOpenOption.READ);
+                BufferedChannelWriter output = new BufferedChannelWriter(temporary, WRITE_BUFFER_SIZE)) {
+            output.reserve(HEADER_SIZE)
+                    .putInt(MAGIC)
+                    .putShort(VERSION);
+
+            long size = input.size();
+            long[] blockPositions = new long[blockStarts.length];
+            byte[] inputChunk = new byte[CHUNK_SIZE];
+            byte[] outputChunk = new byte[CHUNK_SIZE];
+            ByteBuffer inputBuffer = ByteBuffer.wrap(inputChunk);
+            for (int block = 0; block < blockStarts.length; ++block) {
+                blockPositions[block] = output.position();
+                long end = block + 1 < blockStarts.length ? blockStarts[block + 1] : size;
+                deflater.reset();
+                for (long position = blockStarts[block]; position < end;) {
+                    inputBuffer.clear().limit((int) Math.min(CHUNK_SIZE, end - position));
+                    while (inputBuffer.hasRemaining()) {
+                        if (input.read(inputBuffer, position + inputBuffer.position()) < 0) {
+                            throw new IOException("Segment is shorter than its index: " + depth);
+                        }
+                    }
+                    position += inputBuffer.limit();
+                    deflater.setInput(inputChunk, 0, inputBuffer.limit());
+                    while (!deflater.needsInput()) {
+                        write(output, outputChunk, deflater.deflate(outputChunk));
+                    }
+                }
+                deflater.finish();
+                while (!deflater.finished()) {
+                    write(output, outputChunk, deflater.deflate(outputChunk));
+                }
+            }
+
+            for (int block = 0; block < blockStarts.length; ++block) {
+                output.reserve(BLOCK_ENTRY_SIZE)
+                        .putLong(blockStarts[block])
+                        .putLong(blockPositions[block]);
+            }
+            output.reserve(TRAILER_SIZE)
+                    .putInt(blockStarts.length)
+                    .putInt(MAGIC);
+        } finally {
+            deflater.end();
+        }
+
+        Files.move(temporary.toPath(), deflated.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Files.delete(depth.toPath());
+    }
+
+    private static void write(BufferedChannelWriter output, byte[] chunk, int length) throws IOException {
+        output.reserve(length).put(chunk, 0, length);
+    }
+
+    /**
+     * @param offset offset in the original file, should be an index point
+     *            for reading to be efficient
+     * @return stream of the original file content starting from the offset
+     */
+    public static InputStream open(File deflated, long offset) throws IOException {
+        FileChannel channel = FileChannel.open(deflated.toPath(), StandardOpenOption.READ);
+        try {
+            ByteBuffer trailer = readFully(channel, channel.size() - TRAILER_SIZE, TRAILER_SIZE);
+            int blocksCount = trailer.getInt();
+            if (trailer.getInt() != MAGIC || blocksCount <= 0) {
+                throw new IOException("Not a deflated segment or it's incomplete: " + deflated);
+            }
+            long tableStart = channel.size() - TRAILER_SIZE - (long) blocksCount * BLOCK_ENTRY_SIZE;
+
+            // Last block starting not after the offset
+            int low = 0;
+            int high = blocksCount - 1;
+            int block = 0;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                long blockStart = readFully(channel, tableStart + (long) middle * BLOCK_ENTRY_SIZE, Long.BYTES).getLong();
+                if (blockStart <= offset) {
+                    block = middle;
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            ByteBuffer entry = readFully(channel, tableStart + (long) block * BLOCK_ENTRY_SIZE, BLOCK_ENTRY_SIZE);
+            long blockStart = entry.getLong();
+            long blockPosition = entry.getLong();
+
+            InputStream stream = new BlocksInputStream(channel, blockPosition, tableStart);
+            long toSkip = offset - blockStart;
+            while (toSkip > 0) {
+                long skipped = stream.skip(toSkip);
+                if (skipped <= 0) {
+                    break;
+                }
+                toSkip -= skipped;
+            }
+            return stream;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(bytes).order(BinaryFormat.BYTE_ORDER);
+        while (buffer.hasRemaining()) {
+            if (position < 0 || channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of deflated segment");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Inflates consecutive blocks as one stream.
+     */
+    private static class BlocksInputStream extends InputStream {
+
+        private final FileChannel channel;
+        private final Inflater inflater = new Inflater();
+        private final byte[] input = new byte[CHUNK_SIZE];
+        private final byte[] single = new byte[1];
+        private long position;
+        private final long end;
+
+        private int inputStart;
+        private int inputLength;
+
+        BlocksInputStream(FileChannel channel, long position, long end) {
+            this.channel = channel;
+            this.position = position;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            try {
+                while (true) {
+                    int inflated = inflater.inflate(b, off, len);
+                    if (inflated > 0) {
+                        return inflated;
+                    }
+                    if (inflater.finished()) {
+                        // Next block follows right after, possibly already in the input
+                        int remaining = inflater.getRemaining();
+                        inflater.reset();
+                        inputStart = inputStart + inputLength - remaining;
+                        inputLength = remaining;
+                        if (remaining > 0) {
+                            inflater.setInput(input, inputStart, inputLength);
+                        }
+                    } else if (inflater.needsInput()) {
+                        if (position >= end) {
+                            return -1;
+                        }
+                        ByteBuffer buffer = ByteBuffer.wrap(input, 0, (int) Math.min(input.length, end - position));
+                        int read = channel.read(buffer, position);
+                        if (read < 0) {
+                            return -1;
+                        }
+                        position += read;
+                        inputStart = 0;
+                        inputLength = read;
+                        inflater.setInput(input, 0, read);
+                    } else if (inflater.needsDictionary()) {
+                        throw new IOException("Unexpected deflate dictionary");
+                    }
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupted deflated segment", e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            inflater.end();
+            channel.close();
+        }
+    }
+}
@@ -4,12 +4,18 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 
+import javax.swing.ButtonGroup;
 import javax.swing.JCheckBox;
+import javax.swing.JLabel;
+import javax.swing.JRadioButton;
+import javax.swing.Timer;
 
 import velox.api.layer1.Layer1ApiDataAdapter;
 import velox.api.layer1.Layer1ApiFinishable;
 import velox.api.layer1.Layer1ApiInstrumentAdapter;
+import velox.api.layer1.Layer1ApiMboDataAdapter;
 import velox.api.layer1.Layer1ApiProvider;
 import velox.api.layer1.Layer1ApiTradingAdapter;
 import velox.api.layer1.Layer1CustomPanelsGetter;
@@ -28,6 +34,14 @@ import velox.gui.StrategyPanel;
  * Simple demo for recording feed. It takes all data passing through the
  * strategy and writes it to text file in working
  * directory("C:\Bookmap\Config").
+ * Text format is easy to review, but expensive to write - binary format
+ * ({@link BinaryFormatRecorder}) can be selected in settings for long
+ * recordings. Switching the format starts a new recording.
+ * Recordings are split into segments with a time index (see
+ * {@link SegmentedRecorder}), so a part of a long recording can be read
+ * without scanning it from the start.
+ * Writing is done by a separate thread (see {@link AsyncRecorder}), so data
+ * thread is not blocked by disk I/O.
  * In replay mode you should not use rewind functionality with this strategy.
  */
 
@@ -35,98 +49,186 @@ import velox.gui.StrategyPanel;
 @Layer1StrategyName("FeedRecorder demo")
 @Layer1ApiVersion(Layer1ApiVersionValue.VERSION2)
 public class FeedRecorder implements Layer1CustomPanelsGetter, Layer1ApiDataAdapter, Layer1ApiFinishable,
-        Layer1ApiInstrumentAdapter, Layer1ApiTradingAdapter {
+        Layer1ApiInstrumentAdapter, Layer1ApiTradingAdapter, Layer1ApiMboDataAdapter {
 
-    private SpecificFormatRecorder recorder;
+    public enum RecordingFormat {
+        TEXT,
+        BINARY,
+        COMPACT
+    }
+
+    private static final int STATISTICS_UPDATE_INTERVAL_MS = 500;
+
+    private final Layer1ApiProvider provider;
+    private final AsyncRecorder recorder;
+    private RecordingFormat recordingFormat = RecordingFormat.TEXT;
+    private SegmentedRecorder segmentedRecorder;
     private Map<String, InstrumentInfo> instruments = new TreeMap<>();
     private Map<String, Integer> instrumentIds = new TreeMap<>();
     private JCheckBox recordTrades = new JCheckBox("Record trades", true);
     private JCheckBox recordOrders = new JCheckBox("Record orders", true);
+    private JCheckBox recordMbo = new JCheckBox("Record MBO", true);
+    private JRadioButton textFormat = new JRadioButton("Text format", true);
+    private JRadioButton binaryFormat = new JRadioButton("Binary format");
+    private JRadioButton compactFormat = new JRadioButton("Compact format");
+    private JCheckBox deflateSegments = new JCheckBox("Deflate closed segments (compact format)", false);
+    private JLabel statisticsLabel = new JLabel();
+    private Timer statisticsTimer = new Timer(STATISTICS_UPDATE_INTERVAL_MS, e -> updateStatistics());
 
     public FeedRecorder(Layer1ApiProvider provider) throws IOException {
-        File depthRecordsFile = new File(System.getProperty("user.dir"), "FeedRecorder_demo_depth-" + System.currentTimeMillis() + ".txt");
-        File ordersRecordsFile = new File(System.getProperty("user.dir"), "FeedRecorder_demo_orders-"  + System.currentTimeMillis() + ".txt");
-        recorder = new SpecificFormatRecorder(System.currentTimeMillis(), depthRecordsFile, ordersRecordsFile,
-                provider.getSource());
+        this.provider = provider;
+        recorder = new AsyncRecorder(createRecorder(recordingFormat));
+
+        ButtonGroup formatGroup = new ButtonGroup();
+        formatGroup.add(textFormat);
+        formatGroup.add(binaryFormat);
+        formatGroup.add(compactFormat);
+        textFormat.addActionListener(e -> setRecordingFormat(RecordingFormat.TEXT));
+        binaryFormat.addActionListener(e -> setRecordingFormat(RecordingFormat.BINARY));
+        compactFormat.addActionListener(e -> setRecordingFormat(RecordingFormat.COMPACT));
+        deflateSegments.addActionListener(e -> updateDeflateSegments());
+
         // register listener to get data
         ListenableHelper.addListeners(provider, this);
     }
 
+    private synchronized DataRecorder createRecorder(RecordingFormat format) throws IOException {
+        long currentTimeMillis = System.currentTimeMillis();
+        segmentedRecorder = new SegmentedRecorder(provider.getCurrentTime(), new File(System.getProperty("user.dir")),
+                "FeedRecorder_demo_depth-" + currentTimeMillis, "FeedRecorder_demo_orders-" + currentTimeMillis,
+                format, provider.getSource());
+        segmentedRecorder.setDeflateClosedSegments(deflateSegments.isSelected());
+        return segmentedRecorder;
+    }
+
+    private synchronized void updateDeflateSegments() {
+        segmentedRecorder.setDeflateClosedSegments(deflateSegments.isSelected());
+    }
+
+    /**
+     * Closes current files and continues recording into new ones in the
+     * requested format. Known instruments are written again, so new files can
+     * be read on their own.
+     */
+    private synchronized void setRecordingFormat(RecordingFormat format) {
+        if (format == recordingFormat) {
+            return;
+        }
+        try {
+            DataRecorder newRecorder = createRecorder(format);
+            // Writer thread does not use the new recorder yet, so it's safe to write here
+            for (Map.Entry<String, InstrumentInfo> entry : instruments.entrySet()) {
+                newRecorder.onInstrumentAdded(provider.getCurrentTime(), instrumentIds.get(entry.getKey()), entry.getValue());
+            }
+            recorder.replaceRecorder(newRecorder);
+            recordingFormat = format;
+        } catch (IOException e) {
+            throwRuntimeException(e);
+        }
+    }
+
     @Override
     public StrategyPanel[] getCustomGuiFor(String alias, String indicatorName) {
         StrategyPanel settingsPanel = new StrategyPanel("FeedRecorder demo");
         settingsPanel.add(recordTrades);
         settingsPanel.add(recordOrders);
-        return new StrategyPanel[] { settingsPanel };
+        settingsPanel.add(recordMbo);
+        settingsPanel.add(textFormat);
+        settingsPanel.add(binaryFormat);
+        settingsPanel.add(compactFormat);
+        settingsPanel.add(deflateSegments);
+
+        StrategyPanel statisticsPanel = new StrategyPanel("Writer statistics");
+        statisticsPanel.add(statisticsLabel);
+        updateStatistics();
+        statisticsTimer.start();
+
+        return new StrategyPanel[] { settingsPanel, statisticsPanel };
+    }
+
+    private void updateStatistics() {
+        statisticsLabel.setText("<html>Queue depth: " + recorder.getQueueDepth()
+                + "<br/>Dropped events: " + recorder.getDroppedEvents()
+                + "<br/>Flush latency, us: " + TimeUnit.NANOSECONDS.toMicros(recorder.getLastFlushLatencyNs())
+                + " (max " + TimeUnit.NANOSECONDS.toMicros(recorder.getMaxFlushLatencyNs()) + ")</html>");
     }
 
     @Override
     public void onTrade(String alias, double price, int size, TradeInfo tradeInfo) {
-        if (recordTrades.isEnabled()) {
-            try {
-                recorder.onTrade(instrumentIds.get(alias), instruments.get(alias).pips * price, size,
-                        tradeInfo.isBidAggressor ? 1 : -1, 0);
-            } catch (IOException e) {
-                throwRuntimeException(e);
-            }
+        if (recordTrades.isSelected()) {
+            recorder.onTrade(provider.getCurrentTime(), instrumentIds.get(alias), price, size,
+                    tradeInfo.isBidAggressor ? 1 : -1, 0);
         }
     }
 
     @Override
     public void onDepth(String alias, boolean isBid, int price, int size) {
-        try {
-            recorder.onDepth(instrumentIds.get(alias), isBid, instruments.get(alias).pips * price, size);
-        } catch (IOException e) {
-            throwRuntimeException(e);
+        recorder.onDepth(provider.getCurrentTime(), instrumentIds.get(alias), isBid, price, size);
+    }
+
+    @Override
+    public void onMboSend(String alias, String orderId, boolean isBid, int price, int size) {
+        if (recordMbo.isSelected()) {
+            recorder.onMboSend(provider.getCurrentTime(), instrumentIds.get(alias), orderId, isBid, price, size);
         }
     }
 
     @Override
-    public void finish() {
-        // We could close recorder here if it would be something more complex
+    public void onMboReplace(String alias, String orderId, int price, int size) {
+        if (recordMbo.isSelected()) {
+            recorder.onMboReplace(provider.getCurrentTime(), instrumentIds.get(alias), orderId, price, size);
+        }
     }
 
     @Override
-    public void onInstrumentAdded(String alias, InstrumentInfo instrumentInfo) {
-        instruments.put(alias, instrumentInfo);
-        int id = (int)(Math.random() * Integer.MAX_VALUE);
-        instrumentIds.put(alias, id);
+    public void onMboCancel(String alias, String orderId) {
+        if (recordMbo.isSelected()) {
+            recorder.onMboCancel(provider.getCurrentTime(), instrumentIds.get(alias), orderId);
+        }
+    }
+
+    @Override
+    public synchronized void finish() {
+        statisticsTimer.stop();
         try {
-            recorder.onInstrumentAdded(id, instrumentInfo);
+            recorder.close();
         } catch (IOException e) {
             throwRuntimeException(e);
+        } finally {
+            // Closing a recorder leaves its last segment to be deflated
+            SegmentedRecorder.awaitDeflation();
         }
     }
 
+    @Override
+    public synchronized void onInstrumentAdded(String alias, InstrumentInfo instrumentInfo) {
+        instruments.put(alias, instrumentInfo);
+        int id = (int)(Math.random() * Integer.MAX_VALUE);
+        instrumentIds.put(alias, id);
+        recorder.onInstrumentAdded(provider.getCurrentTime(), id, instrumentInfo);
+    }
+
     private void throwRuntimeException(Throwable e) {
         throw new RuntimeException(e);
     }
 
     @Override
-    public void onInstrumentRemoved(String alias) {
+    public synchronized void onInstrumentRemoved(String alias) {
         instruments.remove(alias);
         instrumentIds.remove(alias);
     }
 
     @Override
     public void onOrderUpdated(OrderInfoUpdate orderInfoUpdate) {
-        if (recordOrders.isEnabled()) {
-            try {
-                recorder.onOrderData(orderInfoUpdate.toString());
-            } catch (IOException e) {
-                throwRuntimeException(e);
-            }
+        if (recordOrders.isSelected()) {
+            recorder.onOrderUpdated(provider.getCurrentTime(), orderInfoUpdate);
         }
     }
 
     @Override
     public void onOrderExecuted(ExecutionInfo executionInfo) {
-        if (recordOrders.isEnabled()) {
-            try {
-                recorder.onOrderData(executionInfo.toString());
-            } catch (IOException e) {
-                throwRuntimeException(e);
-            }
+        if (recordOrders.isSelected()) {
+            recorder.onOrderExecuted(provider.getCurrentTime(), executionInfo);
         }
     }
 }
@@ -0,0 +1,294 @@
+package velox.api.layer1.simpledemo.datarecording;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import velox.api.layer1.data.ExecutionInfo;
+import velox.api.layer1.data.InstrumentInfo;
+import velox.api.layer1.data.OrderInfoUpdate;
+import velox.api.layer1.data.TradeInfo;
+import velox.api.layer1.layers.utils.OrderBook;
+import velox.api.layer1.simplified.CustomModule;
+import velox.api.layer1.simplified.DepthDataListener;
+import velox.api.layer1.simplified.IntervalListener;
+import velox.api.layer1.simplified.MarketByOrderDepthDataListener;
+import velox.api.layer1.simplified.TimeListener;
+import velox.api.layer1.simplified.TradeDataListener;
+
+/**
+ * Replays a recording made by {@link FeedRecorder} into a Simplified API
+ * module without Bookmap, as fast as the module can process it. Useful to
+ * quickly check how a change in a strategy affects its behavior on the same
+ * data.
+ * <p>
+ * MBO replace and cancel events for orders that module has not seen being
+ * sent (e.g. because recording was started when those were already in the
+ * book) are skipped.
+ * <p>
+ * Book snapshots are turned into depth updates for the levels that differ
+ * from what the module has already seen, so replay can start from the middle
+ * of a recording (see {@link SegmentedRecordingReader#seek(long)}).
+ * <p>
+ * One module instance is created per recorded instrument (optionally only
+ * for a single symbol). Modules get {@link ReplayApi} instead of the real api
+ * and null initial state, so modules relying on those won't be able to do
+ * much - but typical indicator/signal logic works as is.
+ * <p>
+ * Usage: {@code FeedReplayEngine <recording> <module class> [symbol|*] [from, epoch ms]},
+ * where recording is either a depth file or a depth name of a segmented
+ * recording (e.g. {@code FeedRecorder_demo_depth-1546300800000}). Start time
+ * is only supported for segmented recordings.
+ */
+public class FeedReplayEngine {
+
+    private static final TradeInfo[] TRADE_INFOS = {
+            new TradeInfo(false, false),
+            new TradeInfo(false, true),
+            new TradeInfo(true, false),
+            new TradeInfo(true, true),
+    };
+
+    private static class ModuleState {
+        final CustomModule module;
+        final TradeDataListener tradeDataListener;
+        final DepthDataListener depthDataListener;
+        final MarketByOrderDepthDataListener mboListener;
+        final IntervalListener intervalListener;
+        final TimeListener timeListener;
+
+        final long interval;
+        long nextIntervalTime = Long.MIN_VALUE;
+
+        final Set<String> knownOrders = new HashSet<>();
+        /** Book as seen by the module, only maintained for depth listeners */
+        OrderBook orderBook = new OrderBook();
+
+        ModuleState(CustomModule module) {
+            this.module = module;
+            tradeDataListener = module instanceof TradeDataListener ? (TradeDataListener) module : null;
+            depthDataListener = module instanceof DepthDataListener ? (DepthDataListener) module : null;
+            mboListener = module instanceof MarketByOrderDepthDataListener ? (MarketByOrderDepthDataListener) module : null;
+            intervalListener = module instanceof IntervalListener ? (IntervalListener) module : null;
+            timeListener = module instanceof TimeListener ? (TimeListener) module : null;
+            interval = intervalListener == null ? 0 : intervalListener.getInterval();
+        }
+    }
+
+    private final Class<? extends CustomModule> moduleClass;
+    private final String symbol;
+    private final ReplayApi replayApi = new ReplayApi();
+
+    private final Map<Integer, ModuleState> modules = new HashMap<>();
+    private long eventsCount;
+
+    /**
+     * @param symbol if not null, only instrument with this symbol is replayed
+     */
+    public FeedReplayEngine(Class<? extends CustomModule> moduleClass, String symbol) {
+        this.moduleClass = moduleClass;
+        this.symbol = symbol;
+    }
+
+    public ReplayApi getReplayApi() {
+        return replayApi;
+    }
+
+    /**
+     * @return number of events passed to modules
+     */
+    public long getEventsCount() {
+        return eventsCount;
+    }
+
+    /**
+     * Replays the whole recording and stops the modules.
+     */
+    public void replay(File depthFile) throws IOException {
+        try (RecordingReader reader = RecordingReader.open(depthFile)) {
+            replay(reader);
+        }
+    }
+
+    /**
+     * Replays remaining records of the reader and stops the modules. Reader
+     * is not closed.
+     */
+    public void replay(RecordingReader reader) throws IOException {
+        try {
+            reader.readAll(new ReplayTarget());
+        } finally {
+            for (ModuleState state : modules.values()) {
+                state.module.stop();
+            }
+        }
+    }
+
+    private ModuleState onEvent(long time, int id) {
+        ModuleState state = modules.get(id);
+        if (state == null) {
+            return null;
+        }
+        ++eventsCount;
+
+        if (state.timeListener != null) {
+            state.timeListener.onTimestamp(time);
+        }
+        if (state.intervalListener != null && state.interval > 0) {
+            if (state.nextIntervalTime == Long.MIN_VALUE) {
+                state.nextIntervalTime = (time / state.interval + 1) * state.interval;
+            }
+            while (time >= state.nextIntervalTime) {
+                state.intervalListener.onInterval();
+                state.nextIntervalTime += state.interval;
+            }
+        }
+        return state;
+    }
+
+    private static void sendDifference(DepthDataListener listener, boolean isBid,
+            TreeMap<Integer, Long> current, TreeMap<Integer, Long> snapshot) {
+        for (Integer price : current.keySet()) {
+            if (!snapshot.containsKey(price)) {
+                listener.onDepth(isBid, price, 0);
+            }
+        }
+        for (Map.Entry<Integer, Long> level : snapshot.entrySet()) {
+            Long size = current.get(level.getKey());
+            if (size == null || size.longValue() != level.getValue().longValue()) {
+                listener.onDepth(isBid, level.getKey(), level.getValue().intValue());
+            }
+        }
+    }
+
+    private class ReplayTarget implements DataRecorder {
+
+        @Override
+        public void onInstrumentAdded(long time, int id, InstrumentInfo instrumentInfo) throws IOException {
+            if (modules.containsKey(id) || (symbol != null && !symbol.equals(instrumentInfo.symbol))) {
+                return;
+            }
+
+            CustomModule module;
+            try {
+                module = moduleClass.getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new IOException("Failed to create " + moduleClass.getName(), e);
+            }
+            module.initialize(instrumentInfo.symbol, instrumentInfo, replayApi.getApi(), null);
+            modules.put(id, new ModuleState(module));
+        }
+
+        @Override
+        public void onTrade(long time, int id, double price, int size, int aggressor, int otcCode) {
+            ModuleState state = onEvent(time, id);
+            if (state != null && state.tradeDataListener != null) {
+                TradeInfo tradeInfo = TRADE_INFOS[(otcCode != 0 ? 2 : 0) + (aggressor == 1 ? 1 : 0)];
+                state.tradeDataListener.onTrade(price, size, tradeInfo);
+            }
+        }
+
+        @Override
+        public void onDepth(long time, int id, boolean isBid, int price, int size) {
+            ModuleState state = onEvent(time, id);
+            if (state != null && state.depthDataListener != null) {
+                state.orderBook.onUpdate(isBid, price, size);
+                state.depthDataListener.onDepth(isBid, price, size);
+            }
+        }
+
+        /**
+         * Readers create a new book for each snapshot, so it's kept as is.
+         */
+        @Override
+        public void onBookSnapshot(long time, int id, OrderBook orderBook) {
+            ModuleState state = onEvent(time, id);
+            if (state != null && state.depthDataListener != null) {
+                sendDifference(state.depthDataListener, true, state.orderBook.getBidMap(), orderBook.getBidMap());
+                sendDifference(state.depthDataListener, false, state.orderBook.getAskMap(), orderBook.getAskMap());
+                state.orderBook = orderBook;
+            }
+        }
+
+        @Override
+        public void onMboSend(long time, int id, String orderId, boolean isBid, int price, int size) {
+            ModuleState state = onEvent(time, id);
+            if (state != null && state.mboListener != null && state.knownOrders.add(orderId)) {
+                state.mboListener.send(orderId, isBid, price, size);
+            }
+        }
+
+        @Override
+        public void onMboReplace(long time, int id, String orderId, int price, int size) {
+            ModuleState state = onEvent(time, id);
+            if (state != null && state.mboListener != null && state.knownOrders.contains(orderId)) {
+                state.mboListener.replace(orderId, price, size);
+            }
+        }
+
+        @Override
+        public void onMboCancel(long time, int id, String orderId) {
+            ModuleState state = onEvent(time, id);
+            if (state != null && state.mboListener != null && state.knownOrders.remove(orderId)) {
+                state.mboListener.cancel(orderId);
+            }
+        }
+
+        @Override
+        public void onOrderUpdated(long time, OrderInfoUpdate orderInfoUpdate) {
+        }
+
+        @Override
+        public void onOrderExecuted(long time, ExecutionInfo executionInfo) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: FeedReplayEngine <recording> <module class> [symbol|*] [from, epoch ms]");
+            System.exit(1);
+        }
+
+        Class<? extends CustomModule> moduleClass = Class.forName(args[1]).asSubclass(CustomModule.class);
+        String symbol = args.length > 2 && !"*".equals(args[2]) ? args[2] : null;
+        FeedReplayEngine engine = new FeedReplayEngine(moduleClass, symbol);
+
+        File file = new File(args[0]).getAbsoluteFile();
+        RecordingReader reader;
+        if (file.isFile()) {
+            reader = RecordingReader.open(file);
+        } else {
+            SegmentedRecordingReader segmentedReader = new SegmentedRecordingReader(file.getParentFile(), file.getName());
+            if (args.length > 3) {
+                segmentedReader.seek(TimeUnit.MILLISECONDS.toNanos(Long.parseLong(args[3])));
+            }
+            reader = segmentedReader;
+        }
+
+        long start = System.nanoTime();
+        try {
+            engine.replay(reader);
+        } finally {
+            reader.close();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long events = engine.getEventsCount();
+        System.out.println("Replayed " + events + " events in " + TimeUnit.NANOSECONDS.toMillis(elapsed) + " ms ("
+                + (long) (events / (elapsed / 1e9)) + " events/s)");
+        engine.getReplayApi().getCallCounts().forEach((method, count) -> System.out.println("Api." + method + ": " + count));
+    }
+}
@@ -0,0 +1,23 @@
+package velox.api.layer1.simpledemo.datarecording;
+
+import java.io.IOException;
+
+/**
+ * Recorder that {@link SegmentedRecorder} can put index points into. Reading
+ * can start from an index point instead of the beginning of the file.
+ */
+interface IndexableRecorder extends DataRecorder {
+
+    /**
+     * @return offset in the depth file where the next record will be written
+     */
+    long getDepthPosition() throws IOException;
+
+    /**
+     * Makes following records independent from the previous ones: orders
+     * seen before get their ids written again when they are used next time,
+     * delta-encoded values start from scratch. Instruments are not written by
+     * this method - that's up to the caller.
+     */
+    void resetState(long time) throws IOException;
+}
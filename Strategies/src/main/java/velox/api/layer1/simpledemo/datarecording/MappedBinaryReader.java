@@ -0,0 +1,148 @@
+package velox.api.layer1.simpledemo.datarecording;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Zero-copy reader of {@link BinaryFormat} depth files for analysis. The file
+ * is memory-mapped and records are exposed through a single reusable
+ * {@link BinaryRecordView}, so iterating over a recording does not allocate.
+ * Unlike {@link BinaryFormatReader} it does not resolve order ids or build
+ * books - it's up to the caller to interpret records it cares about.
+ * <p>
+ * Files are mapped by windows of up to {@link #WINDOW_SIZE} bytes, so
+ * segments of any size can be read. A mapping is released when it's garbage
+ * collected, not on {@link #close()}.
+ * <p>
+ * Cursor usage:
+ * <pre>
+ * while (reader.next()) {
+ *     BinaryRecordView record = reader.getRecord();
+ *     ...
+ * }
+ * </pre>
+ */
+public class MappedBinaryReader implements Closeable {
+
+    public static final int WINDOW_SIZE = 1 << 30;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final BinaryRecordView record = new BinaryRecordView();
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int windowSize;
+
+    /** Position of the current record in the window */
+    private int recordOffset;
+    private int recordLength;
+
+    public MappedBinaryReader(File depth) throws IOException {
+        this(depth, BinaryFormat.HEADER_SIZE);
+    }
+
+    /**
+     * @param offset where to start reading, has to be an index point written
+     *            by {@link SegmentedRecorder}
+     */
+    public MappedBinaryReader(File depth, long offset) throws IOException {
+        channel = FileChannel.open(depth.toPath(), StandardOpenOption.READ);
+        fileSize = channel.size();
+        try {
+            map(0);
+            if (windowSize < BinaryFormat.HEADER_SIZE || window.getInt(0) != BinaryFormat.MAGIC) {
+                throw new IOException("Not a binary recording: " + depth);
+            }
+            short version = window.getShort(Integer.BYTES);
+            if (version != BinaryFormat.VERSION) {
+                throw new IOException("Unsupported binary recording version " + version + ": " + depth);
+            }
+            seek(Math.max(offset, BinaryFormat.HEADER_SIZE));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void map(long start) throws IOException {
+        windowStart = start;
+        windowSize = (int) Math.min(WINDOW_SIZE, fileSize - start);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, windowSize);
+        window.order(BinaryFormat.BYTE_ORDER);
+    }
+
+    /**
+     * Moves the cursor, so that {@link #next()} returns the record at the
+     * offset.
+     */
+    public void seek(long offset) throws IOException {
+        if (offset < windowStart || offset > windowStart + windowSize) {
+            map(offset);
+        }
+        recordOffset = (int) (offset - windowStart);
+        recordLength = 0;
+    }
+
+    /**
+     * @return offset of the current record in the file
+     */
+    public long getPosition() {
+        return windowStart + recordOffset;
+    }
+
+    /**
+     * Advances to the next record. Incomplete record at the end of the file
+     * (e.g. if it's still being written) is treated as the end.
+     *
+     * @return false if there are no more records
+     */
+    public boolean next() throws IOException {
+        int offset = recordOffset + recordLength;
+        int length = BinaryRecordView.getRecordLength(window, offset, windowSize - offset);
+        if (length < 0 || offset + length > windowSize) {
+            if (windowStart + windowSize >= fileSize) {
+                return false;
+            }
+            // Record crosses the end of the window, starting a new one from it
+            map(windowStart + offset);
+            offset = 0;
+            length = BinaryRecordView.getRecordLength(window, 0, windowSize);
+            if (length < 0 || length > windowSize) {
+                return false;
+            }
+        }
+        recordOffset = offset;
+        recordLength = length;
+        record.wrap(window, offset, length);
+        return true;
+    }
+
+    /**
+     * @return view of the current record, same instance every time
+     */
+    public BinaryRecordView getRecord() {
+        return record;
+    }
+
+    /**
+     * Passes all remaining records to the consumer. The view must not be kept
+     * after the consumer returns.
+     */
+    public void forEach(Consumer<BinaryRecordView> consumer) throws IOException {
+        while (next()) {
+            consumer.accept(record);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
@@ -0,0 +1,162 @@
+package velox.api.layer1.simpledemo.datarecording;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import velox.api.layer1.data.ExecutionInfo;
+import velox.api.layer1.data.OrderDuration;
+import velox.api.layer1.data.OrderInfoBuilder;
+import velox.api.layer1.data.OrderInfoUpdate;
+import velox.api.layer1.data.OrderStatus;
+import velox.api.layer1.data.OrderType;
+
+/**
+ * Layout of the orders files written by {@link BinaryFormatRecorder} and
+ * {@link CompactFormatRecorder}.
+ * <p>
+ * A file starts with {@link #MAGIC} and {@link #VERSION} followed by records.
+ * Every record is a one byte tag from {@link SpecificFormatTags}, payload
+ * length (unsigned short) and the payload, so unknown records can be skipped:
+ * <ul>
+ * <li>{@link SpecificFormatTags#ON_ORDER_UPDATED}: time (long, ns), instrument alias, order id, client id (strings),
+ * flags (byte), type, status, duration (bytes), filled (int), unfilled (int), average fill price, limit price,
+ * stop price (doubles), modification time (long, UTC ms)</li>
+ * <li>{@link SpecificFormatTags#ON_ORDER_EXECUTED}: time (long, ns), order id, execution id (strings),
+ * flags (byte), size (int), price (double), execution time (long)</li>
+ * </ul>
+ * Strings are encoded as in {@link BinaryFormat}. Prices are real prices, as
+ * passed by Bookmap. Enums are stored as their ordinal, -1 for null.
+ * All values are little-endian.
+ */
+public class OrderDataFormat {
+
+    public static final int MAGIC = 0x4F464D42; // "BMFO" when read as little-endian bytes
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = Integer.BYTES + Short.BYTES;
+
+    public static final int RECORD_HEADER_SIZE = 1 + Short.BYTES;
+
+    private static final int FLAG_BUY = 1;
+    private static final int FLAG_DO_NOT_INCREASE = 2;
+    private static final int FLAG_SIMULATED = 4;
+
+    private static final OrderType[] ORDER_TYPES = OrderType.values();
+    private static final OrderStatus[] ORDER_STATUSES = OrderStatus.values();
+    private static final OrderDuration[] ORDER_DURATIONS = OrderDuration.values();
+
+    private static final int ORDER_UPDATE_FIXED_SIZE = Long.BYTES + 3 * Short.BYTES + 4
+            + 2 * Integer.BYTES + 3 * Double.BYTES + Long.BYTES;
+    private static final int EXECUTION_FIXED_SIZE = Long.BYTES + 2 * Short.BYTES + 1
+            + Integer.BYTES + Double.BYTES + Long.BYTES;
+
+    static void writeHeader(BufferedChannelWriter writer) throws IOException {
+        writer.reserve(HEADER_SIZE)
+                .putInt(MAGIC)
+                .putShort(VERSION);
+    }
+
+    static void writeOrderUpdate(BufferedChannelWriter writer, long time, OrderInfoUpdate orderInfoUpdate)
+            throws IOException {
+        byte[] alias = BinaryFormat.encodeString(orderInfoUpdate.instrumentAlias);
+        byte[] orderId = BinaryFormat.encodeString(orderInfoUpdate.orderId);
+        byte[] clientId = BinaryFormat.encodeString(orderInfoUpdate.clientId);
+        int flags = (orderInfoUpdate.isBuy ? FLAG_BUY : 0)
+                | (orderInfoUpdate.doNotIncrease ? FLAG_DO_NOT_INCREASE : 0)
+                | (orderInfoUpdate.isSimulated ? FLAG_SIMULATED : 0);
+
+        ByteBuffer buffer = startRecord(writer, SpecificFormatTags.ON_ORDER_UPDATED,
+                ORDER_UPDATE_FIXED_SIZE + alias.length + orderId.length + clientId.length);
+        buffer.putLong(time);
+        BinaryFormat.putString(buffer, alias);
+        BinaryFormat.putString(buffer, orderId);
+        BinaryFormat.putString(buffer, clientId);
+        buffer.put((byte) flags)
+                .put(ordinal(orderInfoUpdate.type))
+                .put(ordinal(orderInfoUpdate.status))
+                .put(ordinal(orderInfoUpdate.duration))
+                .putInt(orderInfoUpdate.filled)
+                .putInt(orderInfoUpdate.unfilled)
+                .putDouble(orderInfoUpdate.averageFillPrice)
+                .putDouble(orderInfoUpdate.limitPrice)
+                .putDouble(orderInfoUpdate.stopPrice)
+                .putLong(orderInfoUpdate.modificationUtcTime);
+    }
+
+    static void writeExecution(BufferedChannelWriter writer, long time, ExecutionInfo executionInfo)
+            throws IOException {
+        byte[] orderId = BinaryFormat.encodeString(executionInfo.orderId);
+        byte[] executionId = BinaryFormat.encodeString(executionInfo.executionId);
+
+        ByteBuffer buffer = startRecord(writer, SpecificFormatTags.ON_ORDER_EXECUTED,
+                EXECUTION_FIXED_SIZE + orderId.length + executionId.length);
+        buffer.putLong(time);
+        BinaryFormat.putString(buffer, orderId);
+        BinaryFormat.putString(buffer, executionId);
+        buffer.put((byte) (executionInfo.isSimulated ? FLAG_SIMULATED : 0))
+                .putInt(executionInfo.size)
+                .putDouble(executionInfo.price)
+                .putLong(executionInfo.time);
+    }
+
+    private static ByteBuffer startRecord(BufferedChannelWriter writer, char tag, int length) throws IOException {
+        if (length > BinaryFormat.MAX_STRING_LENGTH) {
+            throw new IllegalArgumentException("Order record is too long: " + length + " bytes");
+        }
+        return writer.reserve(RECORD_HEADER_SIZE + length)
+                .put((byte) tag)
+                .putShort((short) length);
+    }
+
+    private static byte ordinal(Enum<?> value) {
+        return (byte) (value == null ? -1 : value.ordinal());
+    }
+
+    private static <T> T fromOrdinal(T[] values, byte ordinal) throws IOException {
+        if (ordinal == -1) {
+            return null;
+        }
+        if (ordinal < 0 || ordinal >= values.length) {
+            throw new IOException("Unknown " + values.getClass().getComponentType().getSimpleName()
+                    + " ordinal: " + ordinal);
+        }
+        return values[ordinal];
+    }
+
+    /**
+     * @param buffer positioned after time of the record
+     */
+    static OrderInfoUpdate readOrderUpdate(ByteBuffer buffer) throws IOException {
+        String alias = BinaryFormat.getString(buffer);
+        String orderId = BinaryFormat.getString(buffer);
+        String clientId = BinaryFormat.getString(buffer);
+        int flags = buffer.get();
+        OrderType type = fromOrdinal(ORDER_TYPES, buffer.get());
+        OrderStatus status = fromOrdinal(ORDER_STATUSES, buffer.get());
+        OrderDuration duration = fromOrdinal(ORDER_DURATIONS, buffer.get());
+        return new OrderInfoBuilder(alias, orderId, (flags & FLAG_BUY) != 0, type, clientId,
+                (flags & FLAG_DO_NOT_INCREASE) != 0)
+                .setStatus(status)
+                .setDuration(duration)
+                .setFilled(buffer.getInt())
+                .setUnfilled(buffer.getInt())
+                .setAverageFillPrice(buffer.getDouble())
+                .setLimitPrice(buffer.getDouble())
+                .setStopPrice(buffer.getDouble())
+                .setModificationUtcTime(buffer.getLong())
+                .setSimulated((flags & FLAG_SIMULATED) != 0)
+                .build();
+    }
+
+    /**
+     * @param buffer positioned after time of the record
+     */
+    static ExecutionInfo readExecution(ByteBuffer buffer) {
+        String orderId = BinaryFormat.getString(buffer);
+        String executionId = BinaryFormat.getString(buffer);
+        int flags = buffer.get();
+        int size = buffer.getInt();
+        double price = buffer.getDouble();
+        long executionTime = buffer.getLong();
+        return new ExecutionInfo(orderId, size, price, executionId, executionTime, (flags & FLAG_SIMULATED) != 0);
+    }
+}
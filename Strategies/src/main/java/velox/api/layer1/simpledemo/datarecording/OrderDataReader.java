@@ -0,0 +1,93 @@
+package velox.api.layer1.simpledemo.datarecording;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads orders files written by {@link BinaryFormatRecorder} and
+ * {@link CompactFormatRecorder} (see {@link OrderDataFormat}), rebuilding
+ * order updates and executions.
+ */
+public class OrderDataReader implements RecordingReader {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+
+    public OrderDataReader(File orders) throws IOException {
+        channel = FileChannel.open(orders.toPath(), StandardOpenOption.READ);
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(BinaryFormat.BYTE_ORDER);
+        buffer.flip();
+
+        if (!ensureAvailable(OrderDataFormat.HEADER_SIZE) || buffer.getInt() != OrderDataFormat.MAGIC) {
+            channel.close();
+            throw new IOException("Not an orders file: " + orders);
+        }
+        short version = buffer.getShort();
+        if (version != OrderDataFormat.VERSION) {
+            channel.close();
+            throw new IOException("Unsupported orders file version " + version + ": " + orders);
+        }
+    }
+
+    /**
+     * @return false if end of file was reached before requested number of
+     *         bytes became available
+     */
+    private boolean ensureAvailable(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return true;
+        }
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                buffer.flip();
+                return false;
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+
+    @Override
+    public boolean readNext(DataRecorder target) throws IOException {
+        if (!ensureAvailable(1)) {
+            return false;
+        }
+        if (!ensureAvailable(OrderDataFormat.RECORD_HEADER_SIZE)) {
+            throw new EOFException("Truncated record");
+        }
+        byte tag = buffer.get();
+        int length = Short.toUnsignedInt(buffer.getShort());
+        if (!ensureAvailable(length)) {
+            throw new EOFException("Truncated record");
+        }
+
+        int end = buffer.position() + length;
+        switch (tag) {
+        case SpecificFormatTags.ON_ORDER_UPDATED: {
+            long time = buffer.getLong();
+            target.onOrderUpdated(time, OrderDataFormat.readOrderUpdate(buffer));
+            break;
+        } case SpecificFormatTags.ON_ORDER_EXECUTED: {
+            long time = buffer.getLong();
+            target.onOrderExecuted(time, OrderDataFormat.readExecution(buffer));
+            break;
+        } default:
+            // Written by a newer version, length allows to skip it
+            break;
+        }
+        buffer.position(end);
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
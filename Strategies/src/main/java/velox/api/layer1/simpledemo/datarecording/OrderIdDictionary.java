@@ -0,0 +1,53 @@
+package velox.api.layer1.simpledemo.datarecording;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reader side of {@link OrderIdInterner} - resolves order keys found in MBO
+ * records back to order id strings.
+ */
+class OrderIdDictionary {
+
+    private final Map<Integer, ArrayList<String>> instruments = new HashMap<>();
+
+    private int lastInstrumentId;
+    private ArrayList<String> lastOrderIds;
+
+    private ArrayList<String> getOrderIds(int instrumentId) {
+        if (lastOrderIds == null || lastInstrumentId != instrumentId) {
+            lastOrderIds = instruments.computeIfAbsent(instrumentId, k -> new ArrayList<>());
+            lastInstrumentId = instrumentId;
+        }
+        return lastOrderIds;
+    }
+
+    void define(int instrumentId, int key, String orderId) {
+        ArrayList<String> orderIds = getOrderIds(instrumentId);
+        while (orderIds.size() <= key) {
+            orderIds.add(null);
+        }
+        orderIds.set(key, orderId);
+    }
+
+    String resolve(int instrumentId, int key) throws IOException {
+        ArrayList<String> orderIds = getOrderIds(instrumentId);
+        String orderId = key < orderIds.size() ? orderIds.get(key) : null;
+        if (orderId == null) {
+            throw new IOException("Undefined order key " + key + " for instrument " + instrumentId);
+        }
+        return orderId;
+    }
+
+    /**
+     * Resolves the key and forgets it, should be used for cancel records
+     * since the key will be redefined before it's used again.
+     */
+    String release(int instrumentId, int key) throws IOException {
+        String orderId = resolve(instrumentId, key);
+        getOrderIds(instrumentId).set(key, null);
+        return orderId;
+    }
+}
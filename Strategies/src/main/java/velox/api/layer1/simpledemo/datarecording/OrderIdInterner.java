@@ -0,0 +1,77 @@
+package velox.api.layer1.simpledemo.datarecording;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Assigns compact integer keys to MBO order ids, so recorders only write the
+ * order id string once (in {@link SpecificFormatTags#ON_MBO_ORDER_ID} record)
+ * and refer to the order by its key afterwards. Keys are unique within an
+ * instrument and are reused after the order is cancelled, so they stay small.
+ */
+class OrderIdInterner {
+
+    private static class InstrumentKeys {
+        final Map<String, Integer> keys = new HashMap<>();
+        int[] freeKeys = new int[16];
+        int freeKeysCount = 0;
+        int nextKey = 0;
+    }
+
+    private final Map<Integer, InstrumentKeys> instruments = new HashMap<>();
+
+    private int lastInstrumentId;
+    private InstrumentKeys lastInstrumentKeys;
+
+    private InstrumentKeys getInstrumentKeys(int instrumentId) {
+        // Consecutive events usually belong to the same instrument
+        if (lastInstrumentKeys == null || lastInstrumentId != instrumentId) {
+            lastInstrumentKeys = instruments.computeIfAbsent(instrumentId, k -> new InstrumentKeys());
+            lastInstrumentId = instrumentId;
+        }
+        return lastInstrumentKeys;
+    }
+
+    /**
+     * @return key of the order or -1 if this order does not have a key yet
+     */
+    int find(int instrumentId, String orderId) {
+        Integer key = getInstrumentKeys(instrumentId).keys.get(orderId);
+        return key == null ? -1 : key;
+    }
+
+    /**
+     * Assigns a new key to an order that does not have one.
+     */
+    int assign(int instrumentId, String orderId) {
+        InstrumentKeys instrumentKeys = getInstrumentKeys(instrumentId);
+        int key = instrumentKeys.freeKeysCount > 0
+                ? instrumentKeys.freeKeys[--instrumentKeys.freeKeysCount]
+                : instrumentKeys.nextKey++;
+        instrumentKeys.keys.put(orderId, key);
+        return key;
+    }
+
+    /**
+     * Forgets all keys, so orders will get new ones.
+     */
+    void clear() {
+        instruments.clear();
+        lastInstrumentKeys = null;
+    }
+
+    /**
+     * Makes the key of the order available for reuse.
+     */
+    void release(int instrumentId, String orderId) {
+        InstrumentKeys instrumentKeys = getInstrumentKeys(instrumentId);
+        Integer key = instrumentKeys.keys.remove(orderId);
+        if (key != null) {
+            if (instrumentKeys.freeKeysCount == instrumentKeys.freeKeys.length) {
+                instrumentKeys.freeKeys = Arrays.copyOf(instrumentKeys.freeKeys, instrumentKeys.freeKeys.length * 2);
+            }
+            instrumentKeys.freeKeys[instrumentKeys.freeKeysCount++] = key;
+        }
+    }
+}
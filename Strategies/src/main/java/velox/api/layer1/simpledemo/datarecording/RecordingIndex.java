@@ -0,0 +1,107 @@
+package velox.api.layer1.simpledemo.datarecording;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Sparse time index of a recording segment written by
+ * {@link SegmentedRecorder}. The file is {@link #MAGIC} and {@link #VERSION}
+ * followed by fixed-size entries: time (long, ns) and offset of the index
+ * point in the depth file (long). Entries are in time order, so an entry is
+ * found with a binary search over the file without loading it.
+ */
+public class RecordingIndex implements Closeable {
+
+    public static final int MAGIC = 0x58444942; // "BIDX" when read as little-endian bytes
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = Integer.BYTES + Short.BYTES;
+    public static final int ENTRY_SIZE = Long.BYTES + Long.BYTES;
+
+    private final FileChannel channel;
+    private final ByteBuffer entry = ByteBuffer.allocate(ENTRY_SIZE).order(BinaryFormat.BYTE_ORDER);
+    private final int entriesCount;
+
+    public RecordingIndex(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(BinaryFormat.BYTE_ORDER);
+        while (header.hasRemaining() && channel.read(header) >= 0) {
+        }
+        header.flip();
+        if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getShort() != VERSION) {
+            channel.close();
+            throw new IOException("Not a recording index: " + file);
+        }
+        // Last entry might be incomplete if the segment is still being written
+        entriesCount = (int) ((channel.size() - HEADER_SIZE) / ENTRY_SIZE);
+    }
+
+    static void writeHeader(BufferedChannelWriter writer) throws IOException {
+        writer.reserve(HEADER_SIZE)
+                .putInt(MAGIC)
+                .putShort(VERSION);
+    }
+
+    static void writeEntry(BufferedChannelWriter writer, long time, long offset) throws IOException {
+        writer.reserve(ENTRY_SIZE)
+                .putLong(time)
+                .putLong(offset);
+    }
+
+    public int getEntriesCount() {
+        return entriesCount;
+    }
+
+    private void readEntry(int index) throws IOException {
+        if (index < 0 || index >= entriesCount) {
+            throw new IndexOutOfBoundsException("Entry " + index + " of " + entriesCount);
+        }
+        entry.clear();
+        long position = HEADER_SIZE + (long) index * ENTRY_SIZE;
+        while (entry.hasRemaining()) {
+            if (channel.read(entry, position + entry.position()) < 0) {
+                throw new IOException("Truncated index");
+            }
+        }
+        entry.flip();
+    }
+
+    public long getTime(int index) throws IOException {
+        readEntry(index);
+        return entry.getLong(0);
+    }
+
+    public long getOffset(int index) throws IOException {
+        readEntry(index);
+        return entry.getLong(Long.BYTES);
+    }
+
+    /**
+     * @return index of the last entry with time not after the requested one,
+     *         0 if all entries are after it, -1 if there are no entries
+     */
+    public int find(long time) throws IOException {
+        int low = 0;
+        int high = entriesCount - 1;
+        int result = entriesCount > 0 ? 0 : -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (getTime(middle) <= time) {
+                result = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
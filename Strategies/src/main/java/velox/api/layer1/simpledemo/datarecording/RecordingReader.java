@@ -0,0 +1,66 @@
+package velox.api.layer1.simpledemo.datarecording;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Reads files written by one of the recorders back. Records are passed to a
+ * {@link DataRecorder}, so anything that can record can also consume a
+ * recording - be it a replay or a conversion into another format.
+ */
+public interface RecordingReader extends Closeable {
+
+    /**
+     * Reads one record and passes it to the target.
+     *
+     * @return false if the end of recording was reached
+     */
+    boolean readNext(DataRecorder target) throws IOException;
+
+    /**
+     * Reads all remaining records.
+     */
+    default void readAll(DataRecorder target) throws IOException {
+        while (readNext(target)) {
+        }
+    }
+
+    /**
+     * Opens depth or orders file of a recording, detecting its format by the
+     * header.
+     */
+    static RecordingReader open(File file) throws IOException {
+        return open(file, 0, new HashSet<>());
+    }
+
+    /**
+     * @param offset where to start reading, has to be an index point written
+     *            by {@link SegmentedRecorder} or 0 for the beginning
+     * @param knownInstruments ids of instruments already passed to the target,
+     *            updated as new ones are read
+     */
+    static RecordingReader open(File file, long offset, Set<Integer> knownInstruments) throws IOException {
+        if (DeflatedSegment.isDeflated(file)) {
+            return new CompactFormatReader(file, offset, knownInstruments);
+        }
+        int header;
+        try (DataInputStream input = new DataInputStream(new FileInputStream(file))) {
+            header = file.length() >= Integer.BYTES ? Integer.reverseBytes(input.readInt()) : 0;
+        }
+        switch (header) {
+        case BinaryFormat.MAGIC:
+            return new BinaryFormatReader(file, offset, knownInstruments);
+        case CompactFormat.MAGIC:
+            return new CompactFormatReader(file, offset, knownInstruments);
+        case OrderDataFormat.MAGIC:
+            return new OrderDataReader(file);
+        default:
+            return new SpecificFormatReader(file, offset, knownInstruments);
+        }
+    }
+}
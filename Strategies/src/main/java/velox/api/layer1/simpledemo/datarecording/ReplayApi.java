@@ -0,0 +1,93 @@
+package velox.api.layer1.simpledemo.datarecording;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import velox.api.layer1.simplified.Api;
+
+/**
+ * Stand-in for {@link Api} used by {@link FeedReplayEngine}. There is no
+ * Bookmap behind it, so all calls are no-ops: indicators don't draw, orders
+ * are not sent anywhere. Calls are counted, so replay can show e.g. how many
+ * orders a strategy tried to send.
+ * <p>
+ * Implemented as a dynamic proxy so it does not depend on the exact set of
+ * methods in the {@link Api} version the module is compiled against. Methods
+ * returning interfaces (like {@link Api#registerIndicator}) return no-op
+ * proxies of the same kind.
+ */
+public class ReplayApi {
+
+    private final Map<String, LongAdder> callCounts = new ConcurrentHashMap<>();
+
+    private final Api api = createProxy(Api.class);
+
+    public Api getApi() {
+        return api;
+    }
+
+    /**
+     * @return how many times a method with this name was called on the api
+     *         object or any object returned by it
+     */
+    public long getCallCount(String methodName) {
+        LongAdder counter = callCounts.get(methodName);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    public Map<String, LongAdder> getCallCounts() {
+        return callCounts;
+    }
+
+    private <T> T createProxy(Class<T> type) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return invokeObjectMethod(proxy, method, args);
+            }
+            callCounts.computeIfAbsent(method.getName(), k -> new LongAdder()).increment();
+            return getDefaultValue(method.getReturnType());
+        };
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler));
+    }
+
+    private Object invokeObjectMethod(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+        case "equals":
+            return proxy == args[0];
+        case "hashCode":
+            return System.identityHashCode(proxy);
+        default:
+            return "ReplayApi proxy";
+        }
+    }
+
+    private Object getDefaultValue(Class<?> type) {
+        if (type == void.class) {
+            return null;
+        } else if (type == boolean.class) {
+            return false;
+        } else if (type == char.class) {
+            return '\0';
+        } else if (type == byte.class) {
+            return (byte) 0;
+        } else if (type == short.class) {
+            return (short) 0;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == float.class) {
+            return 0f;
+        } else if (type == double.class) {
+            return 0d;
+        } else if (type.isInterface()) {
+            return createProxy(type);
+        } else {
+            return null;
+        }
+    }
+}
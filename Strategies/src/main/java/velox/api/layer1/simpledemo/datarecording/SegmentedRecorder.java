@@ -0,0 +1,336 @@
+package velox.api.layer1.simpledemo.datarecording;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import velox.api.layer1.common.Log;
+import velox.api.layer1.data.ExecutionInfo;
+import velox.api.layer1.data.InstrumentInfo;
+import velox.api.layer1.data.OrderInfoUpdate;
+import velox.api.layer1.layers.utils.OrderBook;
+import velox.api.layer1.simpledemo.datarecording.FeedRecorder.RecordingFormat;
+
+/**
+ * Splits a recording into segments, rolling over to a new one when the
+ * current depth file gets too large or covers too much time. Each segment is
+ * a regular pair of depth/orders files plus a {@link RecordingIndex}.
+ * <p>
+ * Index points are added once per index interval or after the given number
+ * of events, whichever comes first. At an index point all known instruments
+ * are written again followed by a snapshot of their books, and order keys are
+ * reset, so reading can start there (see {@link SegmentedRecordingReader#seek(long)})
+ * without knowing anything that was written before - it only takes applying
+ * the deltas since the snapshot. MBO orders are not part of the snapshot.
+ * Segments always start with an index point. Rolling over is only checked at
+ * index points too.
+ * <p>
+ * In {@link RecordingFormat#TEXT} format lines are stamped with the wall
+ * clock (see {@link SpecificFormatRecorder}), so index times of such
+ * segments are taken from the wall clock too, while index points and rolling
+ * over are still scheduled by event time.
+ * <p>
+ * Files of segment N are named {@code <depth name>-N.<ext>},
+ * {@code <orders name>-N.<ext>} and {@code <depth name>-N.idx}.
+ * <p>
+ * In {@link RecordingFormat#COMPACT} format closed depth files can be
+ * compressed further with {@link DeflatedSegment} (see
+ * {@link #setDeflateClosedSegments(boolean)}). That's done by a thread
+ * shared by all recorders, so neither writing nor closing is delayed by it;
+ * see {@link #awaitDeflation()}.
+ */
+public class SegmentedRecorder implements DataRecorder {
+
+    public static final long DEFAULT_MAX_SEGMENT_BYTES = 256L << 20;
+    public static final long DEFAULT_MAX_SEGMENT_DURATION_NS = TimeUnit.HOURS.toNanos(1);
+    public static final long DEFAULT_INDEX_INTERVAL_NS = TimeUnit.SECONDS.toNanos(1);
+    public static final int DEFAULT_INDEX_INTERVAL_EVENTS = 1 << 18;
+
+    private static final int INDEX_BUFFER_SIZE = 1 << 12;
+    private static final long DEFLATE_TIMEOUT_MINUTES = 5;
+
+    private final File directory;
+    private final String depthName;
+    private final String ordersName;
+    private final RecordingFormat format;
+    private final String dataSource;
+
+    private final long maxSegmentBytes;
+    private final long maxSegmentDurationNs;
+    private final long indexIntervalNs;
+    private final int indexIntervalEvents;
+
+    private final Map<Integer, InstrumentInfo> instruments = new LinkedHashMap<>();
+    private final Map<Integer, OrderBook> orderBooks = new HashMap<>();
+
+    private int lastDepthId;
+    private OrderBook lastDepthOrderBook;
+
+    private IndexableRecorder segment;
+    private BufferedChannelWriter indexWriter;
+    private int segmentNumber = -1;
+    private long segmentStartTime;
+    private long lastIndexTime = Long.MIN_VALUE;
+    private long nextIndexTime;
+    private int eventsSinceIndexPoint;
+
+    /** Tasks run in order, so the last one submitted completes after all others */
+    private static final ExecutorService DEFLATE_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "FeedRecorder compressor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile boolean deflateClosedSegments;
+
+    public SegmentedRecorder(long time, File directory, String depthName, String ordersName,
+            RecordingFormat format, String dataSource) throws IOException {
+        this(time, directory, depthName, ordersName, format, dataSource,
+                DEFAULT_MAX_SEGMENT_BYTES, DEFAULT_MAX_SEGMENT_DURATION_NS,
+                DEFAULT_INDEX_INTERVAL_NS, DEFAULT_INDEX_INTERVAL_EVENTS);
+    }
+
+    public SegmentedRecorder(long time, File directory, String depthName, String ordersName,
+            RecordingFormat format, String dataSource,
+            long maxSegmentBytes, long maxSegmentDurationNs,
+            long indexIntervalNs, int indexIntervalEvents) throws IOException {
+        this.directory = directory;
+        this.depthName = depthName;
+        this.ordersName = ordersName;
+        this.format = format;
+        this.dataSource = dataSource;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.maxSegmentDurationNs = maxSegmentDurationNs;
+        this.indexIntervalNs = indexIntervalNs;
+        this.indexIntervalEvents = indexIntervalEvents;
+
+        startSegment(time);
+    }
+
+    static String getExtension(RecordingFormat format) {
+        switch (format) {
+        case TEXT:
+            return ".txt";
+        case BINARY:
+            return ".bin";
+        case COMPACT:
+            return ".cbin";
+        default:
+            throw new IllegalArgumentException("Unknown recording format: " + format);
+        }
+    }
+
+    static File getSegmentFile(File directory, String name, int segmentNumber, String extension) {
+        return new File(directory, String.format("%s-%04d%s", name, segmentNumber, extension));
+    }
+
+    static File getIndexFile(File directory, String depthName, int segmentNumber) {
+        return getSegmentFile(directory, depthName, segmentNumber, ".idx");
+    }
+
+    public int getSegmentNumber() {
+        return segmentNumber;
+    }
+
+    private void startSegment(long time) throws IOException {
+        ++segmentNumber;
+        String extension = getExtension(format);
+        File depth = getSegmentFile(directory, depthName, segmentNumber, extension);
+        File orders = getSegmentFile(directory, ordersName, segmentNumber, extension);
+        long indexTime = getIndexTime(time);
+        switch (format) {
+        case TEXT:
+            segment = new SpecificFormatRecorder(TimeUnit.NANOSECONDS.toMillis(indexTime), depth, orders, dataSource);
+            break;
+        case BINARY:
+            segment = new BinaryFormatRecorder(time, depth, orders, dataSource);
+            break;
+        case COMPACT:
+            segment = new CompactFormatRecorder(time, depth, orders, dataSource);
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown recording format: " + format);
+        }
+
+        indexWriter = new BufferedChannelWriter(getIndexFile(directory, depthName, segmentNumber), INDEX_BUFFER_SIZE);
+        RecordingIndex.writeHeader(indexWriter);
+        segmentStartTime = time;
+        addIndexPoint(time, indexTime);
+    }
+
+    /**
+     * @return time of the index point made at the event time, in the same
+     *         clock as the lines of the segment
+     */
+    private long getIndexTime(long time) {
+        if (format != RecordingFormat.TEXT) {
+            return time;
+        }
+        // Taken before the lines of the index point are written, and kept in order if the clock goes back
+        return Math.max(TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis()), lastIndexTime);
+    }
+
+    /**
+     * Only affects {@link RecordingFormat#COMPACT} segments closed after the
+     * call. Can be called from any thread.
+     */
+    public void setDeflateClosedSegments(boolean deflateClosedSegments) {
+        this.deflateClosedSegments = deflateClosedSegments;
+    }
+
+    private void closeSegment() throws IOException {
+        try {
+            segment.close();
+        } finally {
+            indexWriter.close();
+        }
+
+        if (deflateClosedSegments && format == RecordingFormat.COMPACT) {
+            File depth = getSegmentFile(directory, depthName, segmentNumber, getExtension(format));
+            File index = getIndexFile(directory, depthName, segmentNumber);
+            DEFLATE_EXECUTOR.execute(() -> {
+                try {
+                    DeflatedSegment.deflate(depth, index);
+                } catch (IOException e) {
+                    Log.error("FeedRecorder: failed to deflate " + depth, e);
+                }
+            });
+        }
+    }
+
+    private void addIndexPoint(long time, long indexTime) throws IOException {
+        RecordingIndex.writeEntry(indexWriter, indexTime, segment.getDepthPosition());
+        lastIndexTime = indexTime;
+        segment.resetState(time);
+        for (Map.Entry<Integer, InstrumentInfo> entry : instruments.entrySet()) {
+            segment.onInstrumentAdded(time, entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<Integer, InstrumentInfo> entry : instruments.entrySet()) {
+            segment.onBookSnapshot(time, entry.getKey(), getOrderBook(entry.getKey()));
+        }
+        nextIndexTime = (time / indexIntervalNs + 1) * indexIntervalNs;
+        eventsSinceIndexPoint = 0;
+    }
+
+    private OrderBook getOrderBook(int id) {
+        // Consecutive updates usually belong to the same instrument
+        if (lastDepthOrderBook == null || lastDepthId != id) {
+            lastDepthOrderBook = orderBooks.computeIfAbsent(id, k -> new OrderBook());
+            lastDepthId = id;
+        }
+        return lastDepthOrderBook;
+    }
+
+    private void onTime(long time) throws IOException {
+        if (time < nextIndexTime && ++eventsSinceIndexPoint < indexIntervalEvents) {
+            return;
+        }
+        if (time - segmentStartTime >= maxSegmentDurationNs || segment.getDepthPosition() >= maxSegmentBytes) {
+            closeSegment();
+            startSegment(time);
+        } else {
+            addIndexPoint(time, getIndexTime(time));
+        }
+    }
+
+    @Override
+    public void onInstrumentAdded(long time, int id, InstrumentInfo instrumentInfo) throws IOException {
+        onTime(time);
+        instruments.put(id, instrumentInfo);
+        segment.onInstrumentAdded(time, id, instrumentInfo);
+    }
+
+    @Override
+    public void onTrade(long time, int id, double price, int size, int aggressor, int otcCode) throws IOException {
+        onTime(time);
+        segment.onTrade(time, id, price, size, aggressor, otcCode);
+    }
+
+    @Override
+    public void onDepth(long time, int id, boolean isBid, int price, int size) throws IOException {
+        onTime(time);
+        getOrderBook(id).onUpdate(isBid, price, size);
+        segment.onDepth(time, id, isBid, price, size);
+    }
+
+    @Override
+    public void onBookSnapshot(long time, int id, OrderBook orderBook) throws IOException {
+        onTime(time);
+        OrderBook copy = new OrderBook(orderBook);
+        orderBooks.put(id, copy);
+        if (lastDepthId == id) {
+            lastDepthOrderBook = copy;
+        }
+        segment.onBookSnapshot(time, id, orderBook);
+    }
+
+    @Override
+    public void onMboSend(long time, int id, String orderId, boolean isBid, int price, int size) throws IOException {
+        onTime(time);
+        segment.onMboSend(time, id, orderId, isBid, price, size);
+    }
+
+    @Override
+    public void onMboReplace(long time, int id, String orderId, int price, int size) throws IOException {
+        onTime(time);
+        segment.onMboReplace(time, id, orderId, price, size);
+    }
+
+    @Override
+    public void onMboCancel(long time, int id, String orderId) throws IOException {
+        onTime(time);
+        segment.onMboCancel(time, id, orderId);
+    }
+
+    @Override
+    public void onOrderUpdated(long time, OrderInfoUpdate orderInfoUpdate) throws IOException {
+        segment.onOrderUpdated(time, orderInfoUpdate);
+    }
+
+    @Override
+    public void onOrderExecuted(long time, ExecutionInfo executionInfo) throws IOException {
+        segment.onOrderExecuted(time, executionInfo);
+    }
+
+    /**
+     * Index is flushed after the data, so it never points past what's on disk.
+     */
+    @Override
+    public void flush() throws IOException {
+        segment.flush();
+        indexWriter.flush();
+    }
+
+    /**
+     * Does not wait for the closed segments to be deflated, see
+     * {@link #awaitDeflation()}.
+     */
+    @Override
+    public void close() throws IOException {
+        closeSegment();
+    }
+
+    /**
+     * Waits for segments closed by all recorders so far to be deflated, since
+     * an interrupted compression leaves a temporary file behind. Meant to be
+     * called once recording is finished.
+     */
+    public static void awaitDeflation() {
+        try {
+            DEFLATE_EXECUTOR.submit(() -> {}).get(DEFLATE_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+        } catch (TimeoutException e) {
+            Log.warn("FeedRecorder: segments are still being deflated");
+        } catch (ExecutionException e) {
+            // Empty task can't fail
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
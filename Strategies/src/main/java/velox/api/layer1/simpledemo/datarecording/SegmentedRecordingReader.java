@@ -0,0 +1,145 @@
+package velox.api.layer1.simpledemo.datarecording;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads a recording written by {@link SegmentedRecorder} as one stream and
+ * allows to {@link #seek(long)} to any time. Seeking is a binary search over
+ * segment start times followed by a binary search in the segment index, so
+ * it takes logarithmic time regardless of the recording size.
+ * <p>
+ * Instruments are repeated at every index point, but each instrument is only
+ * passed to the target once after opening or seeking.
+ */
+public class SegmentedRecordingReader implements RecordingReader {
+
+    private final List<File> depthFiles = new ArrayList<>();
+    private final List<File> indexFiles = new ArrayList<>();
+    private final long[] segmentStartTimes;
+
+    private final Set<Integer> knownInstruments = new HashSet<>();
+
+    private int segmentNumber = -1;
+    private RecordingReader reader;
+
+    /**
+     * @param depthName depth name passed to {@link SegmentedRecorder}
+     */
+    public SegmentedRecordingReader(File directory, String depthName) throws IOException {
+        for (int segmentNumber = 0;; ++segmentNumber) {
+            File indexFile = SegmentedRecorder.getIndexFile(directory, depthName, segmentNumber);
+            if (!indexFile.exists()) {
+                break;
+            }
+            File depthFile = null;
+            for (FeedRecorder.RecordingFormat format : FeedRecorder.RecordingFormat.values()) {
+                File file = SegmentedRecorder.getSegmentFile(directory, depthName, segmentNumber,
+                        SegmentedRecorder.getExtension(format));
+                File deflatedFile = DeflatedSegment.getDeflatedFile(file);
+                if (file.exists()) {
+                    depthFile = file;
+                } else if (deflatedFile.exists()) {
+                    depthFile = deflatedFile;
+                }
+            }
+            if (depthFile == null) {
+                throw new FileNotFoundException("Depth file of segment " + segmentNumber + " is missing: " + indexFile);
+            }
+            depthFiles.add(depthFile);
+            indexFiles.add(indexFile);
+        }
+        if (depthFiles.isEmpty()) {
+            throw new FileNotFoundException("No segments of " + depthName + " in " + directory);
+        }
+
+        segmentStartTimes = new long[depthFiles.size()];
+        for (int i = 0; i < segmentStartTimes.length; ++i) {
+            try (RecordingIndex index = new RecordingIndex(indexFiles.get(i))) {
+                // Segment might have been created right before the crash
+                segmentStartTimes[i] = index.getEntriesCount() > 0 ? index.getTime(0) : Long.MAX_VALUE;
+            }
+        }
+    }
+
+    public int getSegmentsCount() {
+        return depthFiles.size();
+    }
+
+    /**
+     * Positions the reader at the last index point not after the requested
+     * time, so first records can be up to one index interval earlier than
+     * requested. If the time is before the recording start, reading starts
+     * from the beginning. Known instruments will be passed to the target
+     * again, so reading after seek does not depend on what was read before.
+     */
+    public void seek(long time) throws IOException {
+        int low = 0;
+        int high = segmentStartTimes.length - 1;
+        int segment = 0;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (segmentStartTimes[middle] <= time) {
+                segment = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        long offset = 0;
+        try (RecordingIndex index = new RecordingIndex(indexFiles.get(segment))) {
+            int entry = index.find(time);
+            if (entry >= 0) {
+                offset = index.getOffset(entry);
+            }
+        }
+        knownInstruments.clear();
+        openSegment(segment, offset);
+    }
+
+    private void openSegment(int segment, long offset) throws IOException {
+        if (reader != null) {
+            reader.close();
+            reader = null;
+        }
+        File depthFile = depthFiles.get(segment);
+        if (!depthFile.exists() && DeflatedSegment.getDeflatedFile(depthFile).exists()) {
+            // Was deflated after the reader was opened
+            depthFile = DeflatedSegment.getDeflatedFile(depthFile);
+            depthFiles.set(segment, depthFile);
+        }
+        reader = RecordingReader.open(depthFile, offset, knownInstruments);
+        segmentNumber = segment;
+    }
+
+    @Override
+    public boolean readNext(DataRecorder target) throws IOException {
+        while (true) {
+            if (reader == null) {
+                if (segmentNumber + 1 >= depthFiles.size()) {
+                    return false;
+                }
+                openSegment(segmentNumber + 1, 0);
+            }
+            if (reader.readNext(target)) {
+                return true;
+            }
+            reader.close();
+            reader = null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (reader != null) {
+            reader.close();
+            reader = null;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package velox.api.layer1.simpledemo.datarecording;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import velox.api.layer1.data.InstrumentInfo;
+import velox.api.layer1.layers.utils.OrderBook;
+
+/**
+ * Reads depth files written by {@link SpecificFormatRecorder}. Prices are
+ * converted back to levels using pips from the contract details, so records
+ * of an instrument can only be read after its
+ * {@link SpecificFormatTags#ON_CONTRACT_DETAILS} line.
+ */
+public class SpecificFormatReader implements RecordingReader {
+
+    private static final String DELIMITER = ",";
+
+    private final BufferedReader reader;
+
+    private Map<Integer, Double> pipsMap = new HashMap<>();
+
+    private OrderIdDictionary orderIdDictionary = new OrderIdDictionary();
+
+    private final Set<Integer> knownInstruments;
+
+    public SpecificFormatReader(File depth) throws IOException {
+        this(depth, 0, new HashSet<>());
+    }
+
+    /**
+     * @param offset where to start reading, has to be an index point written
+     *            by {@link SegmentedRecorder} or 0 for the beginning
+     * @param knownInstruments ids of instruments already passed to the target,
+     *            updated as new ones are read
+     */
+    SpecificFormatReader(File depth, long offset, Set<Integer> knownInstruments) throws IOException {
+        this.knownInstruments = knownInstruments;
+        FileInputStream input = new FileInputStream(depth);
+        try {
+            input.getChannel().position(offset);
+        } catch (IOException e) {
+            input.close();
+            throw e;
+        }
+        reader = new BufferedReader(new InputStreamReader(input), 1 << 16);
+    }
+
+    @Override
+    public boolean readNext(DataRecorder target) throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+            if (line == null) {
+                return false;
+            }
+        } while (line.isEmpty());
+
+        char tag = line.charAt(0);
+        // Order id is the last field and is written as is, so it's not split further
+        String[] fields = line.split(DELIMITER, tag == SpecificFormatTags.ON_MBO_ORDER_ID ? 5 : -1);
+        long time = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(fields[1]));
+
+        switch (tag) {
+        case SpecificFormatTags.ON_FEED_SOURCE:
+            break;
+        case SpecificFormatTags.ON_CONTRACT_DETAILS: {
+            int id = Integer.parseInt(fields[2]);
+            double pips = Double.parseDouble(fields[6]);
+            double multiplier = Double.parseDouble(fields[7]);
+            pipsMap.put(id, pips);
+            if (knownInstruments.add(id)) {
+                target.onInstrumentAdded(time, id,
+                        new InstrumentInfo(fields[4], fields[3], fields[5], pips, multiplier, fields[4], true));
+            }
+            break;
+        } case SpecificFormatTags.ON_TRADE: {
+            int id = Integer.parseInt(fields[2]);
+            double price = Double.parseDouble(fields[3]) / getPips(id);
+            target.onTrade(time, id, price, Integer.parseInt(fields[4]),
+                    Integer.parseInt(fields[5]), Integer.parseInt(fields[6]));
+            break;
+        } case SpecificFormatTags.ON_BOOK_UPDATE: {
+            int id = Integer.parseInt(fields[2]);
+            boolean isBid = Integer.parseInt(fields[3]) == SpecificFormatTags.BID_SIDE;
+            int price = (int) Math.round(Double.parseDouble(fields[4]) / getPips(id));
+            target.onDepth(time, id, isBid, price, Integer.parseInt(fields[5]));
+            break;
+        } case SpecificFormatTags.ON_BOOK_SNAPSHOT: {
+            int id = Integer.parseInt(fields[2]);
+            int bidsCount = Integer.parseInt(fields[3]);
+            int asksCount = Integer.parseInt(fields[4]);
+            double pips = getPips(id);
+            OrderBook orderBook = new OrderBook();
+            int field = 5;
+            for (int i = 0; i < bidsCount + asksCount; ++i, field += 2) {
+                int price = (int) Math.round(Double.parseDouble(fields[field]) / pips);
+                orderBook.onUpdate(i < bidsCount, price, Long.parseLong(fields[field + 1]));
+            }
+            target.onBookSnapshot(time, id, orderBook);
+            break;
+        } case SpecificFormatTags.ON_MBO_ORDER_ID: {
+            orderIdDictionary.define(Integer.parseInt(fields[2]), Integer.parseInt(fields[3]), fields[4]);
+            break;
+        } case SpecificFormatTags.ON_MBO_SEND: {
+            int id = Integer.parseInt(fields[2]);
+            String orderId = orderIdDictionary.resolve(id, Integer.parseInt(fields[3]));
+            boolean isBid = Integer.parseInt(fields[4]) == SpecificFormatTags.BID_SIDE;
+            int price = (int) Math.round(Double.parseDouble(fields[5]) / getPips(id));
+            target.onMboSend(time, id, orderId, isBid, price, Integer.parseInt(fields[6]));
+            break;
+        } case SpecificFormatTags.ON_MBO_REPLACE: {
+            int id = Integer.parseInt(fields[2]);
+            String orderId = orderIdDictionary.resolve(id, Integer.parseInt(fields[3]));
+            int price = (int) Math.round(Double.parseDouble(fields[4]) / getPips(id));
+            target.onMboReplace(time, id, orderId, price, Integer.parseInt(fields[5]));
+            break;
+        } case SpecificFormatTags.ON_MBO_CANCEL: {
+            int id = Integer.parseInt(fields[2]);
+            target.onMboCancel(time, id, orderIdDictionary.release(id, Integer.parseInt(fields[3])));
+            break;
+        } default:
+            throw new IOException("Unknown record: " + line);
+        }
+        return true;
+    }
+
+    private double getPips(int id) throws IOException {
+        Double pips = pipsMap.get(id);
+        if (pips == null) {
+            throw new IOException("Record for instrument " + id + " before its contract details");
+        }
+        return pips;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
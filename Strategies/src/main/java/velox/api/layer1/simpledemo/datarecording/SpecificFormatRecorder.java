@@ -1,28 +1,48 @@
 package velox.api.layer1.simpledemo.datarecording;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
 
+import velox.api.layer1.data.ExecutionInfo;
 import velox.api.layer1.data.InstrumentInfo;
+import velox.api.layer1.data.OrderInfoUpdate;
+import velox.api.layer1.layers.utils.OrderBook;
 
 /**
  * This class performs recording into a specific format. This format can be
  * opened in a text editor and reviewed. It contains some unused fields - the
  * only reason those exist is to make it readable by one of our internal tools
  * for testing purpose.
+ * <p>
+ * Unlike other formats, lines are stamped with the wall clock time in
+ * milliseconds when they are written, as this format always did, rather
+ * than with the event time passed in.
  */
-public class SpecificFormatRecorder {
+public class SpecificFormatRecorder implements IndexableRecorder {
 
     private static final String EOL = System.getProperty("line.separator");
     private static final char DELIMITER = ',';
+    private static final int BUFFER_SIZE = 1 << 16;
 
-    private FileWriter depthWriter;
-    private FileWriter ordersWriter;
+    private FileOutputStream depthStream;
+    private Writer depthWriter;
+    private Writer ordersWriter;
+
+    private Map<Integer, Double> pipsMap = new HashMap<>();
+
+    private OrderIdInterner orderIdInterner = new OrderIdInterner();
 
     public SpecificFormatRecorder(long time, File depth, File orders, String dataSource) throws IOException {
-        depthWriter = new FileWriter(depth);
-        ordersWriter = new FileWriter(orders);
+        depthStream = new FileOutputStream(depth);
+        depthWriter = new BufferedWriter(new OutputStreamWriter(depthStream), BUFFER_SIZE);
+        ordersWriter = new BufferedWriter(new FileWriter(orders), BUFFER_SIZE);
 
         depthWriter
                 .append(SpecificFormatTags.ON_FEED_SOURCE)
@@ -32,33 +52,118 @@ public class SpecificFormatRecorder {
                 .append(EOL);
     }
 
-    public void onTrade(int id, double price, int size, int aggressor, int otcCode) throws IOException {
+    @Override
+    public void onTrade(long time, int id, double price, int size, int aggressor, int otcCode) throws IOException {
         depthWriter
                 .append(SpecificFormatTags.ON_TRADE)
                 .append(DELIMITER).append(Long.toString(System.currentTimeMillis()))
                 .append(DELIMITER).append(Integer.toString(id))
-                .append(DELIMITER).append(Double.toString(price))
+                .append(DELIMITER).append(Double.toString(pipsMap.get(id) * price))
                 .append(DELIMITER).append(Integer.toString(size))
                 .append(DELIMITER).append(Integer.toString(aggressor))
                 .append(DELIMITER).append(Integer.toString(otcCode))
                 .append(EOL);
-        depthWriter.flush();
     }
 
-    public void onDepth(int id, boolean isBid, double price, int size) throws IOException {
+    @Override
+    public void onDepth(long time, int id, boolean isBid, int price, int size) throws IOException {
         depthWriter
                 .append(SpecificFormatTags.ON_BOOK_UPDATE)
                 .append(DELIMITER).append(Long.toString(System.currentTimeMillis()))
                 .append(DELIMITER).append(Integer.toString(id))
                 .append(DELIMITER)
                 .append(Integer.toString(isBid ? SpecificFormatTags.BID_SIDE : SpecificFormatTags.ASK_SIDE))
-                .append(DELIMITER).append(Double.toString(price))
+                .append(DELIMITER).append(Double.toString(pipsMap.get(id) * price))
                 .append(DELIMITER).append(Integer.toString(size))
                 .append(EOL);
-        depthWriter.flush();
     }
 
-    public void onInstrumentAdded(int id, InstrumentInfo instrumentInfo) throws IOException {
+    @Override
+    public void onBookSnapshot(long time, int id, OrderBook orderBook) throws IOException {
+        Map<Integer, Long> bids = orderBook.getBidMap();
+        Map<Integer, Long> asks = orderBook.getAskMap();
+        depthWriter
+                .append(SpecificFormatTags.ON_BOOK_SNAPSHOT)
+                .append(DELIMITER).append(Long.toString(System.currentTimeMillis()))
+                .append(DELIMITER).append(Integer.toString(id))
+                .append(DELIMITER).append(Integer.toString(bids.size()))
+                .append(DELIMITER).append(Integer.toString(asks.size()));
+        appendLevels(id, bids);
+        appendLevels(id, asks);
+        depthWriter.append(EOL);
+    }
+
+    private void appendLevels(int id, Map<Integer, Long> levels) throws IOException {
+        double pips = pipsMap.get(id);
+        for (Map.Entry<Integer, Long> level : levels.entrySet()) {
+            depthWriter
+                    .append(DELIMITER).append(Double.toString(pips * level.getKey()))
+                    .append(DELIMITER).append(Long.toString(level.getValue()));
+        }
+    }
+
+    @Override
+    public void onMboSend(long time, int id, String orderId, boolean isBid, int price, int size) throws IOException {
+        int orderKey = getOrderKey(time, id, orderId);
+        depthWriter
+                .append(SpecificFormatTags.ON_MBO_SEND)
+                .append(DELIMITER).append(Long.toString(System.currentTimeMillis()))
+                .append(DELIMITER).append(Integer.toString(id))
+                .append(DELIMITER).append(Integer.toString(orderKey))
+                .append(DELIMITER)
+                .append(Integer.toString(isBid ? SpecificFormatTags.BID_SIDE : SpecificFormatTags.ASK_SIDE))
+                .append(DELIMITER).append(Double.toString(pipsMap.get(id) * price))
+                .append(DELIMITER).append(Integer.toString(size))
+                .append(EOL);
+    }
+
+    @Override
+    public void onMboReplace(long time, int id, String orderId, int price, int size) throws IOException {
+        int orderKey = getOrderKey(time, id, orderId);
+        depthWriter
+                .append(SpecificFormatTags.ON_MBO_REPLACE)
+                .append(DELIMITER).append(Long.toString(System.currentTimeMillis()))
+                .append(DELIMITER).append(Integer.toString(id))
+                .append(DELIMITER).append(Integer.toString(orderKey))
+                .append(DELIMITER).append(Double.toString(pipsMap.get(id) * price))
+                .append(DELIMITER).append(Integer.toString(size))
+                .append(EOL);
+    }
+
+    @Override
+    public void onMboCancel(long time, int id, String orderId) throws IOException {
+        int orderKey = getOrderKey(time, id, orderId);
+        depthWriter
+                .append(SpecificFormatTags.ON_MBO_CANCEL)
+                .append(DELIMITER).append(Long.toString(System.currentTimeMillis()))
+                .append(DELIMITER).append(Integer.toString(id))
+                .append(DELIMITER).append(Integer.toString(orderKey))
+                .append(EOL);
+        orderIdInterner.release(id, orderId);
+    }
+
+    /**
+     * @return key of the order, writing its definition first if the order
+     *         was not seen before
+     */
+    private int getOrderKey(long time, int id, String orderId) throws IOException {
+        int orderKey = orderIdInterner.find(id, orderId);
+        if (orderKey < 0) {
+            orderKey = orderIdInterner.assign(id, orderId);
+            depthWriter
+                    .append(SpecificFormatTags.ON_MBO_ORDER_ID)
+                    .append(DELIMITER).append(Long.toString(System.currentTimeMillis()))
+                    .append(DELIMITER).append(Integer.toString(id))
+                    .append(DELIMITER).append(Integer.toString(orderKey))
+                    .append(DELIMITER).append(orderId)
+                    .append(EOL);
+        }
+        return orderKey;
+    }
+
+    @Override
+    public void onInstrumentAdded(long time, int id, InstrumentInfo instrumentInfo) throws IOException {
+        pipsMap.put(id, instrumentInfo.pips);
         depthWriter
                 .append(SpecificFormatTags.ON_CONTRACT_DETAILS)
                 .append(DELIMITER).append(Long.toString(System.currentTimeMillis()))
@@ -70,11 +175,42 @@ public class SpecificFormatRecorder {
                 .append(DELIMITER).append(Double.toString(instrumentInfo.multiplier))
                 .append(DELIMITER).append("0")
                 .append(EOL);
+    }
+
+    /**
+     * Flushes the depth file, since buffered characters can't be converted
+     * to a byte offset. Only meant to be called once in a while.
+     */
+    @Override
+    public long getDepthPosition() throws IOException {
         depthWriter.flush();
+        return depthStream.getChannel().position();
+    }
+
+    @Override
+    public void resetState(long time) {
+        orderIdInterner.clear();
+    }
+
+    @Override
+    public void onOrderUpdated(long time, OrderInfoUpdate orderInfoUpdate) throws IOException {
+        ordersWriter.append(orderInfoUpdate.toString()).append(EOL);
     }
 
-    public void onOrderData(String data) throws IOException {
-        ordersWriter.append(data).append(EOL);
+    @Override
+    public void onOrderExecuted(long time, ExecutionInfo executionInfo) throws IOException {
+        ordersWriter.append(executionInfo.toString()).append(EOL);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        depthWriter.flush();
         ordersWriter.flush();
     }
+
+    @Override
+    public void close() throws IOException {
+        depthWriter.close();
+        ordersWriter.close();
+    }
 }
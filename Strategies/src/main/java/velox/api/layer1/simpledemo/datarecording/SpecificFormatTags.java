@@ -11,4 +11,16 @@ public class SpecificFormatTags {
     public static final char ON_TRADE = 'T';
 
     public static final char ON_BOOK_UPDATE = 'r';
+    /** Full state of the book, following updates apply on top of it */
+    public static final char ON_BOOK_SNAPSHOT = 'b';
+
+    /** Defines the order key used by MBO records that follow */
+    public static final char ON_MBO_ORDER_ID = 'i';
+    public static final char ON_MBO_SEND = 's';
+    public static final char ON_MBO_REPLACE = 'm';
+    public static final char ON_MBO_CANCEL = 'x';
+
+    /** Orders file records, see {@link OrderDataFormat} */
+    public static final char ON_ORDER_UPDATED = 'o';
+    public static final char ON_ORDER_EXECUTED = 'e';
 }
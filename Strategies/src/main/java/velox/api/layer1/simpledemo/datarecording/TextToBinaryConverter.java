@@ -0,0 +1,566 @@
+package velox.api.layer1.simpledemo.datarecording;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converts recordings made by {@link SpecificFormatRecorder} into
+ * {@link BinaryFormat}, using all cores. The depth file is split into
+ * line-aligned chunks that are parsed in parallel by a {@link ForkJoinPool},
+ * each into its own temporary binary file, and those are concatenated in the
+ * end.
+ * <p>
+ * Chunks can be parsed independently because the only state text records
+ * depend on is the pips of the instruments, needed to turn prices back into
+ * levels. Contract details lines are collected by a separate parallel pass
+ * before the conversion and are also kept in place in the output. MBO order
+ * keys are the same in both formats, so they are copied as is together with
+ * order id definitions.
+ * <p>
+ * Usage: {@code TextToBinaryConverter <depth file>...} - each file is
+ * converted into a file with the same name and .bin extension next to it.
+ * Orders files are not converted - text ones hold descriptions of the
+ * orders meant for reading, which can't be turned into
+ * {@link OrderDataFormat} records.
+ */
+public class TextToBinaryConverter {
+
+    private static final long MIN_CHUNK_SIZE = 4L << 20;
+    private static final long MAX_CHUNK_SIZE = 256L << 20;
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 20;
+
+    private static final double[] POWERS_OF_TEN = new double[19];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; ++i) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final ForkJoinPool pool;
+
+    public TextToBinaryConverter(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Converts depth file of a text recording.
+     */
+    public void convert(File text, File binary) throws IOException {
+        try (FileChannel input = FileChannel.open(text.toPath(), StandardOpenOption.READ)) {
+            long[] boundaries = split(input);
+
+            Map<Integer, Double> pipsMap = invoke(new ContractsTask(input, boundaries, 0, boundaries.length - 1));
+
+            File[] parts = new File[boundaries.length - 1];
+            for (int i = 0; i < parts.length; ++i) {
+                parts[i] = new File(binary.getPath() + ".part" + i);
+            }
+            try {
+                invoke(new ConvertTask(input, boundaries, 0, parts.length, pipsMap, parts));
+                stitch(parts, binary);
+            } finally {
+                for (File part : parts) {
+                    part.delete();
+                }
+            }
+        }
+    }
+
+    private <T> T invoke(RecursiveTask<T> task) throws IOException {
+        try {
+            return pool.invoke(task);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * @return chunk boundaries, each except the last one is a start of a line
+     */
+    private long[] split(FileChannel input) throws IOException {
+        long size = input.size();
+        long chunkSize = size / ((long) pool.getParallelism() * CHUNKS_PER_THREAD);
+        chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, chunkSize));
+
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 12);
+        long position = chunkSize;
+        while (position < size) {
+            long lineStart = findLineStart(input, position, buffer);
+            if (lineStart >= size) {
+                break;
+            }
+            boundaries.add(lineStart);
+            position = lineStart + chunkSize;
+        }
+        boundaries.add(size);
+        return boundaries.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static long findLineStart(FileChannel input, long position, ByteBuffer buffer) throws IOException {
+        while (true) {
+            buffer.clear();
+            int read = input.read(buffer, position);
+            if (read < 0) {
+                return input.size();
+            }
+            for (int i = 0; i < read; ++i) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+    }
+
+    private static void stitch(File[] parts, File binary) throws IOException {
+        try (FileChannel output = FileChannel.open(binary.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(BinaryFormat.HEADER_SIZE).order(BinaryFormat.BYTE_ORDER)
+                    .putInt(BinaryFormat.MAGIC)
+                    .putShort(BinaryFormat.VERSION);
+            header.flip();
+            while (header.hasRemaining()) {
+                output.write(header);
+            }
+            for (File part : parts) {
+                try (FileChannel partChannel = FileChannel.open(part.toPath(), StandardOpenOption.READ)) {
+                    long size = partChannel.size();
+                    for (long position = 0; position < size;) {
+                        position += partChannel.transferTo(position, size - position, output);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects pips of all instruments defined in a range of chunks.
+     */
+    private static class ContractsTask extends RecursiveTask<Map<Integer, Double>> {
+        private final FileChannel input;
+        private final long[] boundaries;
+        private final int from;
+        private final int to;
+
+        ContractsTask(FileChannel input, long[] boundaries, int from, int to) {
+            this.input = input;
+            this.boundaries = boundaries;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Map<Integer, Double> compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                ContractsTask left = new ContractsTask(input, boundaries, from, middle);
+                left.fork();
+                Map<Integer, Double> result = new ContractsTask(input, boundaries, middle, to).compute();
+                result.putAll(left.join());
+                return result;
+            }
+
+            Map<Integer, Double> pipsMap = new HashMap<>();
+            try {
+                LineParser parser = new LineParser(map(input, boundaries[from], boundaries[to]), boundaries[from]);
+                while (parser.nextLine()) {
+                    if (parser.getTag() == SpecificFormatTags.ON_CONTRACT_DETAILS) {
+                        parser.nextLong();
+                        int id = parser.nextInt();
+                        parser.skipField();
+                        parser.skipField();
+                        parser.skipField();
+                        pipsMap.put(id, parser.nextDouble());
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return pipsMap;
+        }
+    }
+
+    /**
+     * Converts a range of chunks, each into its own part file.
+     */
+    private static class ConvertTask extends RecursiveTask<Void> {
+        private final FileChannel input;
+        private final long[] boundaries;
+        private final int from;
+        private final int to;
+        private final Map<Integer, Double> pipsMap;
+        private final File[] parts;
+
+        ConvertTask(FileChannel input, long[] boundaries, int from, int to, Map<Integer, Double> pipsMap, File[] parts) {
+            this.input = input;
+            this.boundaries = boundaries;
+            this.from = from;
+            this.to = to;
+            this.pipsMap = pipsMap;
+            this.parts = parts;
+        }
+
+        @Override
+        protected Void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ConvertTask(input, boundaries, from, middle, pipsMap, parts),
+                        new ConvertTask(input, boundaries, middle, to, pipsMap, parts));
+                return null;
+            }
+            try {
+                convertChunk();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        }
+
+        private void convertChunk() throws IOException {
+            LineParser parser = new LineParser(map(input, boundaries[from], boundaries[from + 1]), boundaries[from]);
+            int lastId = 0;
+            double lastPips = Double.NaN;
+            try (BufferedChannelWriter writer = new BufferedChannelWriter(parts[from], OUTPUT_BUFFER_SIZE)) {
+                while (parser.nextLine()) {
+                    char tag = parser.getTag();
+                    if (tag == SpecificFormatTags.ON_FEED_SOURCE) {
+                        // Milliseconds in text, nanoseconds in binary, like every other record
+                        long time = TimeUnit.MILLISECONDS.toNanos(parser.nextLong());
+                        parser.skipField();
+                        byte[] dataSource = BinaryFormat.encodeString(parser.rest());
+                        ByteBuffer buffer = writer.reserve(1 + Long.BYTES + Short.BYTES + dataSource.length)
+                                .put((byte) tag)
+                                .putLong(time);
+                        BinaryFormat.putString(buffer, dataSource);
+                        continue;
+                    }
+
+                    long time = TimeUnit.MILLISECONDS.toNanos(parser.nextLong());
+                    int id = parser.nextInt();
+                    if (id != lastId || Double.isNaN(lastPips)) {
+                        Double pips = pipsMap.get(id);
+                        if (pips == null) {
+                            throw parser.error("Record for instrument " + id + " without contract details");
+                        }
+                        lastId = id;
+                        lastPips = pips;
+                    }
+
+                    switch (tag) {
+                    case SpecificFormatTags.ON_BOOK_UPDATE:
+                        writer.reserve(BinaryFormat.DEPTH_RECORD_SIZE)
+                                .put((byte) tag)
+                                .putLong(time)
+                                .putInt(id)
+                                .put((byte) parser.nextInt())
+                                .putInt(parser.nextPrice(lastPips))
+                                .putInt(parser.nextInt());
+                        break;
+                    case SpecificFormatTags.ON_TRADE:
+                        writer.reserve(BinaryFormat.TRADE_RECORD_SIZE)
+                                .put((byte) tag)
+                                .putLong(time)
+                                .putInt(id)
+                                .putDouble(parser.nextDouble() / lastPips)
+                                .putInt(parser.nextInt())
+                                .put((byte) parser.nextInt())
+                                .putInt(parser.nextInt());
+                        break;
+                    case SpecificFormatTags.ON_MBO_SEND:
+                        writer.reserve(BinaryFormat.MBO_SEND_RECORD_SIZE)
+                                .put((byte) tag)
+                                .putLong(time)
+                                .putInt(id)
+                                .putInt(parser.nextInt())
+                                .put((byte) parser.nextInt())
+                                .putInt(parser.nextPrice(lastPips))
+                                .putInt(parser.nextInt());
+                        break;
+                    case SpecificFormatTags.ON_MBO_REPLACE:
+                        writer.reserve(BinaryFormat.MBO_REPLACE_RECORD_SIZE)
+                                .put((byte) tag)
+                                .putLong(time)
+                                .putInt(id)
+                                .putInt(parser.nextInt())
+                                .putInt(parser.nextPrice(lastPips))
+                                .putInt(parser.nextInt());
+                        break;
+                    case SpecificFormatTags.ON_MBO_CANCEL:
+                        writer.reserve(BinaryFormat.MBO_CANCEL_RECORD_SIZE)
+                                .put((byte) tag)
+                                .putLong(time)
+                                .putInt(id)
+                                .putInt(parser.nextInt());
+                        break;
+                    case SpecificFormatTags.ON_MBO_ORDER_ID: {
+                        int orderKey = parser.nextInt();
+                        byte[] orderId = BinaryFormat.encodeString(parser.rest());
+                        ByteBuffer buffer = writer.reserve(1 + Long.BYTES + Integer.BYTES + Integer.BYTES
+                                + Short.BYTES + orderId.length)
+                                .put((byte) tag)
+                                .putLong(time)
+                                .putInt(id)
+                                .putInt(orderKey);
+                        BinaryFormat.putString(buffer, orderId);
+                        break;
+                    } case SpecificFormatTags.ON_BOOK_SNAPSHOT: {
+                        int bidsCount = parser.nextInt();
+                        int asksCount = parser.nextInt();
+                        writer.reserve(BinaryFormat.SNAPSHOT_HEADER_SIZE)
+                                .put((byte) tag)
+                                .putLong(time)
+                                .putInt(id)
+                                .putInt(bidsCount)
+                                .putInt(asksCount);
+                        for (int i = 0; i < bidsCount + asksCount; ++i) {
+                            writer.reserve(BinaryFormat.SNAPSHOT_LEVEL_SIZE)
+                                    .putInt(parser.nextPrice(lastPips))
+                                    .putInt(parser.nextInt());
+                        }
+                        break;
+                    } case SpecificFormatTags.ON_CONTRACT_DETAILS: {
+                        byte[] exchange = BinaryFormat.encodeString(parser.nextString());
+                        byte[] symbol = BinaryFormat.encodeString(parser.nextString());
+                        byte[] type = BinaryFormat.encodeString(parser.nextString());
+                        double pips = parser.nextDouble();
+                        double multiplier = parser.nextDouble();
+                        ByteBuffer buffer = writer.reserve(1 + Long.BYTES + Integer.BYTES
+                                + 3 * Short.BYTES + exchange.length + symbol.length + type.length
+                                + 2 * Double.BYTES);
+                        buffer.put((byte) tag)
+                                .putLong(time)
+                                .putInt(id);
+                        BinaryFormat.putString(buffer, exchange);
+                        BinaryFormat.putString(buffer, symbol);
+                        BinaryFormat.putString(buffer, type);
+                        buffer.putDouble(pips)
+                                .putDouble(multiplier);
+                        break;
+                    } default:
+                        throw parser.error("Unknown record");
+                    }
+                }
+            }
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel input, long from, long to) throws IOException {
+        return input.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+    }
+
+    /**
+     * Parses comma-separated lines straight from the buffer, without creating
+     * strings for numeric fields.
+     */
+    private static class LineParser {
+        private final ByteBuffer buffer;
+        private final long fileOffset;
+        private int lineStart;
+        private int position;
+        private int lineEnd;
+
+        LineParser(ByteBuffer buffer, long fileOffset) {
+            this.buffer = buffer;
+            this.fileOffset = fileOffset;
+            lineEnd = -1;
+        }
+
+        /**
+         * Moves to the next non-empty line and consumes its tag field.
+         */
+        boolean nextLine() {
+            int limit = buffer.limit();
+            do {
+                lineStart = lineEnd + 1;
+                if (lineStart >= limit) {
+                    return false;
+                }
+                lineEnd = lineStart;
+                while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                    ++lineEnd;
+                }
+            } while (getContentEnd() == lineStart);
+            position = lineStart + 1;
+            return true;
+        }
+
+        private int getContentEnd() {
+            return lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+        }
+
+        char getTag() {
+            return (char) buffer.get(lineStart);
+        }
+
+        private void startField() throws IOException {
+            if (position >= getContentEnd() || buffer.get(position) != ',') {
+                throw error("Missing field");
+            }
+            ++position;
+        }
+
+        private int findFieldEnd() {
+            int end = position;
+            int contentEnd = getContentEnd();
+            while (end < contentEnd && buffer.get(end) != ',') {
+                ++end;
+            }
+            return end;
+        }
+
+        void skipField() throws IOException {
+            startField();
+            position = findFieldEnd();
+        }
+
+        String nextString() throws IOException {
+            startField();
+            int end = findFieldEnd();
+            String value = getString(position, end);
+            position = end;
+            return value;
+        }
+
+        /**
+         * @return everything till the end of line, for the fields that can
+         *         contain delimiters
+         */
+        String rest() throws IOException {
+            startField();
+            int end = getContentEnd();
+            String value = getString(position, end);
+            position = end;
+            return value;
+        }
+
+        private String getString(int from, int to) {
+            byte[] bytes = new byte[to - from];
+            for (int i = 0; i < bytes.length; ++i) {
+                bytes[i] = buffer.get(from + i);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        long nextLong() throws IOException {
+            startField();
+            int end = findFieldEnd();
+            boolean isNegative = position < end && buffer.get(position) == '-';
+            int i = isNegative ? position + 1 : position;
+            if (i == end || end - i > 18) {
+                throw error("Malformed number");
+            }
+            long value = 0;
+            for (; i < end; ++i) {
+                int digit = buffer.get(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    throw error("Malformed number");
+                }
+                value = value * 10 + digit;
+            }
+            position = end;
+            return isNegative ? -value : value;
+        }
+
+        int nextInt() throws IOException {
+            long value = nextLong();
+            if (value != (int) value) {
+                throw error("Number out of range");
+            }
+            return (int) value;
+        }
+
+        /**
+         * Plain decimals are parsed by hand, anything else (exponent, NaN)
+         * falls back to {@link Double#parseDouble(String)}. Result is the same
+         * as the one of parseDouble, since both mantissa and power of ten are
+         * exact doubles and division is correctly rounded.
+         */
+        double nextDouble() throws IOException {
+            startField();
+            int end = findFieldEnd();
+            boolean isNegative = position < end && buffer.get(position) == '-';
+            int i = isNegative ? position + 1 : position;
+            long mantissa = 0;
+            int digits = 0;
+            int fractionDigits = -1;
+            boolean isPlain = i < end;
+            for (; i < end && isPlain; ++i) {
+                byte b = buffer.get(i);
+                if (b >= '0' && b <= '9') {
+                    mantissa = mantissa * 10 + (b - '0');
+                    ++digits;
+                    if (fractionDigits >= 0) {
+                        ++fractionDigits;
+                    }
+                } else if (b == '.' && fractionDigits < 0) {
+                    fractionDigits = 0;
+                } else {
+                    isPlain = false;
+                }
+            }
+            double value;
+            if (isPlain && digits > 0 && digits <= 15) {
+                value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+                value = isNegative ? -value : value;
+            } else {
+                try {
+                    value = Double.parseDouble(getString(position, end));
+                } catch (NumberFormatException e) {
+                    throw error("Malformed number");
+                }
+            }
+            position = end;
+            return value;
+        }
+
+        int nextPrice(double pips) throws IOException {
+            return (int) Math.round(nextDouble() / pips);
+        }
+
+        IOException error(String message) {
+            return new IOException(message + " at offset " + (fileOffset + lineStart) + ": "
+                    + getString(lineStart, getContentEnd()));
+        }
+    }
+
+    private static File withBinaryExtension(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return new File(file.getParentFile(), (dot > 0 ? name.substring(0, dot) : name) + ".bin");
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Usage: TextToBinaryConverter <depth file>...");
+            System.exit(1);
+        }
+
+        TextToBinaryConverter converter = new TextToBinaryConverter(ForkJoinPool.commonPool());
+        for (String arg : args) {
+            File depth = new File(arg).getAbsoluteFile();
+            File binary = withBinaryExtension(depth);
+            long start = System.nanoTime();
+            converter.convert(depth, binary);
+            long elapsed = System.nanoTime() - start;
+            System.out.println(depth + " -> " + binary + ": " + TimeUnit.NANOSECONDS.toMillis(elapsed) + " ms ("
+                    + (long) (depth.length() / (elapsed / 1e9) / (1 << 20)) + " MB/s)");
+        }
+    }
+}
@@ -1,13 +1,10 @@
 package velox.api.layer1.simplified.demo;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.awt.Color;
 
+import javax.swing.JCheckBox;
 import javax.swing.JLabel;
 import javax.swing.JSpinner;
 import javax.swing.SpinnerNumberModel;
@@ -21,9 +18,6 @@ import velox.api.layer1.annotations.Layer1TradingStrategy;
 import velox.api.layer1.data.InstrumentInfo;
 import velox.api.layer1.data.TradeInfo;
 import velox.api.layer1.data.OrderSendParameters;
-import velox.api.layer1.layers.utils.OrderBook;
-import velox.api.layer1.layers.utils.mbo.Order;
-import velox.api.layer1.layers.utils.mbo.OrderBookMbo;
 import velox.api.layer1.simplified.Api;
 import velox.api.layer1.simplified.AxisGroup;
 import velox.api.layer1.simplified.AxisRules;
@@ -35,7 +29,11 @@ import velox.api.layer1.simplified.IntervalListener;
 import velox.api.layer1.simplified.Intervals;
 import velox.api.layer1.simplified.MarketByOrderDepthDataListener;
 import velox.api.layer1.simplified.Parameter;
+import velox.api.layer1.simplified.TimeListener;
 import velox.api.layer1.simplified.TradeDataListener;
+import velox.api.layer1.simplified.demo.mbo.DepthWindowStatistics;
+import velox.api.layer1.simplified.demo.mbo.MboOrderStore;
+import velox.api.layer1.simplified.demo.mbo.PriceLadder;
 import velox.gui.StrategyPanel;
 
 import velox.api.layer1.data.OcoOrderSendParameters;
@@ -61,30 +59,127 @@ import velox.api.layer1.data.SimpleOrderSendParametersBuilder;
 
 // =====================================================================================================================
 public class DrewMboTotalCalculator 
-    implements CustomModule, CustomSettingsPanelProvider, MarketByOrderDepthDataListener, TradeDataListener, IntervalListener
+    implements CustomModule, CustomSettingsPanelProvider, MarketByOrderDepthDataListener, TradeDataListener, IntervalListener,
+        TimeListener
 {
     Api api;
     private String alias;
     private boolean hasOrderOpen = false;
     private boolean orderOpenLong = false;
-    private OrderBookMbo    orderBookMbo    = new OrderBookMbo();
-    private OrderBook       orderBook       = new OrderBook();
+    private PriceLadder     orderBook       = new PriceLadder();
+    private MboOrderStore   orders          = new MboOrderStore(orderBook);
     private JLabel displayLabel;
     private AtomicBoolean updateIsScheduled = new AtomicBoolean();
     private double lastPrice;
 
+    /**
+     * Immutable result of the computation done after each event, published to
+     * onInterval and to the Swing label.
+     */
+    private static final class Signals 
+    {
+        static final Signals EMPTY = new Signals(0, 0, 0, 0, 0, null);
+
+        final double bidStrength;
+        final double askStrength;
+        final double strengthValue;
+        final double devValue;
+        final double lastPrice;
+        /** Top of the book as of the last scheduled label update, only for display */
+        final DepthRows depthRows;
+
+        Signals(double bidStrength, double askStrength, double bidDevStrength, double askDevStrength,
+                double lastPrice, DepthRows depthRows) 
+        {
+            this.bidStrength = bidStrength;
+            this.askStrength = askStrength;
+            this.strengthValue = (askStrength - bidStrength) * 100;
+            this.devValue = (askDevStrength - bidDevStrength) * 100;
+            this.lastPrice = lastPrice;
+            this.depthRows = depthRows;
+        }
+    }
+
+    /**
+     * Copy of the top levels of the book.
+     */
+    private static final class DepthRows 
+    {
+        static final int LEVELS = 10;
+
+        final int[] askPrices = new int[LEVELS];
+        final long[] askSizes = new long[LEVELS];
+        int asksCount;
+        final int[] bidPrices = new int[LEVELS];
+        final long[] bidSizes = new long[LEVELS];
+        int bidsCount;
+    }
+
+    /**
+     * Written by the data thread after each event, read by onInterval and by
+     * the label. Book, orders and statistics are only accessed from the data
+     * thread, so there is no lock the label could hold.
+     */
+    private volatile Signals signals = Signals.EMPTY;
+    private DepthRows lastDepthRows;
+
     private Indicator strengthIndicator;
     private Indicator devIndicator;
 
-    private double indicatorStrengthValue = 0;
-    private double indicatorDevValue = 0;
     private Indicator zeroIndicator;
     
     AxisGroup grpAxis;
     AxisRules rulesAxisRules;
 
     @Parameter(name = "Max Ticks", step = 1, minimum = 1, maximum = 10000)
-    private Integer maxTicks = 400;
+    private volatile Integer maxTicks = 400;
+
+    /** Trade as soon as the signals cross the thresholds instead of once per interval */
+    @Parameter(name = "Event-driven trading")
+    private volatile Boolean eventDrivenTrading = false;
+
+    /**
+     * In event-driven mode exits need the signals to go past the exit
+     * thresholds by this share of the entry thresholds, separately for each
+     * metric, so that a position is not closed by noise right after opening.
+     */
+    @Parameter(name = "Hysteresis, %", step = 1, minimum = 0, maximum = 100)
+    private volatile Integer hysteresisPercent = 10;
+
+    @Parameter(name = "Re-entry gap, ms", step = 100, minimum = 0, maximum = 60000)
+    private volatile Integer reEntryGapMs = 500;
+
+    private static final double ENTRY_DEV = 15;
+    private static final double ENTRY_STRENGTH = 110;
+    private static final double EXIT_STRENGTH = 50;
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    private enum TradeAction 
+    {
+        NONE, ENTER_LONG, ENTER_SHORT, EXIT
+    }
+
+    /** What the current signals call for */
+    private TradeAction pendingAction = TradeAction.NONE;
+    /** System.nanoTime when processing of the current event started */
+    private long eventStartNs;
+    /** Data time, ns */
+    private long dataTime;
+    private long lastExitTime = NO_TIME;
+
+    /**
+     * Latency from the moment an order became possible to sendOrder, written
+     * by the data thread only
+     */
+    private volatile long ordersSent;
+    private volatile long lastLatencyNs;
+    private volatile long maxLatencyNs;
+    private volatile long totalLatencyNs;
+
+    /** Only levels larger than this count towards the strength */
+    private static final long MIN_LEVEL_SIZE = 10;
+    /** Sums of the levels within maxTicks from the last price */
+    private DepthWindowStatistics statistics = new DepthWindowStatistics(orderBook, maxTicks, MIN_LEVEL_SIZE);
 
     // -----------------------------------------------------------------------------------------------------------------
     public DrewMboTotalCalculator() 
@@ -130,71 +225,44 @@ public class DrewMboTotalCalculator
     @Override
     public void send(String orderId, boolean isBid, int price, int size) 
     {
-        System.out.println("Order send");
-        orderBookMbo.send(orderId, isBid, price, size);
-
-        synchronized (orderBook) 
-        {
-            long levelSize = orderBook.getSizeFor(isBid, price, 0);
-            levelSize += size;
-            orderBook.onUpdate(isBid, price, levelSize);
-        }
-
-        scheduleUpdateIfNecessary();
+        eventStartNs = System.nanoTime();
+        orders.send(orderId, isBid, price, size);
+        computeSignals();
     }
 
     // -----------------------------------------------------------------------------------------------------------------
     @Override
     public void replace(String orderId, int price, int size) 
     {
-        System.out.println("Order replace");
-        Order oldOrder = orderBookMbo.getOrder(orderId);
-        boolean isBid = oldOrder.isBid();
-        int oldPrice = oldOrder.getPrice();
-        int oldSize  = oldOrder.getSize();
-
-        orderBookMbo.replace(orderId, price, size);
-
-        synchronized (orderBook) 
-        {
-            long oldLevelSize = orderBook.getSizeFor(isBid, oldPrice, 0);
-            oldLevelSize -= oldSize;
-
-            orderBook.onUpdate(isBid, oldPrice, oldLevelSize);
-
-            long newLevelSize = orderBook.getSizeFor(isBid, price, 0);
-            newLevelSize += size;
-            orderBook.onUpdate(isBid, price, newLevelSize);
-        }
-        scheduleUpdateIfNecessary();
+        eventStartNs = System.nanoTime();
+        orders.replace(orderId, price, size);
+        computeSignals();
     }
 
     // -----------------------------------------------------------------------------------------------------------------
     @Override
     public void cancel(String orderId) 
     {
-        System.out.println("Order cancel");
-        Order oldOrder = orderBookMbo.getOrder(orderId);
-        boolean isBid = oldOrder.isBid();
-        int price = oldOrder.getPrice();
-        int size  = oldOrder.getSize();
-
-        orderBookMbo.cancel(orderId);
-
-        synchronized (orderBook) 
-        {
-            long levelSize = orderBook.getSizeFor(isBid, price, 0);
-            levelSize -= size;
-            orderBook.onUpdate(isBid, price, levelSize);
-        }
-        scheduleUpdateIfNecessary();
+        eventStartNs = System.nanoTime();
+        orders.cancel(orderId);
+        computeSignals();
     }
 
     // -----------------------------------------------------------------------------------------------------------------
     @Override
     public void onTrade(double price, int size, TradeInfo tradeInfo)
     {
+        eventStartNs = System.nanoTime();
         lastPrice = price;
+        statistics.setReferencePrice(price);
+        computeSignals();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    @Override
+    public void onTimestamp(long t)
+    {
+        dataTime = t;
     }
 
     // -----------------------------------------------------------------------------------------------------------------
@@ -208,6 +276,11 @@ public class DrewMboTotalCalculator
     @Override
     public void onInterval()
     {
+        long intervalStartNs = System.nanoTime();
+        // Computed on this thread after the last event, so it's never stale
+        Signals signals = this.signals;
+        double indicatorStrengthValue = signals.strengthValue;
+        double indicatorDevValue = signals.devValue;
         if (Double.isNaN(indicatorStrengthValue))
         {
             return;
@@ -216,237 +289,228 @@ public class DrewMboTotalCalculator
         strengthIndicator.addPoint(indicatorStrengthValue);
         zeroIndicator.addPoint(0.0);
 
-        if ( hasOrderOpen == false)
+        if (!eventDrivenTrading)
         {
-            if ( indicatorDevValue > 15 && indicatorStrengthValue > 110 && !hasOrderOpen)
+            // Action was evaluated against the same signals when they were computed
+            if (pendingAction != TradeAction.NONE)
             {
-                SimpleOrderSendParametersBuilder longOrderSendParameters = new SimpleOrderSendParametersBuilder (alias, true, 10);
-                //longOrderSendParameters.setLimitPrice(lastPrice-2);
-                longOrderSendParameters.setBuy(true);
-                OrderSendParameters longOrder = longOrderSendParameters.build();
-                api.sendOrder(longOrder); 
-
-                hasOrderOpen = true;
-                orderOpenLong = true;
-            }
-
-            if ( indicatorDevValue < -15 && indicatorStrengthValue < -110 && !hasOrderOpen)
-            {
-                SimpleOrderSendParametersBuilder longOrderSendParameters = new SimpleOrderSendParametersBuilder (alias, false, 10);
-                //longOrderSendParameters.setLimitPrice(lastPrice+2);
-                longOrderSendParameters.setBuy(false);
-                OrderSendParameters longOrder = longOrderSendParameters.build();
-                api.sendOrder(longOrder); 
-
-                hasOrderOpen = true;
-                orderOpenLong = false;
+                execute(pendingAction, intervalStartNs);
             }
         }
+    }
 
-        if ( hasOrderOpen )
+    // -----------------------------------------------------------------------------------------------------------------
+    private TradeAction getAction(double indicatorStrengthValue, double indicatorDevValue, double hysteresis)
+    {
+        if ( hasOrderOpen == false)
         {
-            if ( orderOpenLong )
+            if ( indicatorDevValue > ENTRY_DEV && indicatorStrengthValue > ENTRY_STRENGTH )
             {
-                if ( indicatorDevValue < 0 && indicatorStrengthValue < 50 )
-                {
-                    SimpleOrderSendParametersBuilder longOrderSendParameters = new SimpleOrderSendParametersBuilder (alias, false, 10);
-                    longOrderSendParameters.setClosingPositionHint(true);
-                    longOrderSendParameters.setBuy(false);
-                    OrderSendParameters longOrder = longOrderSendParameters.build();
-                    api.sendOrder(longOrder); 
-
-                    hasOrderOpen = false;
-                }
+                return TradeAction.ENTER_LONG;
             }
-            else if ( indicatorDevValue > 0 && indicatorStrengthValue > -50 && !orderOpenLong)
+            if ( indicatorDevValue < -ENTRY_DEV && indicatorStrengthValue < -ENTRY_STRENGTH )
             {
-                SimpleOrderSendParametersBuilder longOrderSendParameters = new SimpleOrderSendParametersBuilder (alias, true, 10);
-                longOrderSendParameters.setClosingPositionHint(true);
-                longOrderSendParameters.setBuy(true);
-                OrderSendParameters longOrder = longOrderSendParameters.build();
-                api.sendOrder(longOrder); 
-
-                hasOrderOpen = false;
+                return TradeAction.ENTER_SHORT;
             }
+            return TradeAction.NONE;
         }
-        
-    }
-   // -----------------------------------------------------------------------------------------------------------------
-   private void scheduleUpdateIfNecessary() 
-   {
-        boolean shouldSchedule = !updateIsScheduled.getAndSet(true);
 
-        if (shouldSchedule) 
+        double devBand = ENTRY_DEV * hysteresis;
+        double strengthBand = ENTRY_STRENGTH * hysteresis;
+        if ( orderOpenLong )
         {
-            SwingUtilities.invokeLater(() -> 
-            {
-                updateIsScheduled.set(false);
-
-                StringBuilder builder = new StringBuilder();
-                builder.append("<html>");
-
-                synchronized (orderBook) 
-                {
-                    // Iterate over ask and bid orders to print order book data
-                    Iterator<Entry<Integer, Long>> askIterator = orderBook.getAskMap().entrySet().iterator();
-                    Iterator<Entry<Integer, Long>> bidIterator = orderBook.getBidMap().entrySet().iterator();
-
-                    List<String> askRows = new ArrayList<>();
-                    for (int i = 0; i < 10 && askIterator.hasNext(); ++i) 
-                    {
-                        Entry<Integer, Long> nextAskEntry = askIterator.next();
-                        askRows.add("ASK Distance: " + i + " Price(int): " + nextAskEntry.getKey() + " Size: "
-                                + nextAskEntry.getValue() + "<br/>");
-                    }
-                    Collections.reverse(askRows);
-                    askRows.forEach(builder::append);
-
-                    for (int i = 0; i < 10 && bidIterator.hasNext(); ++i) 
-                    {
-                        Entry<Integer, Long> nextBidEntry = bidIterator.next();
-                        builder.append("BID Distance: " + i + " Price(int): " + nextBidEntry.getKey() + " Size: "
-                                + nextBidEntry.getValue() + "<br/>");
-                    }
-
-                    // Assume tickSize and currentPrice are available. Get them from your context
-                    int tickSize = 1;  // Example: Replace with the actual tick size
-                    double currentPrice = lastPrice;  // Get the current price from the instrument info or order book
-
-                    builder.append("<br/>Last Price: ").append(lastPrice).append("<br/>");
-
-                    // Calculate bid strength
-                    double bidStrength = calculateVolumeStrength(true, tickSize, currentPrice);
-                    builder.append("Bid Strength: ").append(bidStrength).append("<br/>");
-
-                    // Calculate ask strength
-                    double askStrength = calculateVolumeStrength(false, tickSize, currentPrice);
-                    builder.append("Ask Strength: ").append(askStrength).append("<br/>");
-                    
-                    double askDevStrength = calculateDevStrength(false, tickSize, currentPrice);
-                    double bidDevStrength = calculateDevStrength(true, tickSize, currentPrice);
-
-                    indicatorDevValue = (askDevStrength - bidDevStrength) * 100;
-                    indicatorStrengthValue = (askStrength - bidStrength) * 100;
-                }
-
-                builder.append("</html>");
-                displayLabel.setText(builder.toString());
-            });
+            return indicatorDevValue < -devBand && indicatorStrengthValue < EXIT_STRENGTH - strengthBand
+                    ? TradeAction.EXIT : TradeAction.NONE;
         }
+        return indicatorDevValue > devBand && indicatorStrengthValue > -EXIT_STRENGTH + strengthBand
+                ? TradeAction.EXIT : TradeAction.NONE;
     }
 
-// -----------------------------------------------------------------------------------------------------------------
-private double calculateVolumeStrength(boolean isBid, int tickSize, double currentPrice) 
-{
-    synchronized (orderBook) 
+    // -----------------------------------------------------------------------------------------------------------------
+    private void computeSignals() 
     {
-        Iterator<Entry<Integer, Long>> iterator = isBid ?
-            orderBook.getBidMap().entrySet().iterator() :
-            orderBook.getAskMap().entrySet().iterator();
+        // Window only moves over the levels that enter or leave it
+        int maxTicks = this.maxTicks;
+        statistics.setMaxTicks(maxTicks);
 
-        int count = 0;
-        double totalVolume = 0;
-        List<Double> volumes = new ArrayList<>();
+        double bidStrength = calculateVolumeStrength(true, maxTicks);
+        double askStrength = calculateVolumeStrength(false, maxTicks);
+        double bidDevStrength = calculateDevStrength(true, maxTicks);
+        double askDevStrength = calculateDevStrength(false, maxTicks);
 
-        // Define price range based on maxTicks and tickSize
-        double lowerBound = isBid ? currentPrice - (maxTicks * tickSize) : currentPrice;
-        double upperBound = isBid ? currentPrice : currentPrice + (maxTicks * tickSize);
+        boolean shouldSchedule = !updateIsScheduled.getAndSet(true);
+        if (shouldSchedule) 
+        {
+            lastDepthRows = copyDepthRows();
+        }
+        // Most events don't move the window sums, so the previous snapshot is kept then
+        Signals signals = this.signals;
+        double devValue = (askDevStrength - bidDevStrength) * 100;
+        if (bidStrength != signals.bidStrength || askStrength != signals.askStrength || devValue != signals.devValue
+                || lastPrice != signals.lastPrice || lastDepthRows != signals.depthRows) 
+        {
+            signals = new Signals(bidStrength, askStrength, bidDevStrength, askDevStrength, lastPrice, lastDepthRows);
+            this.signals = signals;
+        }
 
-        // Sum volumes and collect for standard deviation calculation
-        while (iterator.hasNext() && count < maxTicks) 
+        // Once per interval the signals are coarse enough without hysteresis
+        boolean eventDrivenTrading = this.eventDrivenTrading;
+        double hysteresis = eventDrivenTrading ? hysteresisPercent / 100.0 : 0;
+        pendingAction = getAction(signals.strengthValue, signals.devValue, hysteresis);
+        if (eventDrivenTrading) 
         {
-            Entry<Integer, Long> entry = iterator.next();
-            int price = entry.getKey();
-            double size = entry.getValue();
+            tradeOnEvent();
+        }
 
-            // Filter orders within the defined price range
-            if (price >= lowerBound && price <= upperBound) 
+        if (shouldSchedule) 
+        {
+            SwingUtilities.invokeLater(this::render);
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    /**
+     * Acts as soon as signals cross the thresholds. No entry is made within
+     * the re-entry gap after an exit (in data time); an entry that had to wait
+     * for the gap is timed from the event that ends it.
+     */
+    private void tradeOnEvent() 
+    {
+        switch (pendingAction) 
+        {
+        case ENTER_LONG:
+        case ENTER_SHORT:
+            long gapNs = TimeUnit.MILLISECONDS.toNanos(reEntryGapMs);
+            if (lastExitTime == NO_TIME || dataTime - lastExitTime >= gapNs) 
             {
-                
-                if ( size > 10 )
-                {
-                    totalVolume += size;
-                    volumes.add(size);
-                }
-                count++;
+                execute(pendingAction, eventStartNs);
             }
+            break;
+        case EXIT:
+            execute(pendingAction, eventStartNs);
+            break;
+        default:
+            break;
         }
+    }
 
-        if (volumes.isEmpty()) 
+    // -----------------------------------------------------------------------------------------------------------------
+    /**
+     * @param executableSinceNs System.nanoTime when the action could first be
+     *            taken, the start of the measured latency
+     */
+    private void execute(TradeAction action, long executableSinceNs) 
+    {
+        boolean isBuy = action == TradeAction.ENTER_LONG || (action == TradeAction.EXIT && !orderOpenLong);
+        SimpleOrderSendParametersBuilder orderSendParameters = new SimpleOrderSendParametersBuilder (alias, isBuy, 10);
+        if (action == TradeAction.EXIT) 
         {
-            return 0; // Handle case where no orders are within range
+            orderSendParameters.setClosingPositionHint(true);
         }
+        orderSendParameters.setBuy(isBuy);
+        OrderSendParameters order = orderSendParameters.build();
+        api.sendOrder(order); 
+
+        long latencyNs = System.nanoTime() - executableSinceNs;
+        lastLatencyNs = latencyNs;
+        maxLatencyNs = Math.max(maxLatencyNs, latencyNs);
+        totalLatencyNs += latencyNs;
+        ++ordersSent;
 
-        // Calculate mean and standard deviation
-        double mean = totalVolume / volumes.size();
-        double variance = volumes.stream()
-            .mapToDouble(volume -> Math.pow(volume - mean, 2))
-            .sum() / volumes.size();
-        double stdDev = Math.sqrt(variance);
-
-        // Return strength: total volume divided by the standard deviation
-        // return stdDev == 0 ? 0 : totalVolume * 3 / stdDev;
-        // return (totalVolume / (double)maxTicks) * (volumes.size() / (double)maxTicks);
-        return totalVolume / maxTicks;
+        switch (action) 
+        {
+        case ENTER_LONG:
+            hasOrderOpen = true;
+            orderOpenLong = true;
+            break;
+        case ENTER_SHORT:
+            hasOrderOpen = true;
+            orderOpenLong = false;
+            break;
+        default:
+            hasOrderOpen = false;
+            lastExitTime = dataTime;
+            break;
+        }
+        pendingAction = TradeAction.NONE;
     }
-}
 
-private double calculateDevStrength(boolean isBid, int tickSize, double currentPrice) 
-{
-    synchronized (orderBook) 
+    // -----------------------------------------------------------------------------------------------------------------
+    private DepthRows copyDepthRows() 
     {
-        Iterator<Entry<Integer, Long>> iterator = isBid ?
-            orderBook.getBidMap().entrySet().iterator() :
-            orderBook.getAskMap().entrySet().iterator();
+        DepthRows rows = new DepthRows();
+        for (int price = orderBook.getBestAsk(); price != PriceLadder.NO_PRICE && rows.asksCount < DepthRows.LEVELS;
+                price = orderBook.getNext(false, price)) 
+        {
+            rows.askPrices[rows.asksCount] = price;
+            rows.askSizes[rows.asksCount++] = orderBook.getSize(false, price);
+        }
+        for (int price = orderBook.getBestBid(); price != PriceLadder.NO_PRICE && rows.bidsCount < DepthRows.LEVELS;
+                price = orderBook.getNext(true, price)) 
+        {
+            rows.bidPrices[rows.bidsCount] = price;
+            rows.bidSizes[rows.bidsCount++] = orderBook.getSize(true, price);
+        }
+        return rows;
+    }
 
-        int count = 0;
-        double totalVolume = 0;
-        List<Double> volumes = new ArrayList<>();
+    // -----------------------------------------------------------------------------------------------------------------
+    private void render() 
+    {
+        updateIsScheduled.set(false);
+        Signals signals = this.signals;
 
-        // Define price range based on maxTicks and tickSize
-        double lowerBound = isBid ? currentPrice - (maxTicks * tickSize) : currentPrice;
-        double upperBound = isBid ? currentPrice : currentPrice + (maxTicks * tickSize);
+        StringBuilder builder = new StringBuilder();
+        builder.append("<html>");
 
-        // Sum volumes and collect for standard deviation calculation
-        while (iterator.hasNext() && count < maxTicks) 
+        DepthRows rows = signals.depthRows;
+        if (rows != null) 
         {
-            Entry<Integer, Long> entry = iterator.next();
-            int price = entry.getKey();
-            double size = entry.getValue();
-
-            // Filter orders within the defined price range
-            if (price >= lowerBound && price <= upperBound) 
+            // Asks are printed from the farthest to the best one
+            for (int i = rows.asksCount - 1; i >= 0; --i) 
             {
-                
-                if ( size > 10 )
-                {
-                    totalVolume += size;
-                    volumes.add(size);
-                }
-                count++;
+                builder.append("ASK Distance: " + i + " Price(int): " + rows.askPrices[i] + " Size: "
+                        + rows.askSizes[i] + "<br/>");
+            }
+            for (int i = 0; i < rows.bidsCount; ++i) 
+            {
+                builder.append("BID Distance: " + i + " Price(int): " + rows.bidPrices[i] + " Size: "
+                        + rows.bidSizes[i] + "<br/>");
             }
         }
 
-        if (volumes.isEmpty()) 
+        builder.append("<br/>Last Price: ").append(signals.lastPrice).append("<br/>");
+        builder.append("Bid Strength: ").append(signals.bidStrength).append("<br/>");
+        builder.append("Ask Strength: ").append(signals.askStrength).append("<br/>");
+
+        long ordersSent = this.ordersSent;
+        if (ordersSent != 0) 
         {
-            return 0; // Handle case where no orders are within range
+            builder.append("<br/>Orders sent: ").append(ordersSent)
+                    .append("<br/>Signal to order latency, us: last ").append(TimeUnit.NANOSECONDS.toMicros(lastLatencyNs))
+                    .append(", avg ").append(TimeUnit.NANOSECONDS.toMicros(totalLatencyNs / ordersSent))
+                    .append(", max ").append(TimeUnit.NANOSECONDS.toMicros(maxLatencyNs)).append("<br/>");
         }
 
-        // Calculate mean and standard deviation
-        double mean = totalVolume / volumes.size();
-        double variance = volumes.stream()
-            .mapToDouble(volume -> Math.pow(volume - mean, 2))
-            .sum() / volumes.size();
-        double stdDev = Math.sqrt(variance);
-
-        // Return strength: total volume divided by the standard deviation
-        // return stdDev == 0 ? 0 : totalVolume * 3 / stdDev;
-        return (totalVolume / (double)maxTicks) * (volumes.size() / (double)maxTicks);
-        //return totalVolume / maxTicks;
+        builder.append("</html>");
+        if (displayLabel != null) 
+        {
+            displayLabel.setText(builder.toString());
+        }
     }
-}
 
+    // -----------------------------------------------------------------------------------------------------------------
+    private double calculateVolumeStrength(boolean isBid, int maxTicks) 
+    {
+        // Return strength: total volume of the large levels near the last price
+        return statistics.getSum(isBid) / (double) maxTicks;
+    }
 
+    // -----------------------------------------------------------------------------------------------------------------
+    private double calculateDevStrength(boolean isBid, int maxTicks) 
+    {
+        return (statistics.getSum(isBid) / (double) maxTicks) * (statistics.getCount(isBid) / (double) maxTicks);
+    }
 
     // =====================================================================================================================
     // =====================================================================================================================
@@ -455,7 +519,7 @@ private double calculateDevStrength(boolean isBid, int tickSize, double currentP
     public StrategyPanel[] getCustomSettingsPanels() 
     {
         displayLabel = new JLabel();
-        scheduleUpdateIfNecessary();
+        render();
 
         // Create a settings panel for the order book display and other parameters
         StrategyPanel ordersPanel = new StrategyPanel("Order book");
@@ -473,6 +537,20 @@ private double calculateDevStrength(boolean isBid, int tickSize, double currentP
         maxTicksSpinner.addChangeListener(e -> maxTicks = (int) maxTicksSpinner.getValue());
 
         parameterPanel.add(maxTicksSpinner); // Add the spinner for maxTicks
+
+        JCheckBox eventDrivenCheckBox = new JCheckBox("Event-driven trading", eventDrivenTrading);
+        eventDrivenCheckBox.addActionListener(e -> eventDrivenTrading = eventDrivenCheckBox.isSelected());
+        parameterPanel.add(eventDrivenCheckBox);
+
+        JSpinner hysteresisSpinner = new JSpinner(new SpinnerNumberModel(hysteresisPercent.intValue(), 0, 100, 1));
+        hysteresisSpinner.addChangeListener(e -> hysteresisPercent = (Integer) hysteresisSpinner.getValue());
+        parameterPanel.add(new JLabel("Hysteresis, %"));
+        parameterPanel.add(hysteresisSpinner);
+
+        JSpinner reEntryGapSpinner = new JSpinner(new SpinnerNumberModel(reEntryGapMs.intValue(), 0, 60000, 100));
+        reEntryGapSpinner.addChangeListener(e -> reEntryGapMs = (Integer) reEntryGapSpinner.getValue());
+        parameterPanel.add(new JLabel("Re-entry gap, ms"));
+        parameterPanel.add(reEntryGapSpinner);
         
         return new StrategyPanel[] { ordersPanel, parameterPanel };
     }
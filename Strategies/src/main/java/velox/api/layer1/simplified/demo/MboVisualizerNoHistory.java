@@ -2,9 +2,7 @@ package velox.api.layer1.simplified.demo;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map.Entry;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.swing.JLabel;
@@ -15,14 +13,13 @@ import velox.api.layer1.annotations.Layer1ApiVersionValue;
 import velox.api.layer1.annotations.Layer1SimpleAttachable;
 import velox.api.layer1.annotations.Layer1StrategyName;
 import velox.api.layer1.data.InstrumentInfo;
-import velox.api.layer1.layers.utils.OrderBook;
-import velox.api.layer1.layers.utils.mbo.Order;
-import velox.api.layer1.layers.utils.mbo.OrderBookMbo;
 import velox.api.layer1.simplified.Api;
 import velox.api.layer1.simplified.CustomModule;
 import velox.api.layer1.simplified.CustomSettingsPanelProvider;
 import velox.api.layer1.simplified.InitialState;
 import velox.api.layer1.simplified.MarketByOrderDepthDataListener;
+import velox.api.layer1.simplified.demo.mbo.MboOrderStore;
+import velox.api.layer1.simplified.demo.mbo.PriceLadder;
 import velox.gui.StrategyPanel;
 
 /**
@@ -34,8 +31,8 @@ import velox.gui.StrategyPanel;
 public class MboVisualizerNoHistory
         implements CustomModule, CustomSettingsPanelProvider, MarketByOrderDepthDataListener {
 
-    private OrderBookMbo orderBookMbo = new OrderBookMbo();
-    private OrderBook orderBook = new OrderBook();
+    private PriceLadder orderBook = new PriceLadder();
+    private MboOrderStore orders = new MboOrderStore(orderBook);
 
     private JLabel displayLabel;
 
@@ -57,12 +54,8 @@ public class MboVisualizerNoHistory
 
     @Override
     public void send(String orderId, boolean isBid, int price, int size) {
-        orderBookMbo.send(orderId, isBid, price, size);
-
         synchronized (orderBook) {
-            long levelSize = orderBook.getSizeFor(isBid, price, 0);
-            levelSize += size;
-            orderBook.onUpdate(isBid, price, levelSize);
+            orders.send(orderId, isBid, price, size);
         }
 
         scheduleUpdateIfNecessary();
@@ -70,39 +63,16 @@ public class MboVisualizerNoHistory
 
     @Override
     public void replace(String orderId, int price, int size) {
-        Order oldOrder = orderBookMbo.getOrder(orderId);
-        boolean isBid = oldOrder.isBid();
-        int oldPrice = oldOrder.getPrice();
-        int oldSize = oldOrder.getSize();
-
-        orderBookMbo.replace(orderId, price, size);
-
         synchronized (orderBook) {
-            long oldLevelSize = orderBook.getSizeFor(isBid, oldPrice, 0);
-            oldLevelSize -= oldSize;
-
-            orderBook.onUpdate(isBid, oldPrice, oldLevelSize);
-
-            long newLevelSize = orderBook.getSizeFor(isBid, price, 0);
-            newLevelSize += size;
-            orderBook.onUpdate(isBid, price, newLevelSize);
+            orders.replace(orderId, price, size);
         }
         scheduleUpdateIfNecessary();
     }
 
     @Override
     public void cancel(String orderId) {
-        Order oldOrder = orderBookMbo.getOrder(orderId);
-        boolean isBid = oldOrder.isBid();
-        int price = oldOrder.getPrice();
-        int size = oldOrder.getSize();
-
-        orderBookMbo.cancel(orderId);
-
         synchronized (orderBook) {
-            long levelSize = orderBook.getSizeFor(isBid, price, 0);
-            levelSize -= size;
-            orderBook.onUpdate(isBid, price, levelSize);
+            orders.cancel(orderId);
         }
         scheduleUpdateIfNecessary();
     }
@@ -118,22 +88,21 @@ public class MboVisualizerNoHistory
                 builder.append("<html>");
 
                 synchronized (orderBook) {
-                    Iterator<Entry<Integer, Long>> askItterator = orderBook.getAskMap().entrySet().iterator();
-                    Iterator<Entry<Integer, Long>> bidItterator = orderBook.getBidMap().entrySet().iterator();
-                    
                     List<String> askRows = new ArrayList<>();
-                    for (int i = 0; i < 10 && askItterator.hasNext(); ++i) {
-                        Entry<Integer, Long> nextAskEntry = askItterator.next();
-                        askRows.add("ASK Distance: " + i + " Price(int): " + nextAskEntry.getKey() + " Size: "
-                                + nextAskEntry.getValue() + "<br/>");
+                    int askPrice = orderBook.getBestAsk();
+                    for (int i = 0; i < 10 && askPrice != PriceLadder.NO_PRICE; ++i) {
+                        askRows.add("ASK Distance: " + i + " Price(int): " + askPrice + " Size: "
+                                + orderBook.getSize(false, askPrice) + "<br/>");
+                        askPrice = orderBook.getNext(false, askPrice);
                     }
                     Collections.reverse(askRows);
                     askRows.forEach(builder::append);
                     
-                    for (int i = 0; i < 10 && bidItterator.hasNext(); ++i) {
-                        Entry<Integer, Long> nextBidEntry = bidItterator.next();
-                        builder.append("BID Distance: " + i + " Price(int): " + nextBidEntry.getKey() + " Size: "
-                                + nextBidEntry.getValue() + "<br/>");
+                    int bidPrice = orderBook.getBestBid();
+                    for (int i = 0; i < 10 && bidPrice != PriceLadder.NO_PRICE; ++i) {
+                        builder.append("BID Distance: " + i + " Price(int): " + bidPrice + " Size: "
+                                + orderBook.getSize(true, bidPrice) + "<br/>");
+                        bidPrice = orderBook.getNext(true, bidPrice);
                     }
                 }
 
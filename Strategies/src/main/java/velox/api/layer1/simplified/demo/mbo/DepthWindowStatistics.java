@@ -0,0 +1,202 @@
+package velox.api.layer1.simplified.demo.mbo;
+
+/**
+ * Running statistics of the levels within a number of ticks from a reference
+ * price: for bids the levels from the reference down, for asks from the
+ * reference up. Only levels larger than the minimal size contribute to the
+ * sum, count and sum of squares.
+ * <p>
+ * Updated by {@link PriceLadder} on every level change in O(1), so the
+ * values are always current. Moving the reference price or changing the
+ * number of ticks only visits the levels entering and leaving the window.
+ * <p>
+ * Matches walking the book from the best level and stopping after
+ * {@code maxTicks} non-empty levels within the window: if all
+ * {@code maxTicks + 1} levels of the window are non-empty, the one farthest
+ * from the reference is excluded.
+ * <p>
+ * Not thread safe, has to be guarded together with the ladder.
+ */
+public class DepthWindowStatistics implements PriceLadder.LevelListener {
+
+    private final PriceLadder ladder;
+    private final long minSize;
+    private int maxTicks;
+    private double referencePrice;
+
+    private final Side bids = new Side(true);
+    private final Side asks = new Side(false);
+
+    /**
+     * Registers itself as the listener of the ladder.
+     *
+     * @param minSize levels of this size or smaller are not counted
+     */
+    public DepthWindowStatistics(PriceLadder ladder, int maxTicks, long minSize) {
+        this.ladder = ladder;
+        this.maxTicks = maxTicks;
+        this.minSize = minSize;
+        bids.moveTo(referencePrice);
+        asks.moveTo(referencePrice);
+        ladder.setListener(this);
+    }
+
+    @Override
+    public void onLevelUpdated(boolean isBid, int price, long oldSize, long newSize) {
+        getSide(isBid).onLevelUpdated(price, oldSize, newSize);
+    }
+
+    public void setReferencePrice(double referencePrice) {
+        if (referencePrice != this.referencePrice) {
+            this.referencePrice = referencePrice;
+            bids.moveTo(referencePrice);
+            asks.moveTo(referencePrice);
+        }
+    }
+
+    public void setMaxTicks(int maxTicks) {
+        if (maxTicks != this.maxTicks) {
+            this.maxTicks = maxTicks;
+            bids.moveTo(referencePrice);
+            asks.moveTo(referencePrice);
+        }
+    }
+
+    public int getMaxTicks() {
+        return maxTicks;
+    }
+
+    private Side getSide(boolean isBid) {
+        return isBid ? bids : asks;
+    }
+
+    /**
+     * @return total size of the counted levels
+     */
+    public long getSum(boolean isBid) {
+        Side side = getSide(isBid);
+        return side.sum - side.getExcludedSize();
+    }
+
+    /**
+     * @return number of the counted levels
+     */
+    public int getCount(boolean isBid) {
+        Side side = getSide(isBid);
+        return side.count - (side.getExcludedSize() != 0 ? 1 : 0);
+    }
+
+    public long getSumOfSquares(boolean isBid) {
+        Side side = getSide(isBid);
+        long excluded = side.getExcludedSize();
+        return side.sumOfSquares - excluded * excluded;
+    }
+
+    /**
+     * @return mean size of the counted levels, 0 if there are none
+     */
+    public double getMean(boolean isBid) {
+        int count = getCount(isBid);
+        return count == 0 ? 0 : getSum(isBid) / (double) count;
+    }
+
+    /**
+     * @return population variance of the counted level sizes, 0 if there are
+     *         none
+     */
+    public double getVariance(boolean isBid) {
+        int count = getCount(isBid);
+        if (count == 0) {
+            return 0;
+        }
+        double mean = getSum(isBid) / (double) count;
+        return Math.max(0, getSumOfSquares(isBid) / (double) count - mean * mean);
+    }
+
+    private class Side {
+        private final boolean isBid;
+        /** Window bounds, inclusive, low > high when empty */
+        private int low = 1;
+        private int high;
+
+        long sum;
+        long sumOfSquares;
+        int count;
+        private int nonEmptyCount;
+
+        Side(boolean isBid) {
+            this.isBid = isBid;
+        }
+
+        private boolean contains(int price) {
+            return price >= low && price <= high;
+        }
+
+        private long contribution(long size) {
+            return size > minSize ? size : 0;
+        }
+
+        void onLevelUpdated(int price, long oldSize, long newSize) {
+            if (contains(price)) {
+                remove(oldSize);
+                add(newSize);
+            }
+        }
+
+        private void add(long size) {
+            if (size != 0) {
+                ++nonEmptyCount;
+            }
+            long value = contribution(size);
+            if (value != 0) {
+                sum += value;
+                sumOfSquares += value * value;
+                ++count;
+            }
+        }
+
+        private void remove(long size) {
+            if (size != 0) {
+                --nonEmptyCount;
+            }
+            long value = contribution(size);
+            if (value != 0) {
+                sum -= value;
+                sumOfSquares -= value * value;
+                --count;
+            }
+        }
+
+        /**
+         * @return size of the farthest level if it has to be excluded, 0
+         *         otherwise
+         */
+        long getExcludedSize() {
+            if (nonEmptyCount <= maxTicks) {
+                return 0;
+            }
+            return contribution(ladder.getSize(isBid, isBid ? low : high));
+        }
+
+        void moveTo(double referencePrice) {
+            int newLow = (int) Math.ceil(isBid ? referencePrice - maxTicks : referencePrice);
+            int newHigh = (int) Math.floor(isBid ? referencePrice : referencePrice + maxTicks);
+
+            // Levels leaving the window, then levels entering it
+            for (int price = low; price <= Math.min(high, newLow - 1); ++price) {
+                remove(ladder.getSize(isBid, price));
+            }
+            for (int price = Math.max(low, newHigh + 1); price <= high; ++price) {
+                remove(ladder.getSize(isBid, price));
+            }
+            for (int price = newLow; price <= Math.min(newHigh, low - 1); ++price) {
+                add(ladder.getSize(isBid, price));
+            }
+            for (int price = Math.max(newLow, high + 1); price <= newHigh; ++price) {
+                add(ladder.getSize(isBid, price));
+            }
+            low = newLow;
+            high = newHigh;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package velox.api.layer1.simplified.demo.mbo;
+
+import java.util.Arrays;
+
+/**
+ * Replacement of {@link velox.api.layer1.layers.utils.mbo.OrderBookMbo} for
+ * the hot path of MBO modules.
+ * <p>
+ * Each order id is mapped to a dense int slot once, when the order is sent,
+ * by an open addressing table (linear probing, so String's cached hash code
+ * and one equals usually find it). Side, price and size of the order live in
+ * parallel primitive arrays indexed by slot, and slots of cancelled orders
+ * are reused through a free list - so after warming up, events don't
+ * allocate. Every event also applies its change to the {@link PriceLadder}
+ * the store was created with.
+ * <p>
+ * Not thread safe.
+ */
+public class MboOrderStore {
+
+    public static final int NO_SLOT = -1;
+
+    private static final int DEFAULT_CAPACITY = 1 << 12;
+
+    private final PriceLadder ladder;
+
+    /** Open addressing table, length is a power of two, at most half full */
+    private String[] keys;
+    private int[] keySlots;
+    private int keyMask;
+
+    private String[] orderIds;
+    private boolean[] sides;
+    private int[] prices;
+    private int[] sizes;
+    /** Next free slot for the free ones */
+    private int[] nextFree;
+    private int firstFree = NO_SLOT;
+    private int usedSlots;
+
+    private int ordersCount;
+
+    public MboOrderStore(PriceLadder ladder) {
+        this(ladder, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity expected number of live orders, store grows beyond it
+     *            if needed
+     */
+    public MboOrderStore(PriceLadder ladder, int capacity) {
+        this.ladder = ladder;
+        int slots = Math.max(16, Integer.highestOneBit(capacity - 1) << 1);
+        orderIds = new String[slots];
+        sides = new boolean[slots];
+        prices = new int[slots];
+        sizes = new int[slots];
+        nextFree = new int[slots];
+        keys = new String[slots * 2];
+        keySlots = new int[slots * 2];
+        keyMask = keys.length - 1;
+    }
+
+    /**
+     * @return false if an order with this id is already known, in which case
+     *         nothing is changed
+     */
+    public boolean send(String orderId, boolean isBid, int price, int size) {
+        int position = findPosition(orderId);
+        if (keys[position] != null) {
+            return false;
+        }
+        int slot = allocateSlot();
+        orderIds[slot] = orderId;
+        sides[slot] = isBid;
+        prices[slot] = price;
+        sizes[slot] = size;
+        keys[position] = orderId;
+        keySlots[position] = slot;
+        ++ordersCount;
+        if (ordersCount * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+
+        ladder.add(isBid, price, size);
+        return true;
+    }
+
+    /**
+     * @return false if the order is unknown
+     */
+    public boolean replace(String orderId, int price, int size) {
+        int slot = find(orderId);
+        if (slot == NO_SLOT) {
+            return false;
+        }
+        boolean isBid = sides[slot];
+        if (price == prices[slot]) {
+            // Usual size change - level is updated once and does not get empty in between
+            ladder.add(isBid, price, size - sizes[slot]);
+        } else {
+            ladder.add(isBid, prices[slot], -sizes[slot]);
+            ladder.add(isBid, price, size);
+        }
+        prices[slot] = price;
+        sizes[slot] = size;
+        return true;
+    }
+
+    /**
+     * @return false if the order is unknown
+     */
+    public boolean cancel(String orderId) {
+        int position = findPosition(orderId);
+        if (keys[position] == null) {
+            return false;
+        }
+        int slot = keySlots[position];
+        ladder.add(sides[slot], prices[slot], -sizes[slot]);
+
+        removePosition(position);
+        orderIds[slot] = null;
+        nextFree[slot] = firstFree;
+        firstFree = slot;
+        --ordersCount;
+        return true;
+    }
+
+    /**
+     * @return slot of the order or {@link #NO_SLOT} if it's unknown. Slot
+     *         stays valid until the order is cancelled.
+     */
+    public int find(String orderId) {
+        int position = findPosition(orderId);
+        return keys[position] == null ? NO_SLOT : keySlots[position];
+    }
+
+    public boolean isBid(int slot) {
+        return sides[slot];
+    }
+
+    public int getPrice(int slot) {
+        return prices[slot];
+    }
+
+    public int getSize(int slot) {
+        return sizes[slot];
+    }
+
+    public String getOrderId(int slot) {
+        return orderIds[slot];
+    }
+
+    public int getOrdersCount() {
+        return ordersCount;
+    }
+
+    /**
+     * Forgets all orders. The ladder is not cleared.
+     */
+    public void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(orderIds, null);
+        firstFree = NO_SLOT;
+        usedSlots = 0;
+        ordersCount = 0;
+    }
+
+    private static int mix(int hash) {
+        // Order ids often differ only in the last characters, spread those to the high bits too
+        return hash ^ (hash >>> 16) ^ (hash * 0x9E3779B9 >>> 16);
+    }
+
+    /**
+     * @return position of the key or of the empty cell where it would be
+     */
+    private int findPosition(String orderId) {
+        int position = mix(orderId.hashCode()) & keyMask;
+        while (true) {
+            String key = keys[position];
+            if (key == null || key.equals(orderId)) {
+                return position;
+            }
+            position = (position + 1) & keyMask;
+        }
+    }
+
+    /**
+     * Backward shift deletion, so lookups never have to skip tombstones.
+     */
+    private void removePosition(int position) {
+        int empty = position;
+        int current = position;
+        while (true) {
+            current = (current + 1) & keyMask;
+            String key = keys[current];
+            if (key == null) {
+                break;
+            }
+            int home = mix(key.hashCode()) & keyMask;
+            // Move the key back if its home is not between the hole and its current position
+            boolean canMove = empty <= current ? (home <= empty || home > current) : (home <= empty && home > current);
+            if (canMove) {
+                keys[empty] = key;
+                keySlots[empty] = keySlots[current];
+                empty = current;
+            }
+        }
+        keys[empty] = null;
+    }
+
+    private int allocateSlot() {
+        if (firstFree != NO_SLOT) {
+            int slot = firstFree;
+            firstFree = nextFree[slot];
+            return slot;
+        }
+        if (usedSlots == orderIds.length) {
+            int length = orderIds.length * 2;
+            orderIds = Arrays.copyOf(orderIds, length);
+            sides = Arrays.copyOf(sides, length);
+            prices = Arrays.copyOf(prices, length);
+            sizes = Arrays.copyOf(sizes, length);
+            nextFree = Arrays.copyOf(nextFree, length);
+        }
+        return usedSlots++;
+    }
+
+    private void rehash(int length) {
+        String[] oldKeys = keys;
+        int[] oldKeySlots = keySlots;
+        keys = new String[length];
+        keySlots = new int[length];
+        keyMask = length - 1;
+        for (int i = 0; i < oldKeys.length; ++i) {
+            if (oldKeys[i] != null) {
+                int position = findPosition(oldKeys[i]);
+                keys[position] = oldKeys[i];
+                keySlots[position] = oldKeySlots[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package velox.api.layer1.simplified.demo.mbo;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Aggregated book for MBO modules, a replacement of
+ * {@link velox.api.layer1.layers.utils.OrderBook} for the hot path.
+ * <p>
+ * Each side keeps sizes of a window of price levels around its best price in
+ * a {@code long[]} ring indexed by price, so updates and lookups near the BBO
+ * neither box nor rebalance a tree. Best prices are tracked incrementally.
+ * Levels that are too far from the best price to fit into the window are kept
+ * in a {@link TreeMap}, and the window follows the best price when it moves
+ * away.
+ * <p>
+ * Levels are iterated from the best one outwards without allocation:
+ * <pre>
+ * for (int price = ladder.getBest(isBid); price != PriceLadder.NO_PRICE; price = ladder.getNext(isBid, price)) {
+ *     long size = ladder.getSize(isBid, price);
+ * }
+ * </pre>
+ * Not thread safe.
+ */
+public class PriceLadder {
+
+    /**
+     * Gets every change of a level size, e.g. to maintain aggregates over the
+     * book incrementally.
+     */
+    public interface LevelListener {
+        void onLevelUpdated(boolean isBid, int price, long oldSize, long newSize);
+    }
+
+    public static final int NO_PRICE = Integer.MIN_VALUE;
+
+    private static final int DEFAULT_CAPACITY = 1 << 12;
+
+    private final Side bids;
+    private final Side asks;
+
+    private LevelListener listener;
+
+    public PriceLadder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity number of levels per side kept in the array, has to be
+     *            a power of two
+     */
+    public PriceLadder(int capacity) {
+        if (Integer.bitCount(capacity) != 1 || capacity < 4) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        bids = new Side(true, capacity);
+        asks = new Side(false, capacity);
+    }
+
+    public void setListener(LevelListener listener) {
+        this.listener = listener;
+    }
+
+    private Side getSide(boolean isBid) {
+        return isBid ? bids : asks;
+    }
+
+    /**
+     * Sets size of the level, 0 removes it.
+     *
+     * @return previous size of the level
+     */
+    public long onUpdate(boolean isBid, int price, long size) {
+        long previous = getSide(isBid).set(price, size);
+        if (listener != null && previous != size) {
+            listener.onLevelUpdated(isBid, price, previous, size);
+        }
+        return previous;
+    }
+
+    /**
+     * Adds (or subtracts, if negative) delta to the size of the level.
+     *
+     * @return new size of the level
+     */
+    public long add(boolean isBid, int price, long delta) {
+        Side side = getSide(isBid);
+        long previous = side.get(price);
+        long size = previous + delta;
+        side.set(price, size);
+        if (listener != null && delta != 0) {
+            listener.onLevelUpdated(isBid, price, previous, size);
+        }
+        return size;
+    }
+
+    public long getSize(boolean isBid, int price) {
+        return getSide(isBid).get(price);
+    }
+
+    /**
+     * Same as {@link velox.api.layer1.layers.utils.OrderBook#getSizeFor(boolean, int, long)}.
+     */
+    public long getSizeFor(boolean isBid, int price, long defaultValue) {
+        long size = getSide(isBid).get(price);
+        return size == 0 ? defaultValue : size;
+    }
+
+    /**
+     * @return best price of the side or {@link #NO_PRICE} if it's empty
+     */
+    public int getBest(boolean isBid) {
+        return getSide(isBid).best;
+    }
+
+    public int getBestBid() {
+        return bids.best;
+    }
+
+    public int getBestAsk() {
+        return asks.best;
+    }
+
+    /**
+     * @return next non-empty level after the given one going away from the
+     *         best price, or {@link #NO_PRICE} if there is none
+     */
+    public int getNext(boolean isBid, int price) {
+        return getSide(isBid).next(price);
+    }
+
+    public boolean isEmpty(boolean isBid) {
+        return getSide(isBid).best == NO_PRICE;
+    }
+
+    public void clear() {
+        bids.clear();
+        asks.clear();
+    }
+
+    private static class Side {
+        private final boolean isBid;
+        private final long[] sizes;
+        private final int mask;
+        /** Lowest price of the window, levels outside of it are in overflow */
+        private int base;
+        private int best = NO_PRICE;
+        private final NavigableMap<Integer, Long> overflow = new TreeMap<>();
+
+        Side(boolean isBid, int capacity) {
+            this.isBid = isBid;
+            sizes = new long[capacity];
+            mask = capacity - 1;
+        }
+
+        private boolean isInWindow(int price) {
+            return price - base >= 0 && price - base <= mask;
+        }
+
+        private boolean isBetter(int price, int than) {
+            return isBid ? price > than : price < than;
+        }
+
+        long get(int price) {
+            if (isInWindow(price)) {
+                return sizes[price & mask];
+            }
+            Long size = overflow.isEmpty() ? null : overflow.get(price);
+            return size == null ? 0 : size;
+        }
+
+        long set(int price, long size) {
+            if (size != 0 && (best == NO_PRICE || isBetter(price, best))) {
+                if (best == NO_PRICE && overflow.isEmpty()) {
+                    base = getWindowBase(price);
+                } else if (!isInWindow(price)) {
+                    moveWindow(getWindowBase(price));
+                }
+                best = price;
+            }
+
+            long previous;
+            if (isInWindow(price)) {
+                int index = price & mask;
+                previous = sizes[index];
+                sizes[index] = size;
+            } else {
+                Long old = size == 0 ? overflow.remove(price) : overflow.put(price, size);
+                previous = old == null ? 0 : old;
+            }
+
+            if (size == 0 && price == best && previous != 0) {
+                best = next(price);
+                if (best != NO_PRICE && !isInWindow(best)) {
+                    moveWindow(getWindowBase(best));
+                }
+            }
+            return previous;
+        }
+
+        /**
+         * Window leaves some room for the best price to improve, while most
+         * of it covers the levels behind the best one.
+         */
+        private int getWindowBase(int bestPrice) {
+            int capacity = mask + 1;
+            return isBid ? bestPrice - capacity + capacity / 4 : bestPrice - capacity / 4;
+        }
+
+        int next(int price) {
+            int step = isBid ? -1 : 1;
+            int current = price + step;
+            while (isInWindow(current)) {
+                if (sizes[current & mask] != 0) {
+                    return current;
+                }
+                current += step;
+            }
+            if (overflow.isEmpty()) {
+                return NO_PRICE;
+            }
+            Integer key = isBid ? overflow.lowerKey(price) : overflow.higherKey(price);
+            return key == null ? NO_PRICE : key;
+        }
+
+        /**
+         * Levels leaving the window go to overflow and the ones entering it
+         * are taken from there. Slots keep their indexes since the array is
+         * indexed by price.
+         */
+        private void moveWindow(int newBase) {
+            int capacity = mask + 1;
+            for (int i = 0; i < capacity; ++i) {
+                int price = base + i;
+                if (price - newBase < 0 || price - newBase > mask) {
+                    long size = sizes[price & mask];
+                    if (size != 0) {
+                        overflow.put(price, size);
+                        sizes[price & mask] = 0;
+                    }
+                }
+            }
+            base = newBase;
+            if (!overflow.isEmpty()) {
+                NavigableMap<Integer, Long> entering = overflow.subMap(newBase, true, newBase + mask, true);
+                for (Map.Entry<Integer, Long> entry : entering.entrySet()) {
+                    sizes[entry.getKey() & mask] = entry.getValue();
+                }
+                entering.clear();
+            }
+        }
+
+        void clear() {
+            Arrays.fill(sizes, 0);
+            overflow.clear();
+            best = NO_PRICE;
+        }
+    }
+}